@@ -0,0 +1,174 @@
+package AbstractGames.Benchmark;
+
+import AbstractGames.*;
+import AbstractGames.Breakthrough.BreakthroughBoard;
+import AbstractGames.LinesOfAction.LOABoard;
+import AbstractGames.TicTacToe.TicTacToeBoard;
+import AbstractGames.mnkGame.mnkBoard;
+import AbstractGames.mnkGame.phantommnkBoard;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The fixed positions the benchmarks run on, an opening, middlegame and
+ * endgame set for every game, in the loadBoard format of the game.
+ *
+ * Results are only comparable between runs on the same positions, so any
+ * change to the lists must raise VERSION.
+ */
+public class BenchmarkPositions {
+
+  public static final int VERSION = 1;
+
+  // Seed of the random evaluator weights of Breakthrough and LOA.
+  public static final long WEIGHT_SEED = 1;
+
+  public static final String BREAKTHROUGH = "Breakthrough";
+  public static final String LOA = "LOA";
+  public static final String MNK = "mnk";
+  public static final String PHANTOM_MNK = "phantommnk";
+  public static final String TICTACTOE = "TicTacToe";
+
+  public static final String OPENING = "opening";
+  public static final String MIDDLEGAME = "middlegame";
+  public static final String ENDGAME = "endgame";
+
+  public static final String []GAMES = {BREAKTHROUGH, LOA, MNK, PHANTOM_MNK, TICTACTOE};
+  public static final String []PHASES = {OPENING, MIDDLEGAME, ENDGAME};
+
+  /**
+   * One benchmark position.
+   */
+  public static class Position {
+    public final String game;
+    public final String phase;
+    public final String layout;  // The loadBoard string
+
+    Position(String game, String phase, String layout) {
+      this.game = game;
+      this.phase = phase;
+      this.layout = layout;
+    }
+
+    public String toString() {
+      return game + " " + phase + " " + layout.trim();
+    }
+  }
+
+  // Breakthrough 5x5: column major, 'b' black, 'w' white, 'X' empty, then the side to move.
+  static final String [][]breakthrough = {
+    {OPENING, "bbXXwbbwwwbXXwwbbbwwbbXwwb"},
+    {OPENING, "bXbwwbXXwwbbbwwbbXXwbbwwww"},
+    {MIDDLEGAME, "bbXXwbbbwwbXwwXXbwwwbXbXwb"},
+    {MIDDLEGAME, "XbbwwbXXXwbbwXXXbbwwbbwwww"},
+    {ENDGAME, "bXXbwbXbwwXbbwXXwwwXbwXXwb"},
+    {ENDGAME, "XbbwwXbXXXXbwXXXXwXXbwwXwb"},
+  };
+
+  // Lines of Action 8x8, the same format.
+  static final String [][]loa = {
+    {OPENING, "XwwXwwwXbXXXXXXbbXXXXwXbbXXXXXXbbXXXXbXbbXXXXXXbbXXXXXXXXwwwwwwXb"},
+    {OPENING, "XwwwwwwXbXXXXXXXbXXXXXXbbXXXXXXbbXXXXXXbXXXbwXXbbXXXXXXbXwwwXwwbw"},
+    {MIDDLEGAME, "XbwXXXXXXXXwXXwbXwXXXwXXXbXwXbXXbXwXXXXXXXbXXXXXbXXXXbXXbwXwwbXXb"},
+    {MIDDLEGAME, "XXXwXbXXbbXXXbbwbbwXwbXXXwXXXXwXXXXXXXXXXXXXXXXwXXbXXXXbXXwwXXwbb"},
+    {ENDGAME, "XXXwwXXXXXXXXbwXXXXXXXXXwbXbXwXXbbXXXXwXXXXXXXXXXXXXwbXXXXbXXXXbb"},
+    {ENDGAME, "wXXXXXXbbbXXXXbXXXXXXXwXXXXXXXXwXwbXXbbXXXXXXXXXwXXXXXwXXXwXXXwbb"},
+  };
+
+  // m,n,k 4x4x4: row major, 'X' black, 'O' white, ' ' empty, then the side to move.
+  static final String [][]mnk = {
+    {OPENING, "X               O"},
+    {OPENING, "     X      O   X"},
+    {MIDDLEGAME, "XO  OX  X O     X"},
+    {MIDDLEGAME, " X  OXO  X O  X O"},
+    {ENDGAME, "XXOOOOXXXXOO    X"},
+    {ENDGAME, "OXXOXOOX XOX O  X"},
+  };
+
+  // Phantom m,n,k 3x3x3, the same format. Each player only sees its own pieces.
+  static final String [][]phantommnk = {
+    {OPENING, "         X"},
+    {OPENING, "    X    O"},
+    {MIDDLEGAME, "XO  X    O"},
+    {MIDDLEGAME, " X O X   O"},
+    {ENDGAME, "XOXOX O  X"},
+    {ENDGAME, "OXOXO X  X"},
+  };
+
+  // TicTacToe, the same format.
+  static final String [][]tictactoe = {
+    {OPENING, "         X"},
+    {OPENING, "    X    O"},
+    {MIDDLEGAME, "XO  X    O"},
+    {MIDDLEGAME, " X O X   O"},
+    {ENDGAME, "XOXOX O  X"},
+    {ENDGAME, "OXOXO X  X"},
+  };
+
+  /**
+   * @param game one of GAMES
+   * @param phase one of PHASES, null for all
+   * @return the positions of the game in the phase
+   */
+  public static List<Position> positions(String game, String phase) {
+    String [][]layouts;
+    if (game.equals(BREAKTHROUGH))
+      layouts = breakthrough;
+    else if (game.equals(LOA))
+      layouts = loa;
+    else if (game.equals(MNK))
+      layouts = mnk;
+    else if (game.equals(PHANTOM_MNK))
+      layouts = phantommnk;
+    else if (game.equals(TICTACTOE))
+      layouts = tictactoe;
+    else
+      throw new Error("Unknown game " + game);
+    List<Position> result = new ArrayList<Position>();
+    for (String []l : layouts)
+      if (phase == null || phase.equals(l[0]))
+        result.add(new Position(game, l[0], l[1]));
+    return result;
+  }
+
+  /**
+   * @return a new board of the game in its start position, the evaluators
+   *         have the weights of WEIGHT_SEED so searches repeat exactly
+   */
+  public static Board newBoard(String game) {
+    if (game.equals(BREAKTHROUGH))
+      return new BreakthroughBoard(new AbstractGames.Breakthrough.BoardEvaluator(6, WEIGHT_SEED));
+    if (game.equals(LOA))
+      return new LOABoard(new AbstractGames.LinesOfAction.BoardEvaluator(6, WEIGHT_SEED));
+    if (game.equals(MNK))
+      return new mnkBoard(4, 4, 4);
+    if (game.equals(PHANTOM_MNK))
+      return new phantommnkBoard(3, 3, 3);
+    if (game.equals(TICTACTOE))
+      return new TicTacToeBoard();
+    throw new Error("Unknown game " + game);
+  }
+
+  /**
+   * A new board loaded with the position. loadBoard prints the board, the
+   * output is dropped here so the benchmark reports stay readable.
+   *
+   * @return the board, never in a finished game
+   */
+  public static Board load(Position p) {
+    Board board = newBoard(p.game);
+    PrintStream out = System.out;
+    System.setOut(new PrintStream(new ByteArrayOutputStream()));
+    try {
+      board.loadBoard(p.layout);
+    } finally {
+      System.setOut(out);
+    }
+    if (board.endGame() != Board.GAME_CONTINUE || board.generateMoves() == null)
+      throw new Error("Benchmark position is not playable: " + p);
+    return board;
+  }
+}
@@ -0,0 +1,176 @@
+package AbstractGames.Benchmark;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.List;
+
+/**
+ * A small throughput harness in the manner of JMH, to run the benchmarks
+ * from the source tree without a build. The benchmarks module (benchmarks/pom.xml)
+ * runs the move generation benchmarks with JMH itself.
+ *
+ * An operation is called in a loop for warmup iterations, whose results are
+ * dropped, and then for the measured iterations, each a fixed time long.
+ * The score is the mean throughput in operations per second with the
+ * standard deviation over the iterations as the error. Every result of the
+ * operation goes into a sink so the JIT cannot remove the work.
+ *
+ * With the gc profiler the bytes allocated by the benchmark thread per
+ * operation (com.sun.management.ThreadMXBean) and the collections during the
+ * measurement are reported too, as JMH -prof gc does.
+ *
+ * Unlike JMH the benchmarks run in the current JVM, so run one game at a
+ * time when the numbers are compared across changes.
+ */
+public class Microbenchmark {
+
+  /**
+   * The code under measure.
+   */
+  public interface Operation {
+    /**
+     * @return any value depending on the work done, it is consumed by the sink
+     */
+    long run();
+  }
+
+  /**
+   * The result of one benchmark.
+   */
+  public static class Result {
+    public String name;
+    public int iterations;
+    public double score;          // Operations per second
+    public double error;          // Standard deviation of the iterations
+    public double bytesPerOp = -1; // -1 without the gc profiler
+    public long gcCount;
+    public long gcTime;           // Milliseconds
+
+    public String toString() {
+      String s = String.format("%-60s thrpt %3d %16.1f +- %12.1f  ops/s", name, iterations, score, error);
+      if (bytesPerOp >= 0)
+        s += String.format("%n%-60s thrpt %3d %16.1f %16s  B/op%n%-60s thrpt %3d %16d %16s  counts%n%-60s thrpt %3d %16d %16s  ms",
+            name + ":gc.alloc.rate.norm", iterations, bytesPerOp, "",
+            name + ":gc.count", iterations, gcCount, "",
+            name + ":gc.time", iterations, gcTime, "");
+      return s;
+    }
+  }
+
+  int warmupIterations = 5;
+  int iterations = 10;
+  long iterationTime = 500;      // Milliseconds
+  boolean gcProfiler = false;
+  long sink;                     // Results of the operations
+  public volatile long blackhole;
+
+  public void setWarmupIterations(int warmupIterations) {
+    this.warmupIterations = warmupIterations;
+  }
+
+  public void setIterations(int iterations) {
+    this.iterations = iterations;
+  }
+
+  /**
+   * @param iterationTime milliseconds of one warmup or measured iteration
+   */
+  public void setIterationTime(long iterationTime) {
+    this.iterationTime = iterationTime;
+  }
+
+  /**
+   * Report the allocation and the collections, see the class comment.
+   */
+  public void setGCProfiler(boolean gcProfiler) {
+    this.gcProfiler = gcProfiler;
+  }
+
+  /**
+   * Run the benchmark and return its result.
+   */
+  public Result measure(String name, Operation op) {
+    for (int i = 0; i < warmupIterations; i++)
+      iteration(op);
+
+    com.sun.management.ThreadMXBean threads = allocationBean();
+    long threadId = Thread.currentThread().getId();
+    long allocatedBefore = (threads != null) ? threads.getThreadAllocatedBytes(threadId) : 0;
+    long gcCountBefore = gcCount(), gcTimeBefore = gcTime();
+    long totalOps = 0;
+    double []rates = new double[iterations];
+    for (int i = 0; i < iterations; i++) {
+      long start = System.nanoTime();
+      long ops = iteration(op);
+      rates[i] = ops / ((System.nanoTime() - start) / 1e9);
+      totalOps += ops;
+    }
+
+    Result r = new Result();
+    r.name = name;
+    r.iterations = iterations;
+    for (double rate : rates)
+      r.score += rate / iterations;
+    for (double rate : rates)
+      r.error += (rate - r.score) * (rate - r.score);
+    r.error = (iterations > 1) ? Math.sqrt(r.error / (iterations - 1)) : 0.0;
+    if (gcProfiler && threads != null) {
+      r.bytesPerOp = (double)(threads.getThreadAllocatedBytes(threadId) - allocatedBefore) / totalOps;
+      r.gcCount = gcCount() - gcCountBefore;
+      r.gcTime = gcTime() - gcTimeBefore;
+    }
+    blackhole = sink;
+    return r;
+  }
+
+  /**
+   * Call op for iterationTime, checking the clock every batch of calls.
+   *
+   * @return the number of calls
+   */
+  long iteration(Operation op) {
+    long end = System.nanoTime() + iterationTime * 1000000L;
+    long ops = 0;
+    long s = sink;
+    do {
+      for (int i = 0; i < 256; i++)
+        s += op.run();
+      ops += 256;
+    } while (System.nanoTime() < end);
+    sink = s;
+    return ops;
+  }
+
+  static com.sun.management.ThreadMXBean allocationBean() {
+    if (!(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean))
+      return null;
+    com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean();
+    if (!threads.isThreadAllocatedMemorySupported())
+      return null;
+    threads.setThreadAllocatedMemoryEnabled(true);
+    return threads;
+  }
+
+  static long gcCount() {
+    long count = 0;
+    for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans())
+      count += Math.max(0, gc.getCollectionCount());
+    return count;
+  }
+
+  static long gcTime() {
+    long time = 0;
+    for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans())
+      time += Math.max(0, gc.getCollectionTime());
+    return time;
+  }
+
+  /**
+   * Print the results as a table.
+   */
+  public static void print(List<Result> results) {
+    System.out.println(String.format("%-60s %5s %3s %16s   %12s  %s", "Benchmark", "Mode", "Cnt", "Score", "Error", "Units"));
+    for (Result r : results)
+      System.out.println(r);
+  }
+}
@@ -0,0 +1,222 @@
+package AbstractGames.Benchmark;
+
+import AbstractGames.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Throughput of the board operations every search node pays for:
+ * generateMoves, a makeMove/reverseMove pair, endGame, moveOrdering of a
+ * generated list and Util.QuickSort alone, for every game on the opening,
+ * middlegame and endgame positions of BenchmarkPositions.
+ *
+ * Usage: MoveGenerationBenchmark [-wi n] [-i n] [-r ms] [-prof gc] [filter ...]
+ *   -wi     warmup iterations (5)
+ *   -i      measured iterations (10)
+ *   -r      milliseconds per iteration (500)
+ *   -prof gc  report bytes allocated per operation and the collections
+ *   filter  run only the benchmarks whose name contains one of the filters,
+ *           e.g. LOA or generateMoves.endgame
+ *
+ * The benchmark names are game.operation.phase. The phantom m,n,k board is
+ * measured through its perspective methods, which are the ones the
+ * stochastic searches call. The packed operations (generateMoves(MoveStack)
+ * and a makeMove(int)/reverseMove(int) pair) only run for PACKED_GAMES.
+ *
+ * MoveGenerationJMH in the benchmarks module runs the same fixtures with
+ * JMH, in forked JVMs.
+ */
+public class MoveGenerationBenchmark {
+
+  static final String []OPERATIONS = {"generateMoves", "makeUnmake", "endGame", "moveOrdering", "quickSort",
+                                      "generateMovesPacked", "makeUnmakePacked"};
+  static final List<String> PACKED_GAMES = Arrays.asList(BenchmarkPositions.BREAKTHROUGH, BenchmarkPositions.LOA,
+                                                         BenchmarkPositions.MNK);
+
+  /**
+   * The boards of one game and phase, and the state of the operations that
+   * walk through them.
+   */
+  static class Fixture {
+    Board []boards;
+    Move [][]moves;      // The moves of every board for makeUnmake
+    Move [][]sortMoves;  // Another list of every board, with fixed values, for quickSort
+    int [][]packedMoves; // The packed moves of every board for makeUnmakePacked, null if not packed
+    MoveStack stack = new MoveStack();
+    boolean stochastic;
+    int board, move;
+
+    Fixture(List<BenchmarkPositions.Position> positions, boolean packed) {
+      int n = positions.size();
+      boards = new Board[n];
+      moves = new Move[n][];
+      sortMoves = new Move[n][];
+      if (packed)
+        packedMoves = new int[n][];
+      Random random = new Random(1);
+      for (int i = 0; i < n; i++) {
+        boards[i] = BenchmarkPositions.load(positions.get(i));
+        stochastic = boards[i] instanceof StochasticBoard;
+        moves[i] = toArray(generate(boards[i]));
+        sortMoves[i] = toArray(generate(boards[i]));
+        for (Move m : sortMoves[i])
+          m.value = random.nextDouble();
+        if (packed) {
+          stack.clear();
+          packedMoves[i] = new int[boards[i].generateMoves(stack)];
+          for (int k = 0; k < packedMoves[i].length; k++)
+            packedMoves[i][k] = stack.get(k);
+        }
+      }
+    }
+
+    Move generate(Board b) {
+      return stochastic ? ((StochasticBoard)b).generateMoves(b.getCurrentPlayer()) : b.generateMoves();
+    }
+
+    Board nextBoard() {
+      if (++board == boards.length)
+        board = 0;
+      return boards[board];
+    }
+
+    long generateMoves() {
+      long count = 0;
+      for (Move m = generate(nextBoard()); m != null; m = m.next)
+        count++;
+      return count;
+    }
+
+    long makeUnmake() {
+      Move []list = moves[board];
+      if (move == list.length) {
+        move = 0;
+        nextBoard();
+        list = moves[board];
+      }
+      Board b = boards[board];
+      Move m = list[move++];
+      if (stochastic) {
+        int perspective = b.getCurrentPlayer();
+        ((StochasticBoard)b).makeMove(perspective, m);
+        ((StochasticBoard)b).reverseMove(perspective, m);
+      } else {
+        b.makeMove(m);
+        b.reverseMove(m);
+      }
+      return b.getCurrentPlayer();
+    }
+
+    long endGame() {
+      Board b = nextBoard();
+      return stochastic ? ((StochasticBoard)b).endGame(b.getCurrentPlayer()) : b.endGame();
+    }
+
+    long moveOrdering() {
+      Board b = nextBoard();
+      Move m = b.moveOrdering(generate(b), 1);
+      return (m == null) ? 0 : (long)m.value;
+    }
+
+    long quickSort() {
+      nextBoard();
+      Move []list = sortMoves[board];
+      for (int i = 0; i < list.length - 1; i++)
+        list[i].next = list[i + 1];
+      list[list.length - 1].next = null;
+      return (long)(Util.QuickSort(list[0]).value * 1000);
+    }
+
+    long generateMovesPacked() {
+      stack.clear();
+      return nextBoard().generateMoves(stack);
+    }
+
+    long makeUnmakePacked() {
+      int []list = packedMoves[board];
+      if (move == list.length) {
+        move = 0;
+        nextBoard();
+        list = packedMoves[board];
+      }
+      Board b = boards[board];
+      int m = list[move++];
+      b.makeMove(m);
+      b.reverseMove(m);
+      return b.getCurrentPlayer();
+    }
+
+    Microbenchmark.Operation operation(String name) {
+      if (name.equals("generateMoves"))
+        return this::generateMoves;
+      if (name.equals("makeUnmake"))
+        return this::makeUnmake;
+      if (name.equals("endGame"))
+        return this::endGame;
+      if (name.equals("moveOrdering"))
+        return this::moveOrdering;
+      if (name.equals("quickSort"))
+        return this::quickSort;
+      if (name.equals("generateMovesPacked"))
+        return this::generateMovesPacked;
+      if (name.equals("makeUnmakePacked"))
+        return this::makeUnmakePacked;
+      throw new Error("Unknown operation " + name);
+    }
+
+    static Move []toArray(Move list) {
+      List<Move> l = new ArrayList<Move>();
+      for (Move m = list; m != null; m = m.next)
+        l.add(m);
+      return l.toArray(new Move[0]);
+    }
+  }
+
+  public static void main(String []args) {
+    Microbenchmark bench = new Microbenchmark();
+    List<String> filters = new ArrayList<String>();
+    for (int i = 0; i < args.length; i++) {
+      if (args[i].equals("-wi"))
+        bench.setWarmupIterations(Integer.parseInt(args[++i]));
+      else if (args[i].equals("-i"))
+        bench.setIterations(Integer.parseInt(args[++i]));
+      else if (args[i].equals("-r"))
+        bench.setIterationTime(Long.parseLong(args[++i]));
+      else if (args[i].equals("-prof")) {
+        if (!args[++i].equals("gc"))
+          throw new Error("Unknown profiler " + args[i] + ", only gc is supported");
+        bench.setGCProfiler(true);
+      } else
+        filters.add(args[i]);
+    }
+
+    System.out.println("Benchmark positions version " + BenchmarkPositions.VERSION);
+    List<Microbenchmark.Result> results = new ArrayList<Microbenchmark.Result>();
+    for (String game : BenchmarkPositions.GAMES)
+      for (String operation : OPERATIONS)
+        for (String phase : BenchmarkPositions.PHASES) {
+          String name = game + "." + operation + "." + phase;
+          boolean packed = PACKED_GAMES.contains(game);
+          if (!selected(name, filters) || (operation.endsWith("Packed") && !packed))
+            continue;
+          Fixture fixture = new Fixture(BenchmarkPositions.positions(game, phase), packed);
+          Microbenchmark.Result r = bench.measure(name, fixture.operation(operation));
+          System.out.println(r);
+          results.add(r);
+        }
+    System.out.println();
+    Microbenchmark.print(results);
+  }
+
+  static boolean selected(String name, List<String> filters) {
+    if (filters.isEmpty())
+      return true;
+    for (String f : filters)
+      if (name.contains(f))
+        return true;
+    return false;
+  }
+}
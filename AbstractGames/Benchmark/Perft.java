@@ -0,0 +1,383 @@
+package AbstractGames.Benchmark;
+
+import AbstractGames.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Perft: the number of move sequences (leaf nodes) to a fixed depth, using
+ * nothing but Board.generateMoves, makeMove and reverseMove.
+ *
+ * As a benchmark it measures move generation and make/unmake with no search
+ * or evaluation around them. As a correctness gate (setChecking) it checks
+ * after every makeMove and reverseMove that Board.checkConsistency finds no
+ * problem, and after every reverseMove that the board (toString, side to
+ * move and hash key) is exactly what it was before the move. The first
+ * failure throws an Error naming the moves that lead to it.
+ *
+ * A finished game has no moves, so it counts 0 leaves above depth 0. Without
+ * checking the last ply only counts the generated moves (bulk counting).
+ *
+ * With setPacked the packed move API (Board.generateMoves(MoveStack),
+ * makeMove(int) and reverseMove(int)) is counted instead, and checking also
+ * compares the packed moves of every node with the packed generateMoves()
+ * list and with generateTacticalMoves plus generateQuietMoves, and checks
+ * that Board.moveIsValid accepts every move.
+ *
+ * Usage: Perft game depth [-divide] [-threads n] [-check] [-corpus] [-packed]
+ *   game     one of BenchmarkPositions.GAMES
+ *   -divide  the count of every root move
+ *   -threads split the root moves over a ForkJoinPool of n threads
+ *   -check   the correctness gate
+ *   -corpus  all the positions of BenchmarkPositions instead of the start
+ *   -packed  the packed move API
+ */
+public class Perft {
+
+  /**
+   * The leaf count below one root move.
+   */
+  public static class Division {
+    public final Move move;
+    public final long nodes;
+
+    Division(Move move, long nodes) {
+      this.move = move;
+      this.nodes = nodes;
+    }
+
+    public String toString() {
+      return move + ": " + nodes;
+    }
+  }
+
+  boolean checking = false;
+  boolean packed = false;
+  Move []path = new Move[0];  // Moves from the root, for the error messages
+  MoveStack stack = new MoveStack();
+
+  /**
+   * @param checking check the board after every move, see the class comment
+   */
+  public void setChecking(boolean checking) {
+    this.checking = checking;
+  }
+
+  /**
+   * @param packed count with the packed move API
+   */
+  public void setPacked(boolean packed) {
+    this.packed = packed;
+  }
+
+  /**
+   * @return the number of leaf nodes depth plies below board, which is left
+   *         unchanged
+   */
+  public long perft(Board board, int depth) {
+    if (path.length < depth)
+      path = new Move[depth];
+    if (checking)
+      check(board, board.checkConsistency(), null, -1);
+    return perft(board, depth, 0);
+  }
+
+  long perft(Board board, int depth, int ply) {
+    if (depth == 0)
+      return 1;
+    if (board.endGame() != Board.GAME_CONTINUE)
+      return 0;
+    if (packed)
+      return packedPerft(board, depth, ply);
+    long nodes = 0;
+    Move moves = board.generateMoves();
+    if (depth == 1 && !checking) {
+      for (Move m = moves; m != null; m = m.next)
+        nodes++;
+      return nodes;
+    }
+    for (Move m = moves; m != null; m = m.next)
+      nodes += perft(board, m, depth, ply);
+    return nodes;
+  }
+
+  /**
+   * @return the leaf count of the move m of board, with the checks
+   */
+  long perft(Board board, Move m, int depth, int ply) {
+    path[ply] = m;
+    String before = checking ? snapshot(board) : null;
+    board.makeMove(m);
+    if (checking)
+      check(board, board.checkConsistency(), "makeMove", ply);
+    long nodes = perft(board, depth - 1, ply + 1);
+    board.reverseMove(m);
+    if (checking) {
+      check(board, board.checkConsistency(), "reverseMove", ply);
+      String after = snapshot(board);
+      if (!after.equals(before))
+        check(board, "the board differs from the board before the move:\n" + before + "\n" + after, "reverseMove", ply);
+    }
+    return nodes;
+  }
+
+  long packedPerft(Board board, int depth, int ply) {
+    int start = stack.size();
+    int count = board.generateMoves(stack);
+    long nodes = 0;
+    if (depth == 1 && !checking) {
+      nodes = count;
+    } else {
+      if (checking)
+        checkPackedMoves(board, start, ply);
+      for (int i = start; i < start + count; i++)
+        nodes += perft(board, stack.get(i), depth, ply);
+    }
+    stack.popTo(start);
+    return nodes;
+  }
+
+  /**
+   * perft(Board, Move, int, int) with a packed move.
+   */
+  long perft(Board board, int move, int depth, int ply) {
+    if (checking)
+      path[ply] = board.unpackMove(move);
+    String before = checking ? snapshot(board) : null;
+    board.makeMove(move);
+    if (checking)
+      check(board, board.checkConsistency(), "makeMove(int)", ply);
+    long nodes = perft(board, depth - 1, ply + 1);
+    board.reverseMove(move);
+    if (checking) {
+      check(board, board.checkConsistency(), "reverseMove(int)", ply);
+      String after = snapshot(board);
+      if (!after.equals(before))
+        check(board, "the board differs from the board before the move:\n" + before + "\n" + after, "reverseMove(int)", ply);
+    }
+    return nodes;
+  }
+
+  /**
+   * Check that the packed moves from start to the top of the stack are the
+   * packed generateMoves() list.
+   */
+  void checkPackedMoves(Board board, int start, int ply) {
+    List<Integer> packedMoves = new ArrayList<Integer>();
+    for (int i = start; i < stack.size(); i++)
+      packedMoves.add(stack.get(i));
+    List<Integer> objectMoves = new ArrayList<Integer>();
+    for (Move m = board.generateMoves(); m != null; m = m.next)
+      objectMoves.add(board.packMove(m));
+    Collections.sort(packedMoves);
+    Collections.sort(objectMoves);
+    String operation = (ply == 0) ? null : "makeMove(int)";
+    if (!packedMoves.equals(objectMoves))
+      check(board, "generateMoves(MoveStack) " + packedMoves + " is not generateMoves() " + objectMoves, operation, ply - 1);
+
+    int top = stack.size();
+    int tactical = board.generateTacticalMoves(stack);
+    board.generateQuietMoves(stack);
+    List<Integer> stagedMoves = new ArrayList<Integer>();
+    for (int i = top; i < stack.size(); i++) {
+      int m = stack.get(i);
+      stagedMoves.add(m);
+      if (((m & Move.PACKED_TACTICAL) != 0) != (i < top + tactical))
+        check(board, "generateTacticalMoves or generateQuietMoves pushed the wrong kind of move " + m, operation, ply - 1);
+      if (!board.moveIsValid(m))
+        check(board, "moveIsValid(" + m + ") is false for a generated move", operation, ply - 1);
+    }
+    stack.popTo(top);
+    Collections.sort(stagedMoves);
+    if (!stagedMoves.equals(packedMoves))
+      check(board, "generateTacticalMoves and generateQuietMoves " + stagedMoves + " are not generateMoves(MoveStack) " +
+          packedMoves, operation, ply - 1);
+  }
+
+  /**
+   * @return the leaf count of every root move, in generateMoves order
+   */
+  public List<Division> divide(Board board, int depth) {
+    List<Division> result = new ArrayList<Division>();
+    if (depth < 1 || board.endGame() != Board.GAME_CONTINUE)
+      return result;
+    if (path.length < depth)
+      path = new Move[depth];
+    if (checking)
+      check(board, board.checkConsistency(), null, -1);
+    if (packed) {
+      stack.clear();
+      int count = board.generateMoves(stack);
+      if (checking)
+        checkPackedMoves(board, 0, 0);
+      for (int i = 0; i < count; i++)
+        result.add(new Division(board.unpackMove(stack.get(i)), perft(board, stack.get(i), depth, 0)));
+      stack.clear();
+      return result;
+    }
+    for (Move m = board.generateMoves(); m != null; m = m.next)
+      result.add(new Division(m, perft(board, m, depth, 0)));
+    return result;
+  }
+
+  /**
+   * Count on a ForkJoinPool: each root move is a task that plays the move on
+   * its own board.copy(), so the board must implement copy().
+   *
+   * @return the leaf count of every root move, in generateMoves order
+   */
+  public List<Division> parallelDivide(Board board, int depth, int threads) {
+    List<Division> result = new ArrayList<Division>();
+    if (depth < 1 || board.endGame() != Board.GAME_CONTINUE)
+      return result;
+    if (checking)
+      check(board, board.checkConsistency(), null, -1);
+    List<RootTask> tasks = new ArrayList<RootTask>();
+    int index = 0;
+    if (packed) {
+      MoveStack moves = new MoveStack();
+      int count = board.generateMoves(moves);
+      for (int i = 0; i < count; i++)
+        tasks.add(new RootTask(board.copy(), board.unpackMove(moves.get(i)), index++, depth));
+    } else {
+      for (Move m = board.generateMoves(); m != null; m = m.next)
+        tasks.add(new RootTask(board.copy(), m, index++, depth));
+    }
+    ForkJoinPool pool = new ForkJoinPool(threads);
+    try {
+      for (RootTask t : tasks)
+        pool.execute(t);
+      for (RootTask t : tasks)
+        result.add(new Division(t.move, t.join()));
+    } finally {
+      pool.shutdown();
+    }
+    return result;
+  }
+
+  public long parallelPerft(Board board, int depth, int threads) {
+    if (depth == 0)
+      return 1;
+    long nodes = 0;
+    for (Division d : parallelDivide(board, depth, threads))
+      nodes += d.nodes;
+    return nodes;
+  }
+
+  /**
+   * One root move searched on its own copy of the board.
+   */
+  class RootTask extends RecursiveTask<Long> {
+    private static final long serialVersionUID = 1L;
+
+    final Board board;  // The copy
+    final Move move;    // The move of the original board, for the Division
+    final int index, depth;
+
+    RootTask(Board board, Move move, int index, int depth) {
+      this.board = board;
+      this.move = move;
+      this.index = index;
+      this.depth = depth;
+    }
+
+    protected Long compute() {
+      Perft perft = new Perft();
+      perft.setChecking(checking);
+      perft.setPacked(packed);
+      perft.path = new Move[depth];
+      // The same move of the copy: copies generate their moves in the same order.
+      if (packed) {
+        MoveStack moves = new MoveStack();
+        board.generateMoves(moves);
+        return perft.perft(board, moves.get(index), depth, 0);
+      }
+      Move m = board.generateMoves();
+      for (int i = 0; i < index; i++)
+        m = m.next;
+      return perft.perft(board, m, depth, 0);
+    }
+  }
+
+  static String snapshot(Board board) {
+    String s = board.toString() + " to move " + board.getCurrentPlayer();
+    if (board instanceof TranspositionBoard)
+      s += " key " + ((TranspositionBoard)board).getHashKey();
+    return s;
+  }
+
+  /**
+   * Throw an Error if there is a problem.
+   *
+   * @param operation the operation after which the board was checked, null
+   *                  for the root position
+   * @param ply the ply of the move in path
+   */
+  void check(Board board, String problem, String operation, int ply) {
+    if (problem == null)
+      return;
+    if (operation == null)
+      throw new Error("Perft: the root position is not consistent: " + problem + "\n" + board);
+    StringBuilder line = new StringBuilder();
+    for (int i = 0; i <= ply; i++)
+      line.append(' ').append(path[i]);
+    throw new Error("Perft: after " + operation + " of the moves" + line + ": " + problem + "\n" + board);
+  }
+
+  public static void main(String []args) {
+    if (args.length < 2)
+      throw new Error("Usage: Perft game depth [-divide] [-threads n] [-check] [-corpus] [-packed]");
+    String game = args[0];
+    int depth = Integer.parseInt(args[1]);
+    boolean divide = false, corpus = false;
+    int threads = 1;
+    Perft perft = new Perft();
+    for (int i = 2; i < args.length; i++) {
+      if (args[i].equals("-divide"))
+        divide = true;
+      else if (args[i].equals("-threads"))
+        threads = Integer.parseInt(args[++i]);
+      else if (args[i].equals("-check"))
+        perft.setChecking(true);
+      else if (args[i].equals("-corpus"))
+        corpus = true;
+      else if (args[i].equals("-packed"))
+        perft.setPacked(true);
+      else
+        throw new Error("Unknown option " + args[i]);
+    }
+
+    List<Board> boards = new ArrayList<Board>();
+    if (corpus) {
+      for (BenchmarkPositions.Position p : BenchmarkPositions.positions(game, null))
+        boards.add(BenchmarkPositions.load(p));
+    } else {
+      boards.add(BenchmarkPositions.newBoard(game));
+    }
+
+    for (Board board : boards) {
+      System.out.println(board);
+      for (int d = (divide ? depth : 1); d <= depth; d++) {
+        long startTime = System.currentTimeMillis();
+        long nodes = 0;
+        if (divide || threads > 1) {
+          List<Division> divisions = (threads > 1) ? perft.parallelDivide(board, d, threads) : perft.divide(board, d);
+          for (Division division : divisions) {
+            if (divide)
+              System.out.println(division);
+            nodes += division.nodes;
+          }
+        } else {
+          nodes = perft.perft(board, d);
+        }
+        long elapsedTime = System.currentTimeMillis() - startTime;
+        System.out.println("Depth: " + d + " Nodes: " + nodes + " Time: " + elapsedTime / 1000.0 +
+            " Nodes per Second = " + (elapsedTime == 0 ? 0 : (long)(nodes / (elapsedTime / 1000.0))));
+      }
+    }
+  }
+}
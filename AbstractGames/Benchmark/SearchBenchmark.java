@@ -0,0 +1,391 @@
+package AbstractGames.Benchmark;
+
+import AbstractGames.*;
+import AbstractGames.Breakthrough.BreakthroughBoard;
+import AbstractGames.Breakthrough.BreakthroughMove;
+import AbstractGames.Breakthrough.JSK.JSKMinimaxAlphaBetaCSCE686;
+import AbstractGames.Breakthrough.JSK.JSKRandomCSCE686;
+import AbstractGames.Breakthrough.JSK.JSKSimulatedAnnealingCSCE686;
+import AbstractGames.LinesOfAction.LOABoard;
+import AbstractGames.LinesOfAction.LOAMove;
+import AbstractGames.mnkGame.mnkMove;
+import AbstractGames.mnkGame.phantommnkBoard;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * End to end benchmark of the searches on the positions of
+ * BenchmarkPositions, with a regression check against a stored baseline.
+ *
+ * Every search runs to a fixed depth on every position of the games it can
+ * play. After the warmup runs the fastest of the measured runs is kept, and
+ * each of its iterations gives a row: the nodes and the milliseconds to reach
+ * that depth (both summed over the iterations so far) and the nodes per
+ * second. The last row of a search also has the chosen move and its score.
+ * Searches without statistics (Search.getStatistics() is null) give a single
+ * row with the wall clock time and -1 for the nodes.
+ *
+ * The rows are written as tab separated values, headed by the version of the
+ * benchmark positions. Two files are compared row by row (search, game,
+ * position and depth). A node count more than the tolerance above the
+ * baseline is a regression, as is a total time of a search on a game (the
+ * sum over its positions) more than the tolerance above the baseline total.
+ * Single rows that are slower, at least the minimum time in the baseline,
+ * and a different node count, move or score are reported but pass. Files of
+ * other position versions are not comparable.
+ *
+ * Usage: SearchBenchmark [-o file] [-baseline file] [-tolerance percent]
+ *                        [-mintime ms] [-warmup n] [-runs n] [filter ...]
+ *        SearchBenchmark -compare file baseline [-tolerance percent] [-mintime ms]
+ *   -o         the results file (search-benchmark.tsv)
+ *   -baseline  compare the results with this file
+ *   -tolerance allowed increase in percent (20)
+ *   -mintime   baseline milliseconds below which times are not compared (50)
+ *   -warmup    unmeasured runs of every search and position (1)
+ *   -runs      measured runs of every search and position (3)
+ *   filter     run only the searches whose search.game name contains one of
+ *              the filters, e.g. Transposition or Breakthrough
+ *
+ * With regressions the program exits with status 1.
+ */
+public class SearchBenchmark {
+
+  /**
+   * Makes a new search for a benchmark.
+   */
+  public interface Factory {
+    Search<? extends Board, ? extends Move> create();
+  }
+
+  /**
+   * A search, the game it plays and the depth it searches to.
+   */
+  public static class Benchmark {
+    public final String search;
+    public final String game;
+    public final int depth;
+    final Factory factory;
+
+    Benchmark(String search, String game, int depth, Factory factory) {
+      this.search = search;
+      this.game = game;
+      this.depth = depth;
+      this.factory = factory;
+    }
+
+    public String getName() {
+      return search + "." + game;
+    }
+  }
+
+  /**
+   * One line of the results file.
+   */
+  public static class Row {
+    public String search, game, position;
+    public int depth;
+    public long nodes;       // Up to and including depth, -1 if the search does not count them
+    public long time;        // Milliseconds to finish depth
+    public long nodesPerSecond;
+    public String move = "-";
+    public String score = "-";
+
+    public String key() {
+      return search + "\t" + game + "\t" + position + "\t" + depth;
+    }
+
+    public String toString() {
+      return key() + "\t" + nodes + "\t" + time + "\t" + nodesPerSecond + "\t" + move + "\t" + score;
+    }
+
+    static Row parse(String line) {
+      String []f = line.split("\t");
+      if (f.length != 9)
+        throw new Error("Not a search benchmark row: " + line);
+      Row r = new Row();
+      r.search = f[0];
+      r.game = f[1];
+      r.position = f[2];
+      r.depth = Integer.parseInt(f[3]);
+      r.nodes = Long.parseLong(f[4]);
+      r.time = Long.parseLong(f[5]);
+      r.nodesPerSecond = Long.parseLong(f[6]);
+      r.move = f[7];
+      r.score = f[8];
+      return r;
+    }
+  }
+
+  static final String HEADER = "search\tgame\tposition\tdepth\tnodes\ttime_ms\tnodes_per_sec\tmove\tscore";
+  static final String VERSION_LINE = "# SearchBenchmark positions version ";
+
+  /**
+   * The benchmarks, at most about a second a position. The minimax searches
+   * deepen by two plies from 1, so their depths are odd. The depths fit the
+   * branching factors: deeper for the small m,n,k boards, shallower for LOA.
+   */
+  public static final Benchmark []BENCHMARKS = {
+    new Benchmark("MinimaxSearch", BenchmarkPositions.BREAKTHROUGH, 5, () -> new MinimaxSearch<BreakthroughBoard, BreakthroughMove>()),
+    new Benchmark("MinimaxSearch", BenchmarkPositions.LOA, 3, () -> new MinimaxSearch<LOABoard, LOAMove>()),
+    new Benchmark("MinimaxSearch", BenchmarkPositions.MNK, 5, () -> new MinimaxSearch<Board, mnkMove>()),
+    new Benchmark("MinimaxSearch", BenchmarkPositions.TICTACTOE, 9, () -> new MinimaxSearch<Board, Move>()),
+    new Benchmark("MinimaxAlphaBetaSearch", BenchmarkPositions.BREAKTHROUGH, 7, () -> new MinimaxAlphaBetaSearch<BreakthroughBoard, BreakthroughMove>()),
+    new Benchmark("MinimaxAlphaBetaSearch", BenchmarkPositions.LOA, 5, () -> new MinimaxAlphaBetaSearch<LOABoard, LOAMove>()),
+    new Benchmark("MinimaxAlphaBetaSearch", BenchmarkPositions.MNK, 9, () -> new MinimaxAlphaBetaSearch<Board, mnkMove>()),
+    new Benchmark("MinimaxAlphaBetaSearch", BenchmarkPositions.TICTACTOE, 9, () -> new MinimaxAlphaBetaSearch<Board, Move>()),
+    new Benchmark("PackedAlphaBetaSearch", BenchmarkPositions.BREAKTHROUGH, 7, () -> new PackedAlphaBetaSearch<BreakthroughBoard, BreakthroughMove>()),
+    new Benchmark("PackedAlphaBetaSearch", BenchmarkPositions.LOA, 5, () -> new PackedAlphaBetaSearch<LOABoard, LOAMove>()),
+    new Benchmark("PackedAlphaBetaSearch", BenchmarkPositions.MNK, 9, () -> new PackedAlphaBetaSearch<Board, mnkMove>()),
+    new Benchmark("MinimaxAlphaBetaTransposition", BenchmarkPositions.BREAKTHROUGH, 7, () -> new MinimaxAlphaBetaTransposition<BreakthroughBoard, BreakthroughMove>()),
+    new Benchmark("MinimaxAlphaBetaTransposition", BenchmarkPositions.LOA, 5, () -> new MinimaxAlphaBetaTransposition<LOABoard, LOAMove>()),
+    new Benchmark("ExpectiminimaxSearch", BenchmarkPositions.PHANTOM_MNK, 5, () -> new ExpectiminimaxSearch<phantommnkBoard, mnkMove>()),
+    new Benchmark("JSKMinimaxAlphaBetaCSCE686", BenchmarkPositions.BREAKTHROUGH, 5, () -> new JSKMinimaxAlphaBetaCSCE686<BreakthroughBoard, BreakthroughMove>()),
+    new Benchmark("JSKRandomCSCE686", BenchmarkPositions.BREAKTHROUGH, 1, () -> new JSKRandomCSCE686<BreakthroughBoard, BreakthroughMove>(new MersenneTwister(1))),
+    new Benchmark("JSKSimulatedAnnealingCSCE686", BenchmarkPositions.BREAKTHROUGH, 1, () -> {
+      JSKSimulatedAnnealingCSCE686<BreakthroughBoard, BreakthroughMove> s = new JSKSimulatedAnnealingCSCE686<BreakthroughBoard, BreakthroughMove>();
+      s.ogNumGames = 20;  // 10000 random games per step take minutes a move
+      return s;
+    }),
+  };
+
+  int warmupRuns = 1;
+  int runs = 3;
+
+  public void setWarmupRuns(int warmupRuns) {
+    this.warmupRuns = warmupRuns;
+  }
+
+  public void setRuns(int runs) {
+    this.runs = Math.max(1, runs);
+  }
+
+  /**
+   * Run the benchmark on every position of its game.
+   *
+   * @return the rows of the fastest run of every position
+   */
+  public List<Row> run(Benchmark b) {
+    List<Row> rows = new ArrayList<Row>();
+    Search<? extends Board, ? extends Move> search = b.factory.create();
+    for (String phase : BenchmarkPositions.PHASES) {
+      List<BenchmarkPositions.Position> positions = BenchmarkPositions.positions(b.game, phase);
+      for (int i = 0; i < positions.size(); i++) {
+        String position = phase + "." + (i + 1);
+        for (int r = 0; r < warmupRuns; r++)
+          run(b, search, positions.get(i), position);
+        List<Row> best = null;
+        for (int r = 0; r < runs; r++) {
+          List<Row> run = run(b, search, positions.get(i), position);
+          if (best == null || run.get(run.size() - 1).time < best.get(best.size() - 1).time)
+            best = run;
+        }
+        rows.addAll(best);
+      }
+    }
+    return rows;
+  }
+
+  /**
+   * One search of a position, with the progress printing of the search's
+   * statistics switched off.
+   */
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  List<Row> run(Benchmark b, Search search, BenchmarkPositions.Position p, String position) {
+    Board board = BenchmarkPositions.load(p);
+    SearchStatistics statistics = search.getStatistics();
+    if (statistics != null)
+      statistics.setPrinting(false);
+    long startTime = System.nanoTime();
+    Move move = (Move)search.findBestMove(board, b.depth);
+    long elapsedTime = (System.nanoTime() - startTime) / 1000000;
+
+    List<Row> rows = new ArrayList<Row>();
+    if (statistics != null && !statistics.getIterations().isEmpty()) {
+      long nodes = 0, time = 0;
+      for (SearchStatistics.Iteration it : statistics.getIterations()) {
+        nodes += it.nodes;
+        time += it.time;
+        rows.add(row(b, position, it.depth, nodes, time));
+      }
+    } else {
+      rows.add(row(b, position, b.depth, -1, elapsedTime));
+    }
+    Row last = rows.get(rows.size() - 1);
+    if (move != null) {
+      last.move = move.toString().replaceAll("\\s", "");
+      last.score = Double.toString(move.value);
+    }
+    return rows;
+  }
+
+  static Row row(Benchmark b, String position, int depth, long nodes, long time) {
+    Row r = new Row();
+    r.search = b.search;
+    r.game = b.game;
+    r.position = position;
+    r.depth = depth;
+    r.nodes = nodes;
+    r.time = time;
+    r.nodesPerSecond = (nodes < 0 || time == 0) ? -1 : (long)(nodes / (time / 1000.0));
+    return r;
+  }
+
+  public static void write(File file, List<Row> rows) throws IOException {
+    PrintWriter w = new PrintWriter(new FileWriter(file));
+    try {
+      w.println(VERSION_LINE + BenchmarkPositions.VERSION);
+      w.println(HEADER);
+      for (Row r : rows)
+        w.println(r);
+    } finally {
+      w.close();
+    }
+  }
+
+  /**
+   * @return the rows of a results file, which must be of the current
+   *         positions version
+   */
+  public static List<Row> read(File file) throws IOException {
+    List<Row> rows = new ArrayList<Row>();
+    BufferedReader in = new BufferedReader(new FileReader(file));
+    try {
+      String line = in.readLine();
+      if (line == null || !line.startsWith(VERSION_LINE))
+        throw new IOException("Not a search benchmark file: " + file);
+      int version = Integer.parseInt(line.substring(VERSION_LINE.length()).trim());
+      if (version != BenchmarkPositions.VERSION)
+        throw new IOException(file + " is of benchmark positions version " + version + ", not " + BenchmarkPositions.VERSION +
+            ", the results are not comparable");
+      while ((line = in.readLine()) != null) {
+        if (line.isEmpty() || line.startsWith("#") || line.equals(HEADER))
+          continue;
+        rows.add(Row.parse(line));
+      }
+    } finally {
+      in.close();
+    }
+    return rows;
+  }
+
+  /**
+   * Compare the rows with the baseline and print the regressions and the
+   * changes, see the class comment.
+   *
+   * @param tolerance allowed increase, 0.1 for 10%
+   * @param minTime milliseconds below which the times are not compared
+   * @return the number of regressions
+   */
+  public static int compare(List<Row> rows, List<Row> baseline, double tolerance, long minTime) {
+    Map<String, Row> base = new HashMap<String, Row>();
+    for (Row r : baseline)
+      base.put(r.key(), r);
+    Map<String, long[]> totals = new LinkedHashMap<String, long[]>();  // Baseline and current time of the searches
+    int regressions = 0, changes = 0, compared = 0;
+    for (Row r : rows) {
+      String name = r.search + " " + r.game + " " + r.position + " depth " + r.depth;
+      Row old = base.remove(r.key());
+      if (old == null) {
+        System.out.println("New:        " + name);
+        continue;
+      }
+      compared++;
+      if (old.time >= minTime && r.time > old.time * (1.0 + tolerance))
+        System.out.println("Slower:     " + name + " time " + old.time + " ms -> " + r.time + " ms (" + percent(old.time, r.time) + ")");
+      if (old.nodes > 0 && r.nodes > old.nodes * (1.0 + tolerance)) {
+        System.out.println("REGRESSION: " + name + " nodes " + old.nodes + " -> " + r.nodes + " (" + percent(old.nodes, r.nodes) + ")");
+        regressions++;
+      } else if (old.nodes != r.nodes) {
+        System.out.println("Changed:    " + name + " nodes " + old.nodes + " -> " + r.nodes);
+        changes++;
+      }
+      if (!old.move.equals(r.move) || !old.score.equals(r.score)) {
+        System.out.println("Changed:    " + name + " move " + old.move + " " + old.score + " -> " + r.move + " " + r.score);
+        changes++;
+      }
+      if (!r.move.equals("-") && !old.move.equals("-")) {
+        long []t = totals.computeIfAbsent(r.search + " " + r.game, k -> new long[2]);
+        t[0] += old.time;
+        t[1] += r.time;
+      }
+    }
+    for (Row old : base.values())
+      System.out.println("Missing:    " + old.search + " " + old.game + " " + old.position + " depth " + old.depth);
+
+    // One row is too short to time reliably, the sum over the positions decides.
+    for (Map.Entry<String, long[]> e : totals.entrySet()) {
+      long []t = e.getValue();
+      String line = e.getKey() + " total time " + t[0] + " ms -> " + t[1] + " ms (" + (t[0] == 0 ? "-" : percent(t[0], t[1])) + ")";
+      if (t[0] >= minTime && t[1] > t[0] * (1.0 + tolerance)) {
+        System.out.println("REGRESSION: " + line);
+        regressions++;
+      } else {
+        System.out.println("            " + line);
+      }
+    }
+    System.out.println("Compared " + compared + " rows with a tolerance of " + String.format("%.1f%%", 100.0 * tolerance) +
+        ": " + regressions + " regressions, " + changes + " changes");
+    return regressions;
+  }
+
+  static String percent(long from, long to) {
+    return String.format("%+.1f%%", 100.0 * (to - from) / from);
+  }
+
+  public static void main(String []args) throws IOException {
+    SearchBenchmark bench = new SearchBenchmark();
+    File output = new File("search-benchmark.tsv");
+    File baseline = null, compare = null;
+    double tolerance = 0.20;
+    long minTime = 50;
+    List<String> filters = new ArrayList<String>();
+    for (int i = 0; i < args.length; i++) {
+      if (args[i].equals("-o"))
+        output = new File(args[++i]);
+      else if (args[i].equals("-baseline"))
+        baseline = new File(args[++i]);
+      else if (args[i].equals("-compare")) {
+        compare = new File(args[++i]);
+        baseline = new File(args[++i]);
+      } else if (args[i].equals("-tolerance"))
+        tolerance = Double.parseDouble(args[++i]) / 100.0;
+      else if (args[i].equals("-mintime"))
+        minTime = Long.parseLong(args[++i]);
+      else if (args[i].equals("-warmup"))
+        bench.setWarmupRuns(Integer.parseInt(args[++i]));
+      else if (args[i].equals("-runs"))
+        bench.setRuns(Integer.parseInt(args[++i]));
+      else if (args[i].startsWith("-"))
+        throw new Error("Unknown option " + args[i]);
+      else
+        filters.add(args[i]);
+    }
+
+    List<Row> rows;
+    if (compare != null) {
+      rows = read(compare);
+    } else {
+      System.out.println("Benchmark positions version " + BenchmarkPositions.VERSION);
+      System.out.println(HEADER);
+      rows = new ArrayList<Row>();
+      for (Benchmark b : BENCHMARKS) {
+        if (!MoveGenerationBenchmark.selected(b.getName(), filters))
+          continue;
+        for (Row r : bench.run(b)) {
+          System.out.println(r);
+          rows.add(r);
+        }
+      }
+      write(output, rows);
+      System.out.println("Results written to " + output);
+    }
+
+    if (baseline != null && compare(rows, read(baseline), tolerance, minTime) > 0)
+      System.exit(1);
+  }
+}
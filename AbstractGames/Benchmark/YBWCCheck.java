@@ -0,0 +1,96 @@
+package AbstractGames.Benchmark;
+
+import AbstractGames.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Checks that MinimaxAlphaBetaYBWC searches the same tree as
+ * MinimaxAlphaBetaSearch: on every position of BenchmarkPositions, at the
+ * depths of the MinimaxAlphaBetaSearch benchmarks, it must return the same
+ * move and score and count the same nodes at every iteration, with one
+ * thread and with several.
+ *
+ * Usage: YBWCCheck [-threads n] [-split depth] [filter ...]
+ *   -threads  threads of the parallel runs (4)
+ *   -split    minimum remaining depth at which siblings are forked (3)
+ *   filter    check only the games whose name contains one of the filters
+ *
+ * With a difference the program exits with status 1.
+ */
+public class YBWCCheck {
+
+  /**
+   * Compare the rows of a search with the rows of the serial search.
+   *
+   * @return the number of differences
+   */
+  static int compare(List<SearchBenchmark.Row> rows, List<SearchBenchmark.Row> serial) {
+    int differences = 0;
+    if (rows.size() != serial.size()) {
+      System.out.println("DIFFERENT ITERATIONS " + rows.get(0).search + " " + rows.get(0).game + " " +
+          rows.get(0).position + ": " + rows.size() + " serial " + serial.size());
+      return 1;
+    }
+    for (int i = 0; i < rows.size(); i++) {
+      SearchBenchmark.Row r = rows.get(i), s = serial.get(i);
+      if (r.nodes != s.nodes || !r.move.equals(s.move) || !r.score.equals(s.score)) {
+        System.out.println("DIFFERENT " + r + "\tserial " + s.nodes + "\t" + s.move + "\t" + s.score);
+        differences++;
+      }
+    }
+    return differences;
+  }
+
+  public static void main(String []args) {
+    int threads = 4;
+    int splitDepth = 3;
+    List<String> filters = new ArrayList<String>();
+    for (int i = 0; i < args.length; i++) {
+      if (args[i].equals("-threads"))
+        threads = Integer.parseInt(args[++i]);
+      else if (args[i].equals("-split"))
+        splitDepth = Integer.parseInt(args[++i]);
+      else if (args[i].startsWith("-"))
+        throw new Error("Unknown option " + args[i]);
+      else
+        filters.add(args[i]);
+    }
+
+    SearchBenchmark bench = new SearchBenchmark();
+    bench.setWarmupRuns(0);
+    bench.setRuns(1);
+    int differences = 0;
+    int []threadCounts = {1, threads};
+    for (SearchBenchmark.Benchmark b : SearchBenchmark.BENCHMARKS) {
+      if (!b.search.equals("MinimaxAlphaBetaSearch") || !MoveGenerationBenchmark.selected(b.game, filters))
+        continue;
+      List<SearchBenchmark.Row> serial = bench.run(b);
+      for (int t : threadCounts) {
+        final int n = t, split = splitDepth;
+        SearchBenchmark.Benchmark ybwc = new SearchBenchmark.Benchmark("MinimaxAlphaBetaYBWC-" + n, b.game, b.depth,
+            () -> new MinimaxAlphaBetaYBWC<Board, Move>(n, split));
+        List<SearchBenchmark.Row> rows = bench.run(ybwc);
+        int d = 0;
+        for (int from = 0, to; from < rows.size(); from = to) {
+          String position = rows.get(from).position;
+          for (to = from; to < rows.size() && rows.get(to).position.equals(position); to++)
+            ;
+          List<SearchBenchmark.Row> serialRows = new ArrayList<SearchBenchmark.Row>();
+          for (SearchBenchmark.Row s : serial)
+            if (s.position.equals(position))
+              serialRows.add(s);
+          d += compare(rows.subList(from, to), serialRows);
+        }
+        SearchBenchmark.Row last = rows.get(rows.size() - 1);
+        System.out.println(ybwc.getName() + " depth " + b.depth + ": " + (d == 0 ? "same as serial" : d + " differences") +
+            " (last position " + last.position + " nodes " + last.nodes + " " + last.move + " " + last.score + ")");
+        differences += d;
+      }
+    }
+
+    if (differences > 0)
+      System.exit(1);
+  }
+}
@@ -14,6 +14,31 @@ public abstract class Board {
    */
   public abstract Move generateMoves();
 
+  /**
+   * Return the moves searched by the quiescence search: captures, and any
+   * other move that can change the evaluation sharply (see isThreat).
+   *
+   * Games without a quiescence search do not need to override this, with no
+   * captures the quiescence search is just the heuristic evaluation.
+   *
+   * @return list of capture and threat moves, null if there are none
+   */
+  public Move generateCaptures() {
+    return null;
+  }
+
+  /**
+   * A threat is a move from generateCaptures() that is not pruned by delta
+   * pruning because its value is not measured in material, e.g. a piece
+   * about to reach the goal row.
+   *
+   * @param m a move from generateCaptures()
+   * @return true if m must be searched even when far below alpha
+   */
+  public boolean isThreat(Move m) {
+    return false;
+  }
+
   // Move this to a GUI interface:
    // This method should return all of the possible moves for a provided subspace of the game state
   //public abstract Move generateMovesFromLocation();
@@ -71,6 +96,14 @@ public abstract class Board {
    */
   public abstract void moveOrderingData(Move best_move, int depth, boolean pruned);
 
+  /**
+   * @return true if moveOrdering uses the data given to moveOrderingData, so
+   * that the order of the moves depends on the positions searched before
+   */
+  public boolean usesMoveOrderingData() {
+    return true;
+  }
+
   /**
    * Get the current game state's player identifier
    *
@@ -95,4 +128,143 @@ public abstract class Board {
   public abstract Move newMove();
   
   public abstract void printBoardRep();
+
+  /**
+   * Create an independent copy of the current game state. Searches that run
+   * on more than one thread give each thread its own copy so that makeMove and
+   * reverseMove never modify state that another thread is reading.
+   *
+   * Games that are not searched in parallel do not need to override this.
+   *
+   * @return a copy of this board
+   */
+  public Board copy() {
+    throw new Error("copy() is not implemented for " + getClass().getName());
+  }
+
+  /**
+   * Check the data the board keeps besides the squares (piece lists, line
+   * counts, ...) against the squares, e.g. after every makeMove and
+   * reverseMove of a Perft run.
+   *
+   * Games without such data do not need to override this.
+   *
+   * @return null if the board is consistent, otherwise the first problem found
+   */
+  public String checkConsistency() {
+    return null;
+  }
+
+  /**
+   * Encode a move of this game as an int, e.g. for opening books stored on
+   * disk. The encoding only has to be unique among the moves of one position.
+   *
+   * @param m a move from generateMoves
+   * @return the code of the move
+   */
+  public int encodeMove(Move m) {
+    throw new Error("encodeMove() is not implemented for " + getClass().getName());
+  }
+
+  // Packed moves: an allocation free alternative to generateMoves(),
+  // makeMove(Move) and reverseMove(Move) for searches. A move is an int with
+  // the from and to squares of the game in Move.PACKED_SQUARES (the same code
+  // as encodeMove where the game has one) and the flags Move.PACKED_CAPTURE
+  // and Move.PACKED_THREAT. The board keeps whatever reverseMove(int) needs,
+  // so packed moves must be reversed in the opposite order they were made.
+  // The object API stays for the GUIs. A search may make moves of both APIs
+  // as long as each move is reversed with its own API, in the opposite order.
+
+  /**
+   * @return true if the board implements the packed moves
+   */
+  public boolean hasPackedMoves() {
+    return false;
+  }
+
+  /**
+   * Push the moves of the side to move on the stack, in any order.
+   *
+   * @param stack the move stack of the search
+   * @return the number of moves pushed
+   */
+  public int generateMoves(MoveStack stack) {
+    throw new Error("Packed moves are not implemented for " + getClass().getName());
+  }
+
+  /**
+   * Push the moves with Move.PACKED_TACTICAL flags, the first stage of a
+   * staged search (see MovePicker). Together with generateQuietMoves these
+   * are the moves of generateMoves(MoveStack). By default they are filtered
+   * from generateMoves(MoveStack), boards override both to generate less.
+   *
+   * @param stack the move stack of the search
+   * @return the number of moves pushed
+   */
+  public int generateTacticalMoves(MoveStack stack) {
+    int start = stack.size();
+    generateMoves(stack);
+    return stack.keep(start, Move.PACKED_TACTICAL, true);
+  }
+
+  /**
+   * Push the moves without Move.PACKED_TACTICAL flags, see
+   * generateTacticalMoves.
+   *
+   * @param stack the move stack of the search
+   * @return the number of moves pushed
+   */
+  public int generateQuietMoves(MoveStack stack) {
+    int start = stack.size();
+    generateMoves(stack);
+    return stack.keep(start, Move.PACKED_TACTICAL, false);
+  }
+
+  /**
+   * Is a packed move from another position, e.g. a hash or killer move, a
+   * move of this one? Flags included, so a valid move is exactly a move that
+   * generateMoves(MoveStack) pushes here.
+   *
+   * @param move any int
+   * @return true if the move may be made
+   */
+  public boolean moveIsValid(int move) {
+    throw new Error("Packed moves are not implemented for " + getClass().getName());
+  }
+
+  /**
+   * Execute a packed move from generateMoves(MoveStack).
+   *
+   * @param move the move to make
+   * @return true if success, false if not.
+   */
+  public boolean makeMove(int move) {
+    throw new Error("Packed moves are not implemented for " + getClass().getName());
+  }
+
+  /**
+   * Reverse the last packed move made.
+   *
+   * @param move the move to reverse
+   * @return true if success, false if not.
+   */
+  public boolean reverseMove(int move) {
+    throw new Error("Packed moves are not implemented for " + getClass().getName());
+  }
+
+  /**
+   * @param m a move of the side to move
+   * @return the packed move, with the flags of the current position
+   */
+  public int packMove(Move m) {
+    throw new Error("Packed moves are not implemented for " + getClass().getName());
+  }
+
+  /**
+   * @param move a packed move of the side to move
+   * @return the move object, e.g. for the result of a search
+   */
+  public Move unpackMove(int move) {
+    throw new Error("Packed moves are not implemented for " + getClass().getName());
+  }
 }
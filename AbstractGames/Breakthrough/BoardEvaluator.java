@@ -30,7 +30,19 @@ public class BoardEvaluator implements StaticBoardEvaluator {
   public BoardEvaluator(int numWeights) {
     numberOfWeights = numWeights;
     weights = new double[numberOfWeights];
-    initializeWeightVector();
+    initializeWeightVector(new MersenneTwister());
+  }
+
+  /**
+   * Random weights from a seed, the same seed gives the same weights.
+   *
+   * @param numWeights the number of evaluation functions
+   * @param seed the seed of the random weights
+   */
+  public BoardEvaluator(int numWeights, long seed) {
+    numberOfWeights = numWeights;
+    weights = new double[numberOfWeights];
+    initializeWeightVector(new MersenneTwister(seed));
   }
 
   /**
@@ -46,7 +58,7 @@ public class BoardEvaluator implements StaticBoardEvaluator {
       loadWeights(filename);
     } catch (FileNotFoundException ioe) {
       System.out.println("Error: Could not load weights file " + weightFileName + FILENAME_EXT + " from disk. Creating new weights.");
-//            initializeWeightVector();
+//            initializeWeightVector(new MersenneTwister());
     }
   }
 
@@ -81,8 +93,7 @@ public class BoardEvaluator implements StaticBoardEvaluator {
    * Initialize the weight vector with new values.
    * Each weight will be a real in [-0.5..0.5]
    */
-  private void initializeWeightVector() {
-    MersenneTwister r = new MersenneTwister();
+  private void initializeWeightVector(MersenneTwister r) {
     double randomdouble;
     int randomInt;
 
@@ -2,6 +2,8 @@ package AbstractGames.Breakthrough;
 
 import AbstractGames.*;
 
+import java.util.Arrays;
+
 /**
  *
  */
@@ -9,6 +11,7 @@ public class BreakthroughBoard extends TranspositionBoard {
 
   public static final int BOARD_SIZE = 5;
   public static final int MAX_DEPTH = 250;
+  public static final int NULL_MOVE_MIN_PIECES = 4; // Zugzwang guard for null move pruning
 
   public static final int EMPTY_SQUARE = -1;
   public static final int PLAYER_WHITE = 0;
@@ -36,6 +39,7 @@ public class BreakthroughBoard extends TranspositionBoard {
   public BreakthroughPiece piece_list[] = new BreakthroughPiece[2];
 
   private StaticBoardEvaluator staticBoardEvaluator;
+  private BreakthroughTablebase tablebase = null; // Exact values of the endgames, null for none
 
   //////////////////////////////
   //Begin feature constants for static board evaluator
@@ -57,6 +61,15 @@ public class BreakthroughBoard extends TranspositionBoard {
    */
   public int moveCount;
 
+  /**
+   * What makeMove(int) keeps for reverseMove(int), one entry per packed move
+   * made: the piece moved, what was on the to square and the piece captured.
+   */
+  BreakthroughPiece packed_pieces[] = new BreakthroughPiece[MAX_DEPTH];
+  BreakthroughPiece packed_captured_pieces[] = new BreakthroughPiece[MAX_DEPTH];
+  int packed_captured[] = new int[MAX_DEPTH];
+  int packed_ply = 0;
+
   /**
    * Data structures for move ordering.
    * killer_moves is the best move at each depth found so far
@@ -85,6 +98,55 @@ public class BreakthroughBoard extends TranspositionBoard {
     staticBoardEvaluator = h_value;
     initialize();
   }
+
+  /**
+   * Copy constructor. The copy owns its squares, line and quad counts, piece
+   * lists and move ordering data. It shares the static board evaluator and the
+   * transposition table storage with b, so positions searched on the copy are
+   * visible to searches on b.
+   *
+   * @param b the board to copy
+   */
+  private BreakthroughBoard(BreakthroughBoard b) {
+    staticBoardEvaluator = b.staticBoardEvaluator;
+    tablebase = b.tablebase;
+    to_move = b.to_move;
+    game_state = b.game_state;
+    owner = b.owner;
+    for (int i = 0; i < BOARD_SIZE; i++)
+      System.arraycopy(b.square[i], 0, square[i], 0, BOARD_SIZE);
+    System.arraycopy(b.vertical_count, 0, vertical_count, 0, vertical_count.length);
+    System.arraycopy(b.horizontal_count, 0, horizontal_count, 0, horizontal_count.length);
+    System.arraycopy(b.forward_diag_count, 0, forward_diag_count, 0, forward_diag_count.length);
+    System.arraycopy(b.back_diag_count, 0, back_diag_count, 0, back_diag_count.length);
+    for (int side = 0; side < 2; side++) {
+      for (int i = 0; i <= BOARD_SIZE; i++)
+        System.arraycopy(b.quad[side][i], 0, quad[side][i], 0, BOARD_SIZE + 1);
+      System.arraycopy(b.quadcount[side], 0, quadcount[side], 0, quadcount[side].length);
+      // Keep the piece order so the copy generates moves in the same order.
+      BreakthroughPiece tail = null;
+      for (BreakthroughPiece p = b.piece_list[side]; p != null; p = p.next) {
+        BreakthroughPiece q = new BreakthroughPiece(p.x, p.y, p.owner, null, tail);
+        if (tail == null)
+          piece_list[side] = q;
+        else
+          tail.next = q;
+        tail = q;
+      }
+    }
+    System.arraycopy(b.killer_moves, 0, killer_moves, 0, MAX_DEPTH);
+    for (int side = 0; side < 2; side++)
+      for (int x1 = 0; x1 < BOARD_SIZE; x1++)
+        for (int y1 = 0; y1 < BOARD_SIZE; y1++)
+          for (int x2 = 0; x2 < BOARD_SIZE; x2++)
+            System.arraycopy(b.history_moves[side][x1][y1][x2], 0, history_moves[side][x1][y1][x2], 0, BOARD_SIZE);
+    TranspositionTable_Yes = b.TranspositionTable_Yes;
+    KillerMoves_Yes = b.KillerMoves_Yes;
+    OutsideMoves_Yes = b.OutsideMoves_Yes;
+    HistoryMoves_Yes = b.HistoryMoves_Yes;
+    if (b.transpositionTable != null)
+      transpositionTable = new Transposition(b.transpositionTable);
+  }
  
 
   /**
@@ -116,15 +178,19 @@ public class BreakthroughBoard extends TranspositionBoard {
           piece_list[PLAYER_WHITE], null);
       piece_list[PLAYER_WHITE] = new BreakthroughPiece(i, BOARD_INDEX - 1, PLAYER_WHITE,
           piece_list[PLAYER_WHITE], null);
-      vertical_count[i] = 4;
     }
     recountQuads();
-    horizontal_count[0] = BOARD_SIZE;
-    horizontal_count[1] = BOARD_SIZE;
-    horizontal_count[BOARD_INDEX - 1] = BOARD_SIZE;
-    horizontal_count[BOARD_INDEX] = BOARD_SIZE;
 
-    // add diagonal counts, if useful for heuristics.
+    // Line counts, including the diagonals that makeMove keeps up to date.
+    Arrays.fill(vertical_count, 0);
+    Arrays.fill(horizontal_count, 0);
+    Arrays.fill(forward_diag_count, 0);
+    Arrays.fill(back_diag_count, 0);
+    for (int i = 0; i < BOARD_SIZE; i++)
+      for (int j = 0; j < BOARD_SIZE; j++)
+        if (square[i][j] != EMPTY_SQUARE)
+          addLines(i, j);
+
     // set transposition table to start position
     //set transposition table to start position
     if (TranspositionTable_Yes) {
@@ -238,41 +304,182 @@ public class BreakthroughBoard extends TranspositionBoard {
   public boolean makeMove(Move move) {
     BreakthroughMove m = (BreakthroughMove)move;
     // Check to see if this was a capture
-    // boolean moveWasACapture = piece_of(opponent(to_move), m.x2, m.y2);
-    int x1 = m.x1;
-    int y1 = m.y1;
-    int x2 = m.x2;
-    int y2 = m.y2;
-    m.captured = square[x2][y2];
+    m.captured = square[m.x2][m.y2];
+    m.piece = findPiece(m.x1, m.y1, square[m.x1][m.y1]);
+    BreakthroughPiece captured_piece = movePiece(m.x1, m.y1, m.x2, m.y2, m.piece);
+    if (captured_piece != null)
+      m.captured_piece = captured_piece;
+    return true;
+  }
+
+  /**
+   * Execute the removal of an action
+   *
+   * @param move Move the move to remove, should be the last move executed.
+   */
+  public boolean reverseMove(Move move) {
+    BreakthroughMove m = (BreakthroughMove) move;
+    unmovePiece(m.x1, m.y1, m.x2, m.y2, m.piece, m.captured, m.captured_piece);
+    return true;
+  }
+
+  public boolean hasPackedMoves() {
+    return true;
+  }
+
+  /**
+   * The packed moves, see Board.generateMoves(MoveStack). The squares are
+   * packed as in encodeMove, a move to the last two rows is a threat.
+   *
+   * @param stack the move stack of the search
+   * @return the number of moves pushed
+   */
+  public int generateMoves(MoveStack stack) {
+    return generateMoves(stack, true, true);
+  }
+
+  public int generateTacticalMoves(MoveStack stack) {
+    return generateMoves(stack, true, false);
+  }
+
+  public int generateQuietMoves(MoveStack stack) {
+    return generateMoves(stack, false, true);
+  }
+
+  /**
+   * @param tactical push the captures and threats
+   * @param quiet push the other moves
+   * @return the number of moves pushed
+   */
+  private int generateMoves(MoveStack stack, boolean tactical, boolean quiet) {
+    int count = 0;
+    int direction = (to_move == PLAYER_WHITE) ? -1 : 1;
+    int goal_row = (to_move == PLAYER_BLACK) ? BOARD_INDEX : 0;
+    for (BreakthroughPiece p = piece_list[to_move]; p != null; p = p.next) {
+      if (p.x < 0 || p.y < 0 || square[p.x][p.y] != to_move) // See generateMoves()
+        continue;
+      int y2 = p.y + direction;
+      int move = p.x | (p.y << 4) | (y2 << 12);
+      if (Math.abs(goal_row - y2) <= 1)
+        move |= Move.PACKED_THREAT;
+      // Forward:
+      if (square[p.x][y2] == EMPTY_SQUARE && ((move & Move.PACKED_TACTICAL) != 0 ? tactical : quiet)) {
+        stack.push(move | (p.x << 8));
+        count++;
+      }
+      // Diagonal Left and Right:
+      for (int x2 = p.x - 1; x2 <= p.x + 1; x2 += 2) {
+        if (x2 < 0 || x2 > BOARD_INDEX || square[x2][y2] == to_move)
+          continue;
+        int m = move | (x2 << 8) | (square[x2][y2] == EMPTY_SQUARE ? 0 : Move.PACKED_CAPTURE);
+        if ((m & Move.PACKED_TACTICAL) != 0 ? tactical : quiet) {
+          stack.push(m);
+          count++;
+        }
+      }
+    }
+    moveCount += count;
+    return count;
+  }
+
+  /**
+   * A move one row forward, straight to an empty square or diagonally to a
+   * square without a piece of the side to move, with the flags of
+   * generateMoves(MoveStack).
+   */
+  public boolean moveIsValid(int move) {
+    if (move < 0)
+      return false;
+    int x1 = move & 0xF;
+    int y1 = (move >> 4) & 0xF;
+    int x2 = (move >> 8) & 0xF;
+    int y2 = (move >> 12) & 0xF;
+    int direction = (to_move == PLAYER_WHITE) ? -1 : 1;
+    if (x1 > BOARD_INDEX || y1 > BOARD_INDEX || x2 > BOARD_INDEX || y2 != y1 + direction || y2 > BOARD_INDEX ||
+        Math.abs(x2 - x1) > 1 || square[x1][y1] != to_move)
+      return false;
+    if (x2 == x1 ? square[x2][y2] != EMPTY_SQUARE : square[x2][y2] == to_move)
+      return false;
+    int goal_row = (to_move == PLAYER_BLACK) ? BOARD_INDEX : 0;
+    int flags = (square[x2][y2] == EMPTY_SQUARE ? 0 : Move.PACKED_CAPTURE) |
+        (Math.abs(goal_row - y2) <= 1 ? Move.PACKED_THREAT : 0);
+    return move == (x1 | (y1 << 4) | (x2 << 8) | (y2 << 12) | flags);
+  }
+
+  /**
+   * Make a packed move. The pieces it moves and captures are kept on the
+   * packed move stack of the board for reverseMove(int).
+   *
+   * @param move a packed move
+   * @return true if complete
+   */
+  public boolean makeMove(int move) {
+    int x1 = move & 0xF;
+    int y1 = (move >> 4) & 0xF;
+    int x2 = (move >> 8) & 0xF;
+    int y2 = (move >> 12) & 0xF;
+    if (packed_ply == packed_captured.length) {
+      packed_pieces = Arrays.copyOf(packed_pieces, 2 * packed_ply);
+      packed_captured_pieces = Arrays.copyOf(packed_captured_pieces, 2 * packed_ply);
+      packed_captured = Arrays.copyOf(packed_captured, 2 * packed_ply);
+    }
+    BreakthroughPiece piece = findPiece(x1, y1, square[x1][y1]);
+    packed_pieces[packed_ply] = piece;
+    packed_captured[packed_ply] = square[x2][y2];
+    packed_captured_pieces[packed_ply++] = movePiece(x1, y1, x2, y2, piece);
+    return true;
+  }
+
+  /**
+   * Reverse the last packed move made.
+   *
+   * @param move the packed move
+   * @return true if complete
+   */
+  public boolean reverseMove(int move) {
+    packed_ply--;
+    unmovePiece(move & 0xF, (move >> 4) & 0xF, (move >> 8) & 0xF, (move >> 12) & 0xF,
+        packed_pieces[packed_ply], packed_captured[packed_ply], packed_captured_pieces[packed_ply]);
+    return true;
+  }
+
+  public int packMove(Move move) {
+    BreakthroughMove m = (BreakthroughMove)move;
+    int packed = encodeMove(m);
+    if (square[m.x2][m.y2] != EMPTY_SQUARE && square[m.x2][m.y2] != to_move)
+      packed |= Move.PACKED_CAPTURE;
+    if (isThreat(m))
+      packed |= Move.PACKED_THREAT;
+    return packed;
+  }
+
+  public Move unpackMove(int move) {
+    int x1 = move & 0xF;
+    int y1 = (move >> 4) & 0xF;
+    return new BreakthroughMove(x1, y1, (move >> 8) & 0xF, (move >> 12) & 0xF, 0, findPiece(x1, y1, to_move));
+  }
+
+  /**
+   * Move the piece on x1, y1 to x2, y2, capturing what is there: the part of
+   * makeMove common to both move APIs.
+   *
+   * @param piece the piece on x1, y1
+   * @return the captured piece, null if the move is not a capture
+   */
+  private BreakthroughPiece movePiece(int x1, int y1, int x2, int y2, BreakthroughPiece piece) {
+    int captured = square[x2][y2];
+    BreakthroughPiece captured_piece = null;
     int side = square[x1][y1];
     // reduce quad counts for the from and to locations then update the quads
     // and recalculate the quad values.
     subtractQuad_numbers(x1, y1, side);
     subtractQuad_numbers(x2, y2, side);
-
-    // If we are only moving one square up, down or left, right need to ensure
-    // that the quadcounts do not get off.
-    BreakthroughPiece quad_list = null;
-    if (Math.abs(x1 - x2) == 1 && (y1 - y2) == 0)
-    {
-      int max_row = Math.max(x1, x2);
-      quad_list = new BreakthroughPiece(max_row, y1, side);
-      quad_list.next = new BreakthroughPiece(max_row, y1 + 1, side);
-    }
-    else if ((x1 - x2) == 0 && Math.abs(y1 - y2) == 1)
-    {
-      int max_col = Math.max(y1, y2);
-      quad_list = new BreakthroughPiece(x1, max_col, side);
-      quad_list.next = new BreakthroughPiece(x1 + 1, max_col, side);
-    }
-    for (BreakthroughPiece p = quad_list; p != null; p = p.next)
-      quadcount[side][quad[side][p.x][p.y]]++;
+    sharedQuad_numbers(x1, y1, x2, y2, side, 1);
 
     // SIMPLE
-    m.piece = findPiece(x1, y1, side);
-    m.piece.x = m.x2;
-    m.piece.y = m.y2;
-    transpositionTable.makeMove(x1, y1, x2, y2, (m.captured != EMPTY_SQUARE),
+    piece.x = x2;
+    piece.y = y2;
+    transpositionTable.makeMove(x1, y1, x2, y2, (captured != EMPTY_SQUARE),
         side);
     square[x2][y2] = square[x1][y1];
     square[x1][y1] = EMPTY_SQUARE;
@@ -282,62 +489,48 @@ public class BreakthroughBoard extends TranspositionBoard {
     removeQuad(x1, y1, side);
     addQuad(x2, y2, side);
     // If this was a capture do the same for the opponent
-    if (m.captured != EMPTY_SQUARE)
+    if (captured != EMPTY_SQUARE)
     {
-      piece_list[m.captured] = deletePiece(piece_list[m.captured], x2, y2, m);
-      subtractQuad_numbers(x2, y2, m.captured);
-      removeQuad(x2, y2, m.captured);
-      addQuad_numbers(x2, y2, m.captured);
+      captured_piece = findPiece(x2, y2, captured);
+      if (captured_piece == null)
+        System.out.println("Piece not found");
+      else
+        piece_list[captured] = deletePiece(piece_list[captured], captured_piece);
+      subtractQuad_numbers(x2, y2, captured);
+      removeQuad(x2, y2, captured);
+      addQuad_numbers(x2, y2, captured);
     }
     else
       addLines(x2, y2);
     // Here is the recalculating of the quad counts
     addQuad_numbers(x2, y2, side);
     addQuad_numbers(x1, y1, side);
-    for (BreakthroughPiece p = quad_list; p != null; p = p.next)
-      quadcount[side][quad[side][p.x][p.y]]--;
+    sharedQuad_numbers(x1, y1, x2, y2, side, -1);
     to_move = opponent(to_move);
 
-    return true;
+    return captured_piece;
   }
 
   /**
-   * Execute the removal of an action
+   * Move the piece on x2, y2 back to x1, y1 and restore what it captured:
+   * the part of reverseMove common to both move APIs.
    *
-   * @param move Move the move to remove, should be the last move executed.
+   * @param piece the piece moved
+   * @param captured what was on x2, y2
+   * @param captured_piece the captured piece, if captured is not empty
    */
-  public boolean reverseMove(Move move) {
-    BreakthroughMove m = (BreakthroughMove) move;
-    int x1 = m.x1;
-    int y1 = m.y1;
-    int x2 = m.x2;
-    int y2 = m.y2;
+  private void unmovePiece(int x1, int y1, int x2, int y2, BreakthroughPiece piece, int captured,
+                           BreakthroughPiece captured_piece) {
     to_move = opponent(to_move);
-    m.piece.x = x1;
-    m.piece.y = y1;
+    piece.x = x1;
+    piece.y = y1;
     square[x1][y1] = square[x2][y2];
-    square[x2][y2] = m.captured;
+    square[x2][y2] = captured;
     int side = square[x1][y1];
-    transpositionTable.makeMove(x1, y1, x2, y2, (m.captured != EMPTY_SQUARE),
+    transpositionTable.makeMove(x1, y1, x2, y2, (captured != EMPTY_SQUARE),
         side);
-    addLines(m.x1, m.y1);
-    // If we are only moving one square up, down or left, right need to ensure
-    // that the quadcounts do not get off.
-    BreakthroughPiece quad_list = null;
-    if (Math.abs(x1 - x2) == 1 && (y1 - y2) == 0)
-    {
-      int max_row = Math.max(x1, x2);
-      quad_list = new BreakthroughPiece(max_row, y1, side);
-      quad_list.next = new BreakthroughPiece(max_row, y1 + 1, side);
-    }
-    else if ((x1 - x2) == 0 && Math.abs(y1 - y2) == 1)
-    {
-      int max_col = Math.max(y1, y2);
-      quad_list = new BreakthroughPiece(x1, max_col, side);
-      quad_list.next = new BreakthroughPiece(x1 + 1, max_col, side);
-    }
-    for (BreakthroughPiece p = quad_list; p != null; p = p.next)
-      quadcount[side][quad[side][p.x][p.y]]++;
+    addLines(x1, y1);
+    sharedQuad_numbers(x1, y1, x2, y2, side, 1);
 
     // QUAD
     subtractQuad_numbers(x1, y1, side);
@@ -348,25 +541,21 @@ public class BreakthroughBoard extends TranspositionBoard {
     removeQuad(x2, y2, side);
     addQuad(x1, y1, side);
 
-    if (m.captured != EMPTY_SQUARE)
+    if (captured != EMPTY_SQUARE)
     {
-      piece_list[m.captured] = addPiece(piece_list[m.captured],
-          m.captured_piece);
-      subtractQuad_numbers(x2, y2, m.captured);
-      addQuad(x2, y2, m.captured);
-      addQuad_numbers(x2, y2, m.captured);
+      piece_list[captured] = addPiece(piece_list[captured], captured_piece);
+      subtractQuad_numbers(x2, y2, captured);
+      addQuad(x2, y2, captured);
+      addQuad_numbers(x2, y2, captured);
     }
     else
       subtractLines(x2, y2);
 
     addQuad_numbers(x2, y2, side);
     addQuad_numbers(x1, y1, side);
-    for (BreakthroughPiece p = quad_list; p != null; p = p.next)
-      quadcount[side][quad[side][p.x][p.y]]--;
+    sharedQuad_numbers(x1, y1, x2, y2, side, -1);
     if (game_state != GAME_CONTINUE)
       game_state = GAME_CONTINUE;
-
-    return true;
   }
 
   /**
@@ -421,12 +610,29 @@ public class BreakthroughBoard extends TranspositionBoard {
    * An external board evaluator will require that getters be created for any
    * private data structures the heuristic would need.
    *
+   * Positions in the endgame tablebase, when one is set, get their exact
+   * value instead.
+   *
    * @return evaluation of the state
    */
   public double heuristicEvaluation(){
+    if (tablebase != null) {
+      int entry = tablebase.probe(this);
+      if (entry != BreakthroughTablebase.NOT_FOUND)
+        return BreakthroughTablebase.toValue(entry);
+    }
     return staticBoardEvaluator.heuristicEvaluation(this);
   }
 
+  /**
+   * Use the endgame tablebase at the frontier nodes, null turns it off.
+   *
+   * @param tablebase tables opened with BreakthroughTablebase.open
+   */
+  public void setTablebase(BreakthroughTablebase tablebase) {
+    this.tablebase = tablebase;
+  }
+
   /**
    * This method generates the set of features for the current board state.
    * It is used during training, and in the heuristic evaluation of the state.
@@ -605,6 +811,11 @@ public class BreakthroughBoard extends TranspositionBoard {
         killer_moves[depth] = best;
     }
   }
+
+  public boolean usesMoveOrderingData() {
+    return KillerMoves_Yes || HistoryMoves_Yes;
+  }
+
   /*
    * Get the current game state's player identifier
    */
@@ -662,7 +873,9 @@ public class BreakthroughBoard extends TranspositionBoard {
 
   /**
    * Reads the board layout from a string with 'b' for black, 'w' for white
-   * and 'X' for a blank into the board data structures.
+   * and 'X' for a blank into the board data structures. An optional 'b' or
+   * 'w' after the squares gives the side to move, without it the last square
+   * decides as before.
    *
    * @param boardString String
    */
@@ -678,7 +891,8 @@ public class BreakthroughBoard extends TranspositionBoard {
         else
           square[i][j] = EMPTY_SQUARE;
       }
-    if (boardChars[BOARD_SIZE*BOARD_SIZE-1] == 'b')
+    int side = (boardChars.length > BOARD_SIZE*BOARD_SIZE) ? BOARD_SIZE*BOARD_SIZE : BOARD_SIZE*BOARD_SIZE-1;
+    if (boardChars[side] == 'b')
       to_move = PLAYER_BLACK;
     else
       to_move = PLAYER_WHITE;
@@ -694,6 +908,23 @@ public class BreakthroughBoard extends TranspositionBoard {
     return new BreakthroughMove(0,0,0,0);
   }
 
+  /**
+   * The from and to squares, 4 bits per coordinate.
+   */
+  public int encodeMove(Move move) {
+    BreakthroughMove m = (BreakthroughMove)move;
+    return m.x1 | (m.y1 << 4) | (m.x2 << 8) | (m.y2 << 12);
+  }
+
+  /**
+   * Copy the board for another search thread, see the copy constructor.
+   *
+   * @return a copy of this board sharing its transposition table
+   */
+  public Board copy() {
+    return new BreakthroughBoard(this);
+  }
+
 
   public void RecordHash(int depth, double value, int flag, Move best, TranspositionBoard brd) {
     transpositionTable.RecordHash(depth, value, flag, (BreakthroughMove) best, (BreakthroughBoard)brd);
@@ -713,6 +944,78 @@ public class BreakthroughBoard extends TranspositionBoard {
 
   public void clearTranspositionTable() { transpositionTable.clearTable(); }
 
+  public long getHashCollisions() { return transpositionTable.collisions; }
+
+  public long getHashKey() {
+    return transpositionTable.getHashKey();
+  }
+
+  public int getPieceCount() {
+    int count = 0;
+    for (int side = PLAYER_WHITE; side <= PLAYER_BLACK; side++)
+      for (BreakthroughPiece p = piece_list[side]; p != null; p = p.next)
+        count++;
+    return count;
+  }
+
+  /**
+   * Breakthrough has zugzwang when the pieces run low and block each other,
+   * so only allow a null move while the side to move has enough pieces.
+   */
+  public boolean nullMoveAllowed() {
+    int count = 0;
+    for (BreakthroughPiece p = piece_list[to_move]; p != null; p = p.next)
+      if (++count >= NULL_MOVE_MIN_PIECES)
+        return true;
+    return false;
+  }
+
+  public void makeNullMove() {
+    transpositionTable.makeNullMove();
+    to_move = opponent(to_move);
+  }
+
+  public void reverseNullMove() {
+    to_move = opponent(to_move);
+    transpositionTable.makeNullMove();
+  }
+
+  /**
+   * Captures and moves to the last two rows are not reduced.
+   */
+  public boolean isQuietMove(Move move) {
+    BreakthroughMove m = (BreakthroughMove)move;
+    return square[m.x2][m.y2] == EMPTY_SQUARE && !isThreat(m);
+  }
+
+  /**
+   * The captures and the goal threats (moves to the last two rows) for the
+   * quiescence search.
+   *
+   * @return list of capture and threat moves
+   */
+  public Move generateCaptures() {
+    Move result = null;
+    Move next;
+    for (Move m = generateMoves(); m != null; m = next) {
+      next = m.next;
+      if (!isQuietMove(m)) {
+        m.next = result;
+        result = m;
+      }
+    }
+    return result;
+  }
+
+  /**
+   * A move to the last two rows threatens to win, whatever the material.
+   */
+  public boolean isThreat(Move move) {
+    BreakthroughMove m = (BreakthroughMove)move;
+    int goal_row = (to_move == PLAYER_BLACK) ? BOARD_INDEX : 0;
+    return Math.abs(goal_row - m.y2) <= 1;
+  }
+
 
   public boolean moveIsValid(Move move) {
     BreakthroughMove m = (BreakthroughMove)move;
@@ -791,38 +1094,20 @@ public class BreakthroughBoard extends TranspositionBoard {
   }
 
   /**
-   * Find and remove the piece at location x, y from the piece list 'list'
+   * Remove the piece p from the piece list 'list'
    *
    * @param list BreakthroughPiece
-   * @param x int
-   * @param y int
-   * @param m BreakthroughMove
+   * @param p BreakthroughPiece
    * @return BreakthroughPiece
    */
-  private BreakthroughPiece deletePiece(BreakthroughPiece list, int x, int y, BreakthroughMove m)
+  private BreakthroughPiece deletePiece(BreakthroughPiece list, BreakthroughPiece p)
   {
-    if (list.x == x && list.y == y)
-    {
-      m.captured_piece = list;
-      if (list.next != null)
-        list.next.prev = null;
-      return list.next;
-    }
-    BreakthroughPiece old = list;
-    for (BreakthroughPiece p = list.next; p != null; p = p.next)
-    {
-      if (p.x == x && p.y == y)
-      {
-        m.captured_piece = p;
-        old.next = p.next;
-        if (p.next != null)
-          p.next.prev = p.prev;
-        return list;
-      }
-      old = p;
-    }
-    if (m.captured_piece == null)
-      System.out.println("Piece not found");
+    if (p.prev == null)
+      list = p.next;
+    else
+      p.prev.next = p.next;
+    if (p.next != null)
+      p.next.prev = p.prev;
     return list;
   }
 
@@ -957,6 +1242,86 @@ public class BreakthroughBoard extends TranspositionBoard {
     quadcount[side][quad[side][x][y]]--;
   }
 
+
+  /**
+   * If we are only moving one square up, down or left, right the from and to
+   * squares share two quads. Adding delta to their counts before and after
+   * the update ensures that the quadcounts do not get off.
+   */
+  private void sharedQuad_numbers(int x1, int y1, int x2, int y2, int side, int delta)
+  {
+    if (Math.abs(x1 - x2) == 1 && (y1 - y2) == 0)
+    {
+      int max_row = Math.max(x1, x2);
+      quadcount[side][quad[side][max_row][y1]] += delta;
+      quadcount[side][quad[side][max_row][y1 + 1]] += delta;
+    }
+    else if ((x1 - x2) == 0 && Math.abs(y1 - y2) == 1)
+    {
+      int max_col = Math.max(y1, y2);
+      quadcount[side][quad[side][x1][max_col]] += delta;
+      quadcount[side][quad[side][x1 + 1][max_col]] += delta;
+    }
+  }
+
+  /**
+   * Check the piece lists, the line counts and the quads against the squares.
+   *
+   * @return null if the board is consistent, otherwise the first problem found
+   */
+  public String checkConsistency() {
+    for (int side = 0; side < 2; side++) {
+      boolean listed[][] = new boolean[BOARD_SIZE][BOARD_SIZE];
+      int count = 0;
+      BreakthroughPiece prev = null;
+      for (BreakthroughPiece p = piece_list[side]; p != null; p = p.next) {
+        if (p.x < 0 || p.y < 0 || p.x >= BOARD_SIZE || p.y >= BOARD_SIZE)
+          return "Piece list " + side + " has a piece off the board: " + p;
+        if (square[p.x][p.y] != side)
+          return "Piece list " + side + " has a piece on a square it does not own: " + p;
+        if (listed[p.x][p.y])
+          return "Piece list " + side + " has a piece twice: " + p;
+        if (p.prev != prev)
+          return "Piece list " + side + " has a wrong prev link at " + p;
+        listed[p.x][p.y] = true;
+        prev = p;
+        if (++count > BOARD_SIZE * BOARD_SIZE)
+          return "Piece list " + side + " has a cycle";
+      }
+      for (int i = 0; i < BOARD_SIZE; i++)
+        for (int j = 0; j < BOARD_SIZE; j++)
+          if (square[i][j] == side && !listed[i][j])
+            return "Piece list " + side + " misses the piece at (" + i + "," + j + ")";
+    }
+    int vertical[] = new int[BOARD_SIZE];
+    int horizontal[] = new int[BOARD_SIZE];
+    int forward_diag[] = new int[BOARD_SIZE + BOARD_SIZE - 1];
+    int back_diag[] = new int[BOARD_SIZE + BOARD_SIZE - 1];
+    for (int i = 0; i < BOARD_SIZE; i++)
+      for (int j = 0; j < BOARD_SIZE; j++)
+        if (square[i][j] != EMPTY_SQUARE) {
+          vertical[i]++;
+          horizontal[j]++;
+          forward_diag[i + (BOARD_INDEX - j)]++;
+          back_diag[i + j]++;
+        }
+    if (!Arrays.equals(vertical, vertical_count) || !Arrays.equals(horizontal, horizontal_count) ||
+        !Arrays.equals(forward_diag, forward_diag_count) || !Arrays.equals(back_diag, back_diag_count))
+      return "Line counts do not match the squares";
+    for (int side = 0; side < 2; side++) {
+      int count[] = new int[6];
+      for (int i = 0; i < BOARD_SIZE + 1; i++)
+        for (int j = 0; j < BOARD_SIZE + 1; j++) {
+          if (quad[side][i][j] != quadValue(i, j, side))
+            return "Quad " + side + " (" + i + "," + j + ") does not match the squares";
+          count[quad[side][i][j]]++;
+        }
+      if (!Arrays.equals(count, quadcount[side]))
+        return "Quad counts " + side + " do not match the quads";
+    }
+    return null;
+  }
+
   /**
    * Assuming the board representation in square is correct, recount the quads,
    * regenerate the piece lists, and update the line counts
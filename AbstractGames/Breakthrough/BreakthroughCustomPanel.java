@@ -2,7 +2,9 @@ package AbstractGames.Breakthrough;
 
 
 import AbstractGames.MinimaxAlphaBetaTransposition;
+import AbstractGames.PonderingSearch;
 import AbstractGames.Search;
+import AbstractGames.SearchLimits;
 import AbstractGames.Breakthrough.JSK.JSKCSCE686Evaluator;
 import AbstractGames.Breakthrough.JSK.JSKMinimaxAlphaBetaCSCE686;
 import AbstractGames.Breakthrough.JSK.JSKSimulatedAnnealingCSCE686;
@@ -37,9 +39,11 @@ public class BreakthroughCustomPanel extends JPanel {
 
   BreakthroughBoard board; // The Breakthrough board
   Search<BreakthroughBoard, BreakthroughMove> search; // The Search algorithm
+  PonderingSearch<BreakthroughBoard, BreakthroughMove> ponderingSearch; // Used instead of search when pondering
   public int x1, y1, x2, y2; // User move information
 
   private int depth;
+  private long timeLimit = SearchLimits.NO_LIMIT; // Milliseconds per computer move
   private BreakthroughMove lastmove = null;
   private BreakthroughGUI bgui;
   BreakthroughWorker worker;
@@ -50,6 +54,8 @@ public class BreakthroughCustomPanel extends JPanel {
   // Set SELF_PLAY to true to play by yourself (also, always select black when you start)
   private boolean SELF_PLAY = false;
 
+  private boolean pondering = false; // Search on the opponent's time, see setPondering
+
   /**
    * Select the evaluator and search algorithm here
    */
@@ -58,8 +64,11 @@ public class BreakthroughCustomPanel extends JPanel {
 //    search = new MinimaxSearch<BreakthroughBoard, BreakthroughMove>();
 //    search = new MinimaxAlphaBetaSearch<BreakthroughBoard, BreakthroughMove>();
     //search = new MinimaxAlphaBetaTransposition<BreakthroughBoard, BreakthroughMove>();
-    search = new JSKMinimaxAlphaBetaCSCE686<BreakthroughBoard, BreakthroughMove>();
+    search = new JSKMinimaxAlphaBetaCSCE686<BreakthroughBoard, BreakthroughMove>(); // Stops on the time limit and Move Now
     //search = new JSKSimulatedAnnealingCSCE686<BreakthroughBoard, BreakthroughMove>();
+    //search = new DfpnSolver<BreakthroughBoard, BreakthroughMove>(new MinimaxAlphaBetaTransposition<BreakthroughBoard, BreakthroughMove>()); // Solved endgames
+    // Search on the opponent's time, used instead of search when pondering is on
+    ponderingSearch = new PonderingSearch<BreakthroughBoard, BreakthroughMove>(new MinimaxAlphaBetaTransposition<BreakthroughBoard, BreakthroughMove>(), new MinimaxAlphaBetaTransposition<BreakthroughBoard, BreakthroughMove>());
   }
   /**
    * The BreakthroughWorker generates a thread that calls the WorkBoard bestMove
@@ -67,12 +76,27 @@ public class BreakthroughCustomPanel extends JPanel {
    */
   final class BreakthroughWorker extends SwingWorker<Integer, Void> {
 
+    final SearchLimits limits = new SearchLimits(getDepth());
+    final BreakthroughBoard workBoard = board; // newGame replaces board
+    final Search<BreakthroughBoard, BreakthroughMove> workSearch = activeSearch();
+
+    /**
+     * Stop the running search, the move of the last completed iteration is
+     * played.
+     */
+    public void stopSearch() {
+      limits.stop();
+    }
+
     protected Integer doInBackground() throws Exception {
       long startTime;
 
       startTime = System.currentTimeMillis();
       System.out.println(getDepth());
-      BreakthroughMove move = search.findBestMove(board, getDepth());
+      limits.setTimeLimit(getTimeLimit());
+      BreakthroughMove move = workSearch.findBestMove(workBoard, limits);
+      if (workBoard != board) // A new game was started during the search
+        return BreakthroughBoard.GAME_CONTINUE;
       startTime = System.currentTimeMillis() - startTime;
       board.makeMove(move);
       bgui.statusTextArea.append(computer + " Move: " + move.toString()
@@ -91,6 +115,10 @@ public class BreakthroughCustomPanel extends JPanel {
     protected void done() {
 
       Integer result;
+      if (workBoard != board || !pondering) // Restarted or pondering switched off during the search
+        stopPondering(workSearch);
+      if (workBoard != board)
+        return;
       try {
         // Retrieve the return value of doInBackground.
         result = get();
@@ -220,6 +248,7 @@ public class BreakthroughCustomPanel extends JPanel {
                   bgui.status.setText("GAME OVER White wins!");
                   bgui.statusTextArea.append("White wins!\n");
                 }
+                stopPondering();
                 repaint();
                 return;
               }
@@ -255,6 +284,62 @@ public class BreakthroughCustomPanel extends JPanel {
     worker.execute();
   }
 
+  /**
+   * Make the computer move now with the best move found so far.
+   */
+  public void stopSearch() {
+    if (worker != null)
+      worker.stopSearch();
+  }
+
+  /**
+   * Start a new game: stop the computer's search and the pondering and reset
+   * the board. The GUI then sets up the sides.
+   */
+  public void newGame() {
+    stopSearch();
+    stopPondering();
+    initializeGame();
+    lastmove = null;
+    user_move = NOT_MOVE;
+    repaint();
+  }
+
+  /**
+   * @return the search of the next computer move
+   */
+  public Search<BreakthroughBoard, BreakthroughMove> activeSearch() {
+    return pondering ? ponderingSearch : search;
+  }
+
+  public boolean isPondering() {
+    return pondering;
+  }
+
+  /**
+   * Search on the opponent's time with ponderingSearch instead of search,
+   * from the next computer move on. PonderingSearch needs
+   * MinimaxAlphaBetaTransposition, so the search of initializeGame is not used
+   * while pondering.
+   */
+  public void setPondering(boolean pondering) {
+    this.pondering = pondering;
+    if (!pondering)
+      stopPondering();
+  }
+
+  /**
+   * Stop the background search, e.g. when the game ends or is restarted.
+   */
+  public void stopPondering() {
+    stopPondering(ponderingSearch);
+  }
+
+  void stopPondering(Search<BreakthroughBoard, BreakthroughMove> s) {
+    if (s instanceof PonderingSearch)
+      ((PonderingSearch<?, ?>)s).stopPondering();
+  }
+
   /**
    * Load the artwork and initialize the drawing surfaces
    */
@@ -335,6 +420,14 @@ public class BreakthroughCustomPanel extends JPanel {
     this.depth = depth;
   }
 
+  public long getTimeLimit() {
+    return timeLimit;
+  }
+
+  public void setTimeLimit(long timeLimit) {
+    this.timeLimit = timeLimit;
+  }
+
   public String getPlayer() {
     return player;
   }
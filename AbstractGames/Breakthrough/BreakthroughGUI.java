@@ -29,9 +29,9 @@ public class BreakthroughGUI extends JApplet {
 
     GridBagLayout gridBagLayout = new GridBagLayout();
     gridBagLayout.columnWidths = new int[]{300, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0};
-    gridBagLayout.rowHeights = new int[]{0, 0, 0, 0, 0};
+    gridBagLayout.rowHeights = new int[]{0, 0, 0, 0, 0, 0, 0};
     gridBagLayout.columnWeights = new double[]{0.0, 0.0, 0.0, 0.0, 0.0, 0.0, 0.0, 0.0, 0.0, 1.0, 1.0, Double.MIN_VALUE};
-    gridBagLayout.rowWeights = new double[]{0.0, 0.0, 0.0, 1.0, Double.MIN_VALUE};
+    gridBagLayout.rowWeights = new double[]{0.0, 0.0, 0.0, 1.0, 0.0, 0.0, Double.MIN_VALUE};
     setLayout(gridBagLayout);
 
     JLabel lblNewLabel = new JLabel("Depth");
@@ -96,6 +96,42 @@ public class BreakthroughGUI extends JApplet {
     gbc_statusTextArea.gridy = 3;
     add(statusTextArea, gbc_statusTextArea);
 
+    JButton moveNowButton = new JButton("Move Now");
+    moveNowButton.addActionListener(new ActionListener() {
+      public void actionPerformed(ActionEvent e) {
+        boardPanel.stopSearch();
+      }
+    });
+    GridBagConstraints gbc_moveNowButton = new GridBagConstraints();
+    gbc_moveNowButton.gridwidth = 2;
+    gbc_moveNowButton.fill = GridBagConstraints.HORIZONTAL;
+    gbc_moveNowButton.gridx = 9;
+    gbc_moveNowButton.gridy = 5;
+    add(moveNowButton, gbc_moveNowButton);
+
+    JCheckBox ponderCheckBox = new JCheckBox("Ponder");
+    ponderCheckBox.addItemListener(new ItemListener() {
+      public void itemStateChanged(ItemEvent e) {
+        ponderItemStateChanged(e);
+      }
+    });
+    GridBagConstraints gbc_ponderCheckBox = new GridBagConstraints();
+    gbc_ponderCheckBox.gridx = 9;
+    gbc_ponderCheckBox.gridy = 6;
+    add(ponderCheckBox, gbc_ponderCheckBox);
+
+    JButton newGameButton = new JButton("New Game");
+    newGameButton.addActionListener(new ActionListener() {
+      public void actionPerformed(ActionEvent e) {
+        newGame();
+      }
+    });
+    GridBagConstraints gbc_newGameButton = new GridBagConstraints();
+    gbc_newGameButton.fill = GridBagConstraints.HORIZONTAL;
+    gbc_newGameButton.gridx = 10;
+    gbc_newGameButton.gridy = 6;
+    add(newGameButton, gbc_newGameButton);
+
     boardPanel = new BreakthroughCustomPanel(this);
     boardPanel.setSize(300,300);
     boardPanel.setDoubleBuffered(true);
@@ -108,7 +144,16 @@ public class BreakthroughGUI extends JApplet {
     gbc_boardPanel.gridx = 0;
     gbc_boardPanel.gridy = 1;
     add(boardPanel, gbc_boardPanel);
+    boardPanel.setTimeLimit((Integer)timeComboBox.getSelectedItem() * 1000);
+
+    chooseSide();
+    validate();
+  }
 
+  /**
+   * Ask the user for a side and set up the players.
+   */
+  void chooseSide() {
     Object[] possibilities = {"Black", "White"};
     String s = (String)JOptionPane.showInputDialog(
         this,
@@ -120,7 +165,7 @@ public class BreakthroughGUI extends JApplet {
         "Black");
 
     //If a string was returned, say so.
-    if (s.equals("White")) {
+    if ("White".equals(s)) {
       // launch the SwingWorker thread for the computer to play black
       status.setText("Please select a search depth.");
       startAsBlack = true;
@@ -133,17 +178,39 @@ public class BreakthroughGUI extends JApplet {
       boardPanel.setPlayer(new String("Black"));
       boardPanel.setComputer(new String("White"));
     }
-    validate();
+  }
+
+  /**
+   * Restart the game, keeping the depth, time and ponder settings.
+   */
+  void newGame() {
+    boardPanel.newGame();
+    statusTextArea.setText("");
+    chooseSide();
+    if (startAsBlack) { // The depth is already selected
+      startAsBlack = false;
+      status.setText("Computer's move as Black.");
+      boardPanel.runWorkerExtern();
+    }
+  }
+
+  void ponderItemStateChanged(ItemEvent e) {
+    boolean on = (e.getStateChange() == ItemEvent.SELECTED);
+    boardPanel.setPondering(on);
+    String D = "Pondering " + (on ? "on" : "off") + "\n";
+    statusTextArea.append(D);
+    status.setText(D);
   }
 
   void timeItemStateChanged(ItemEvent e) {
+    if (e.getStateChange() != ItemEvent.SELECTED)
+      return;
     String D = e.getItem().toString();
-//	    int temp = Integer.parseInt(D);
-//	    D = "Time changed to: " + temp + "s\n";
-    D = "Time search restrictions are unavailable.\n";
+    int temp = Integer.parseInt(D);
+    D = "Time changed to: " + temp + "s\n";
     statusTextArea.append(D);
     status.setText(D);
-//	    board.searchtime = temp*1000;
+    boardPanel.setTimeLimit(temp*1000);
   }
 
   void depthItemStateChanged(ActionEvent e) {
@@ -0,0 +1,373 @@
+package AbstractGames.Breakthrough;
+
+import java.io.*;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Endgame tablebase for 5x5 Breakthrough: the exact result and distance of
+ * every position with up to maxPieces pieces.
+ *
+ * There is one table per material (black pieces, white pieces). A position
+ * is ranked with a perfect index: the black squares as a combination of the
+ * 25 squares, the white squares as a combination of the squares black does
+ * not use, and the side to move. Each entry is one byte:
+ *   0    no result (a side that cannot move, the game does not end)
+ *   n>0  the side to move wins, the game ends n-1 plies from now
+ *   n<0  the side to move loses, the game ends -n-1 plies from now
+ *
+ * The tables are solved by retrograde analysis from the smaller materials
+ * up. A Breakthrough move always moves a piece one row forward, so inside a
+ * table every move increases the total advance of the pieces by one, and
+ * captures lead to the tables already solved. The positions are therefore
+ * solved from the most advanced level back to the least advanced, and the
+ * positions of one level, which do not depend on each other, are solved in
+ * parallel. No position needs to be visited twice.
+ *
+ * The files are read through FileChannel.map, so opening them is instant
+ * and the pages are shared by all the engine processes on the host.
+ *
+ * Generate with: java AbstractGames.Breakthrough.BreakthroughTablebase dir [maxPieces] [threads]
+ */
+public class BreakthroughTablebase {
+
+  public static final int SQUARES = BreakthroughBoard.BOARD_SIZE * BreakthroughBoard.BOARD_SIZE;
+  public static final int NOT_FOUND = Integer.MIN_VALUE;
+  public static final int DEFAULT_MAX_PIECES = 6;
+
+  static final int MAGIC = 0x42545442; // "BTTB"
+  static final int HEADER = 16;
+  static final int SIZE = BreakthroughBoard.BOARD_SIZE;
+  static final int INDEX = BreakthroughBoard.BOARD_INDEX;
+  static final int BLACK_GOAL = ((1 << SIZE) - 1) << (SIZE * INDEX);
+  static final int WHITE_GOAL = (1 << SIZE) - 1;
+
+  static final long [][]choose = new long[SQUARES + 1][SQUARES + 1];
+  static {
+    for (int n = 0; n <= SQUARES; n++) {
+      choose[n][0] = 1;
+      for (int k = 1; k <= n; k++)
+        choose[n][k] = choose[n - 1][k - 1] + (k <= n - 1 ? choose[n - 1][k] : 0);
+    }
+  }
+
+  int maxPieces;
+  MappedByteBuffer [][]mapped; // [black pieces][white pieces], probing
+  byte [][][]data;             // [black pieces][white pieces], generating
+
+  BreakthroughTablebase(int maxPieces) {
+    this.maxPieces = maxPieces;
+    mapped = new MappedByteBuffer[maxPieces][maxPieces];
+    data = new byte[maxPieces][maxPieces][];
+  }
+
+  /**
+   * Map the tables found in dir. Missing tables are not probed.
+   *
+   * @param dir directory written by generate
+   * @return the tablebase, with maxPieces taken from the largest table found
+   */
+  public static BreakthroughTablebase open(File dir) throws IOException {
+    BreakthroughTablebase tb = new BreakthroughTablebase(SQUARES);
+    int largest = 0;
+    for (int black = 1; black < SQUARES; black++)
+      for (int white = 1; black + white <= SQUARES; white++) {
+        File f = new File(dir, fileName(black, white));
+        if (!f.exists())
+          continue;
+        try (RandomAccessFile raf = new RandomAccessFile(f, "r"); FileChannel channel = raf.getChannel()) {
+          MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+          if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != SIZE || buffer.getInt(8) != black ||
+              buffer.getInt(12) != white || channel.size() != HEADER + tableSize(black, white))
+            throw new IOException("Not a Breakthrough tablebase file: " + f);
+          tb.mapped[black][white] = buffer; // The mapping stays valid after the channel is closed
+          largest = Math.max(largest, black + white);
+        }
+      }
+    tb.maxPieces = largest;
+    return tb;
+  }
+
+  public int getMaxPieces() {
+    return maxPieces;
+  }
+
+  /**
+   * @return the table entry of the position (see the class comment), or
+   *         NOT_FOUND when its table is not loaded
+   */
+  public int probe(BreakthroughBoard board) {
+    int black = 0, white = 0;
+    for (BreakthroughPiece p = board.piece_list[BreakthroughBoard.PLAYER_BLACK]; p != null; p = p.next)
+      black |= 1 << (p.y * SIZE + p.x);
+    for (BreakthroughPiece p = board.piece_list[BreakthroughBoard.PLAYER_WHITE]; p != null; p = p.next)
+      white |= 1 << (p.y * SIZE + p.x);
+    return probe(black, white, board.getCurrentPlayer());
+  }
+
+  /**
+   * @param black squares (y * 5 + x) of the black pieces
+   * @param white squares of the white pieces
+   * @param side PLAYER_BLACK or PLAYER_WHITE to move
+   */
+  public int probe(int black, int white, int side) {
+    int nb = Integer.bitCount(black), nw = Integer.bitCount(white);
+    if (nb == 0 || nw == 0)
+      return (nb == 0) == (side == BreakthroughBoard.PLAYER_BLACK) ? -1 : 1;
+    if (nb >= mapped.length || nw >= mapped.length || mapped[nb][nw] == null)
+      return NOT_FOUND;
+    return mapped[nb][nw].get(HEADER + (int)index(black, white, side));
+  }
+
+  /**
+   * Search value of a table entry from the view of the side to move: a win
+   * is just under 1.0, the faster the higher, so it stays below the win
+   * scores the searches find themselves.
+   */
+  public static double toValue(int entry) {
+    if (entry > 0)
+      return 1.0 - entry / 1000.0;
+    if (entry < 0)
+      return -1.0 - entry / 1000.0;
+    return 0.0;
+  }
+
+  static String fileName(int black, int white) {
+    return "bt" + SIZE + "_b" + black + "_w" + white + ".tb";
+  }
+
+  static long tableSize(int black, int white) {
+    return choose[SQUARES][black] * choose[SQUARES - black][white] * 2;
+  }
+
+  /**
+   * Perfect index of a position with black and white as bitboards.
+   */
+  static long index(int black, int white, int side) {
+    int nb = Integer.bitCount(black), nw = Integer.bitCount(white);
+    long blackRank = 0;
+    int i = 0;
+    for (int b = black; b != 0; b &= b - 1)
+      blackRank += choose[Integer.numberOfTrailingZeros(b)][++i];
+    long whiteRank = 0;
+    i = 0;
+    for (int w = white; w != 0; w &= w - 1) {
+      int sq = Integer.numberOfTrailingZeros(w);
+      sq -= Integer.bitCount(black & ((1 << sq) - 1)); // Squares left after black
+      whiteRank += choose[sq][++i];
+    }
+    return ((blackRank * choose[SQUARES - nb][nw]) + whiteRank) * 2 + side;
+  }
+
+  /**
+   * Combination of k squares out of n with the given rank, as a bit set.
+   */
+  static int unrank(long rank, int n, int k) {
+    int set = 0;
+    for (int i = k; i > 0; i--) {
+      int sq = i - 1;
+      while (sq + 1 < n && choose[sq + 1][i] <= rank)
+        sq++;
+      rank -= choose[sq][i];
+      set |= 1 << sq;
+    }
+    return set;
+  }
+
+  /**
+   * Put the bits of compressed on the squares that are not in used.
+   */
+  static int expand(int compressed, int used) {
+    int set = 0;
+    int c = 0;
+    for (int sq = 0; sq < SQUARES; sq++) {
+      if ((used & (1 << sq)) != 0)
+        continue;
+      if ((compressed & (1 << c)) != 0)
+        set |= 1 << sq;
+      c++;
+    }
+    return set;
+  }
+
+  /**
+   * Rows advanced by all pieces, black moves up and white down.
+   */
+  static int advance(int black, int white) {
+    int total = 0;
+    for (int b = black; b != 0; b &= b - 1)
+      total += Integer.numberOfTrailingZeros(b) / SIZE;
+    for (int w = white; w != 0; w &= w - 1)
+      total += INDEX - Integer.numberOfTrailingZeros(w) / SIZE;
+    return total;
+  }
+
+  /**
+   * Generate all the tables with up to maxPieces pieces into dir.
+   */
+  public static void generate(File dir, int maxPieces, int threads) throws IOException {
+    if (!dir.isDirectory() && !dir.mkdirs())
+      throw new IOException("Cannot create " + dir);
+    BreakthroughTablebase tb = new BreakthroughTablebase(maxPieces);
+    ForkJoinPool pool = new ForkJoinPool(Math.max(1, threads));
+    long startTime = System.currentTimeMillis();
+    for (int pieces = 2; pieces <= maxPieces; pieces++)
+      for (int black = 1; black < pieces; black++) {
+        int white = pieces - black;
+        long tableStart = System.currentTimeMillis();
+        tb.solve(black, white, pool);
+        File f = new File(dir, fileName(black, white));
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(f)))) {
+          out.writeInt(MAGIC);
+          out.writeInt(SIZE);
+          out.writeInt(black);
+          out.writeInt(white);
+          out.write(tb.data[black][white]);
+        }
+        int []count = new int[3];
+        for (byte v : tb.data[black][white])
+          count[v > 0 ? 0 : v < 0 ? 1 : 2]++;
+        System.out.println(f.getName() + " Positions: " + tb.data[black][white].length + " Wins: " + count[0] +
+            " Losses: " + count[1] + " No Result: " + count[2] + " Time: " + (System.currentTimeMillis() - tableStart) / 1000.0);
+      }
+    pool.shutdown();
+    System.out.println("Tablebase Time: " + (System.currentTimeMillis() - startTime) / 1000.0);
+  }
+
+  /**
+   * Solve the table black x white. The tables with one piece less are solved.
+   */
+  void solve(int nb, int nw, ForkJoinPool pool) {
+    long positions = tableSize(nb, nw) / 2; // Piece placements, both sides to move are solved together
+    if (positions > Integer.MAX_VALUE / 2)
+      throw new Error("Table b" + nb + " w" + nw + " is too large");
+    byte []table = new byte[(int)positions * 2];
+    data[nb][nw] = table;
+
+    // Order the placements by advance, counting sort.
+    int levels = (nb + nw) * INDEX + 1;
+    int []levelStart = new int[levels + 1];
+    byte []level = new byte[(int)positions];
+    long whiteCount = choose[SQUARES - nb][nw];
+    for (int p = 0; p < positions; p++) {
+      int black = unrank(p / whiteCount, SQUARES, nb);
+      int white = expand(unrank(p % whiteCount, SQUARES - nb, nw), black);
+      level[p] = (byte)advance(black, white);
+      levelStart[level[p] + 1]++;
+    }
+    for (int l = 0; l < levels; l++)
+      levelStart[l + 1] += levelStart[l];
+    int []order = new int[(int)positions];
+    int []fill = levelStart.clone();
+    for (int p = 0; p < positions; p++)
+      order[fill[level[p]]++] = p;
+    level = null;
+
+    for (int l = levels - 1; l >= 0; l--)
+      if (levelStart[l] < levelStart[l + 1])
+        pool.invoke(new SolveLevel(table, nb, nw, order, levelStart[l], levelStart[l + 1]));
+  }
+
+  /**
+   * Solves the placements order[from..to-1], all of the same advance.
+   */
+  class SolveLevel extends RecursiveAction {
+    private static final long serialVersionUID = 1L;
+
+    final byte []table;
+    final int nb, nw;
+    final int []order;
+    final int from, to;
+
+    SolveLevel(byte []table, int nb, int nw, int []order, int from, int to) {
+      this.table = table;
+      this.nb = nb;
+      this.nw = nw;
+      this.order = order;
+      this.from = from;
+      this.to = to;
+    }
+
+    protected void compute() {
+      if (to - from > 4096) {
+        int middle = (from + to) >>> 1;
+        invokeAll(new SolveLevel(table, nb, nw, order, from, middle), new SolveLevel(table, nb, nw, order, middle, to));
+        return;
+      }
+      long whiteCount = choose[SQUARES - nb][nw];
+      for (int i = from; i < to; i++) {
+        int p = order[i];
+        int black = unrank(p / whiteCount, SQUARES, nb);
+        int white = expand(unrank(p % whiteCount, SQUARES - nb, nw), black);
+        table[p * 2 + BreakthroughBoard.PLAYER_WHITE] = solvePosition(black, white, BreakthroughBoard.PLAYER_WHITE);
+        table[p * 2 + BreakthroughBoard.PLAYER_BLACK] = solvePosition(black, white, BreakthroughBoard.PLAYER_BLACK);
+      }
+    }
+  }
+
+  /**
+   * Value of one position from its successors, which are all solved.
+   */
+  byte solvePosition(int black, int white, int side) {
+    // Game already over, checked in the order of BreakthroughBoard.endGame()
+    if ((black & BLACK_GOAL) != 0)
+      return (byte)(side == BreakthroughBoard.PLAYER_BLACK ? 1 : -1);
+    if ((white & WHITE_GOAL) != 0)
+      return (byte)(side == BreakthroughBoard.PLAYER_WHITE ? 1 : -1);
+
+    boolean isBlack = side == BreakthroughBoard.PLAYER_BLACK;
+    int own = isBlack ? black : white;
+    int opp = isBlack ? white : black;
+    int step = isBlack ? SIZE : -SIZE;
+    int goal = isBlack ? BLACK_GOAL : WHITE_GOAL;
+
+    int bestLoss = Integer.MAX_VALUE; // Smallest losing successor, for the opponent
+    int bestWin = 0;                  // Largest winning successor, for the opponent
+    boolean any = false, draw = false;
+    for (int o = own; o != 0; o &= o - 1) {
+      int from = Integer.numberOfTrailingZeros(o);
+      int x = from % SIZE;
+      for (int dx = -1; dx <= 1; dx++) {
+        if (x + dx < 0 || x + dx > INDEX)
+          continue;
+        int to = from + step + dx;
+        if ((own & (1 << to)) != 0 || (dx == 0 && (opp & (1 << to)) != 0))
+          continue;
+        any = true;
+        int child; // From the opponent's view
+        int newOwn = own & ~(1 << from) | (1 << to);
+        int newOpp = opp & ~(1 << to);
+        if (((1 << to) & goal) != 0 || newOpp == 0) {
+          child = -1; // This move wins
+        } else {
+          int b = isBlack ? newOwn : newOpp;
+          int w = isBlack ? newOpp : newOwn;
+          child = data[Integer.bitCount(b)][Integer.bitCount(w)][(int)index(b, w, 1 - side)];
+        }
+        if (child < 0)
+          bestLoss = Math.min(bestLoss, -child);
+        else if (child > 0)
+          bestWin = Math.max(bestWin, child);
+        else
+          draw = true;
+      }
+    }
+    if (bestLoss != Integer.MAX_VALUE)
+      return (byte)(bestLoss + 1);
+    if (!any || draw)
+      return 0;
+    return (byte)-(bestWin + 1);
+  }
+
+  public static void main(String []args) throws IOException {
+    if (args.length < 1) {
+      System.out.println("Usage: BreakthroughTablebase dir [maxPieces] [threads]");
+      return;
+    }
+    int maxPieces = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_MAX_PIECES;
+    int threads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+    generate(new File(args[0]), maxPieces, threads);
+  }
+}
@@ -51,6 +51,8 @@ import java.util.Random;
 import AbstractGames.Board;
 import AbstractGames.Move;
 import AbstractGames.Search;
+import AbstractGames.SearchLimits;
+import AbstractGames.SearchStatistics;
 import AbstractGames.Breakthrough.BreakthroughBoard;
 
 public class JSKMinimaxAlphaBetaCSCE686<BOARD extends Board, MOVE extends Move> implements Search<BOARD,MOVE>
@@ -59,6 +61,19 @@ public class JSKMinimaxAlphaBetaCSCE686<BOARD extends Board, MOVE extends Move>
   
   private long ogTotalNodesSearched = 0;
   private long ogTotalNodesCulled = 0;
+  private SearchStatistics ogStatistics = new SearchStatistics();
+
+  // Stopping on SearchLimits, see findBestMove(board, limits)
+  private SearchLimits ogLimits = null;  // null while the search may not be stopped
+  private long ogNodesBeforeIteration = 0;
+  private int ogPollCount = 0;
+  private boolean ogStopped = false;
+
+  public JSKMinimaxAlphaBetaCSCE686()
+  {
+    // This search never printed its iterations, keep it quiet.
+    ogStatistics.setPrinting(false);
+  }
  
   private int h_value(int player, int depth)
   {
@@ -80,8 +95,17 @@ public class JSKMinimaxAlphaBetaCSCE686<BOARD extends Board, MOVE extends Move>
     ogTotalNodesSearched++;
     if ((ogTotalNodesSearched % 10000000) == 0)
     {
-      System.out.println("Test1: " + ogTotalNodesSearched + ", " + ogTotalNodesCulled);
+      ogStatistics.log("Test1: " + ogTotalNodesSearched + ", " + ogTotalNodesCulled);
+    }
+    if (ogLimits != null && ++ogPollCount >= ogLimits.getPollInterval())
+    {
+      ogPollCount = 0;
+      if (ogLimits.limitReached(ogNodesBeforeIteration + ogTotalNodesSearched))
+        ogStopped = true;
     }
+    // Out of time or cancelled, the iteration is discarded.
+    if (ogStopped)
+      return 0;
 
     // Check for max depth or winning condition
     if (depth <= 0 || ogBoard.endGame() != Board.GAME_CONTINUE)
@@ -167,75 +191,119 @@ public class JSKMinimaxAlphaBetaCSCE686<BOARD extends Board, MOVE extends Move>
     ogBoard = board;
     
     ogTotalNodesSearched = 0;
+    ogTotalNodesCulled = 0;
+    ogStatistics.start();
+    ogLimits = null;
+    ogStopped = false;
     
-    
-    MOVE best_move = null;
-    int runningNodeTotal = 0;
-    int start_depth = 1;
-    int i = 1;
-    boolean stoptime = false;
+    MOVE best_move = searchRoot(depth);
+    //System.out.println("Test2: " + ogTotalNodesSearched);
+    SearchStatistics.Counters counts = new SearchStatistics.Counters();
+    counts.nodes = ogTotalNodesSearched;
+    counts.cutoffs = ogTotalNodesCulled;
+    ogStatistics.iterationDone(depth, counts, true, null);
+    ogStatistics.searchDone();
+    return best_move;
+  } // findBestMove
+
+  /**
+   * Iterative deepening by two plies up to the maximum depth, stopped by the
+   * time, node or external stop limit. The first iteration always completes,
+   * after that the move of the last completed iteration is returned.
+   */
+  @Override
+  public MOVE findBestMove(BOARD board, SearchLimits limits)
+  {
+    ogBoard = board;
+    ogStatistics.start();
+    ogLimits = null; // The first iteration always completes
+    ogStopped = false;
+    ogPollCount = 0;
+    ogNodesBeforeIteration = 0;
 
-    i = depth;
-    //while (i <= depth && !stoptime)
+    MOVE best_move = null;
+    // increment indexes: increase by two to avoid swapping between optimistic and pessimistic results
+    for (int i = 1; i <= limits.getMaxDepth(); i = i + 2)
     {
       ogTotalNodesSearched = 0;
-      start_depth = i;
+      ogTotalNodesCulled = 0;
+      MOVE move = searchRoot(i);
+      SearchStatistics.Counters counts = new SearchStatistics.Counters();
+      counts.nodes = ogTotalNodesSearched;
+      counts.cutoffs = ogTotalNodesCulled;
+      ogStatistics.iterationDone(i, counts, move != null, null);
+      if (move == null)
+        break;
+      best_move = move;
+      ogNodesBeforeIteration += ogTotalNodesSearched;
+      ogLimits = limits;
+      if (limits.limitReached(ogNodesBeforeIteration))
+        break;
+    }
+    ogLimits = null;
+    ogStatistics.searchDone();
+    return best_move;
+  } // findBestMove
 
-      // **** Initialization ********************************************************************
-      // Make initial list of moves from current board
-      MOVE child = (MOVE)ogBoard.generateMoves();
-      int bestMove = Integer.MIN_VALUE;
-      // Initialize alpha and beta
-      int alpha = -JSKCSCE686Evaluator.INF;
-      int beta = JSKCSCE686Evaluator.INF;
-      
-      ((BreakthroughBoard)ogBoard).owner = ogBoard.getCurrentPlayer();
+  /**
+   * Search the moves of the root to depth.
+   *
+   * @return the best move, null if the search was stopped
+   */
+  private MOVE searchRoot(int depth)
+  {
+    // **** Initialization ********************************************************************
+    // Make initial list of moves from current board
+    MOVE child = (MOVE)ogBoard.generateMoves();
+    int bestMove = Integer.MIN_VALUE;
+    // Initialize alpha and beta
+    int alpha = -JSKCSCE686Evaluator.INF;
+    int beta = JSKCSCE686Evaluator.INF;
+    
+    ((BreakthroughBoard)ogBoard).owner = ogBoard.getCurrentPlayer();
+    
+    // At the max top level, it must evaluate all of its children before it knows if any of its children is optimal. I believe
+    // this is the primary difference between what was presented and what I have implemented. However, because this algorithm
+    // was presented as a valid implementation by multiple sources, and assuming the Max turn must evaluate all of its children
+    // at least to depth 1, it appears as if this is a valid interpretation.
+    
+    // Set up variables to keep track of best moves
+    MOVE best_move = child;
+    int owner = ogBoard.getCurrentPlayer();
+    int s = 0;
+    while (child != null)
+    {
+      // We must scan the entire list. A depth of 1 will call the heuristic on all of the children. Otherwise, this level
+      // operates as the first max level. The first min level will be handled by miniMax, and them max, min, max min... until 
+      // the desired depth.
       
-      // At the max top level, it must evaluate all of its children before it knows if any of its children is optimal. I believe
-      // this is the primary difference between what was presented and what I have implemented. However, because this algorithm
-      // was presented as a valid implementation by multiple sources, and assuming the Max turn must evaluate all of its children
-      // at least to depth 1, it appears as if this is a valid interpretation.
+      // Make first level move
+      ogBoard.makeMove(child);
       
-      // Set up variables to keep track of best moves
-      best_move = child;
-      int owner = ogBoard.getCurrentPlayer();
-      int s = 0;
-      while (child != null)
-      {
-        // We must scan the entire list. A depth of 1 will call the heuristic on all of the children. Otherwise, this level
-        // operates as the first max level. The first min level will be handled by miniMax, and them max, min, max min... until 
-        // the desired depth.
-        
-        // Make first level move
-        ogBoard.makeMove(child);
-        
-        // Use minimax to determine viability of move
-        alpha = Math.max(alpha, miniMax(child, start_depth - 1, alpha, beta, owner, 0));
+      // Use minimax to determine viability of move
+      alpha = Math.max(alpha, miniMax(child, depth - 1, alpha, beta, owner, 0));
 
-        //ogBoard.printBoardRep();
-        //System.out.println("Test2: " + s + ", " + alpha);
-        child.value = alpha;
-        // Test to see if the next max is the best move
-        // **** Solution ********************************************************************
-        if (alpha > bestMove)
-        {
-          // Set best move so far
-          best_move = child;
-          bestMove = alpha;
-        }
-        // Reverse hypothetical move
-        ogBoard.reverseMove(child);
-        child = (MOVE)child.next;
-        s++;
+      //ogBoard.printBoardRep();
+      //System.out.println("Test2: " + s + ", " + alpha);
+      child.value = alpha;
+      // Test to see if the next max is the best move
+      // **** Solution ********************************************************************
+      if (alpha > bestMove)
+      {
+        // Set best move so far
+        best_move = child;
+        bestMove = alpha;
       }
-      
-      // increment indexes: increase by two to avoid swapping between optimistic and pessimistic results
-      i = i + 2;
-
+      // Reverse hypothetical move
+      ogBoard.reverseMove(child);
+      if (ogStopped)
+        return null;
+      child = (MOVE)child.next;
+      s++;
     }
-    //System.out.println("Test2: " + ogTotalNodesSearched);
+    
     return best_move;
-  } // findBestMove
+  } // searchRoot
   
   
   public long getTotalSearched()
@@ -243,4 +311,10 @@ public class JSKMinimaxAlphaBetaCSCE686<BOARD extends Board, MOVE extends Move>
     return ogTotalNodesSearched;
   }
 
+  @Override
+  public SearchStatistics getStatistics()
+  {
+    return ogStatistics;
+  }
+
 } // JSKMinimaxAlphaBetaCSCE686
@@ -53,6 +53,7 @@ import java.util.Random;
 import AbstractGames.Board;
 import AbstractGames.Move;
 import AbstractGames.Search;
+import AbstractGames.SearchStatistics;
 
 public class JSKSimulatedAnnealingCSCE686<BOARD extends Board, MOVE extends Move>
         implements Search<BOARD, MOVE>
@@ -61,6 +62,8 @@ public class JSKSimulatedAnnealingCSCE686<BOARD extends Board, MOVE extends Move
   Random ogRnd = new Random();
   public int ogNumMoves = 7;
   public int ogNumGames = 10000;
+  // Only for the progress printing, no iterations are recorded
+  private SearchStatistics ogStatistics = new SearchStatistics();
 
   public double averageRandomGames(BOARD b, MOVE m, int numMoves, int numGames)
   {
@@ -320,7 +323,7 @@ public class JSKSimulatedAnnealingCSCE686<BOARD extends Board, MOVE extends Move
         bestH = newH;
         bestMove = newMove;
       }
-      System.out.println(temp + ", " + bestH);
+      ogStatistics.log(temp + ", " + bestH);
       
       // Cool system
       temp *= 1-coolingRate;
@@ -330,6 +333,12 @@ public class JSKSimulatedAnnealingCSCE686<BOARD extends Board, MOVE extends Move
     return result;
   } // findBestMove
 
+  @Override
+  public SearchStatistics getStatistics()
+  {
+    return ogStatistics;
+  }
+
 
   /**
    * Calculate the acceptance probability
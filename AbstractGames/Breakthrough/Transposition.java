@@ -30,11 +30,17 @@ public class Transposition {
     long[][] hashBoard = new long[2][BreakthroughBoard.BOARD_SIZE*BreakthroughBoard.BOARD_SIZE]; //range of 0..1, and 0..63
 
     //hashTable is the actual hash table where hash values are stored and retrieved
-    HashElement[] hashTable = new HashElement[(int)TABLE_SIZE];
+    HashElement[] hashTable;
 
     public MersenneTwister randomNumberGenerator;
     long currentHashKey;
     public int matchkey = 0;
+    public long collisions = 0; // Probes that found another position in the slot
+
+    // The element found by the last successful ProbeHash. ProbeValue reads from
+    // it so that the flag and value come from the same entry even if another
+    // thread sharing the table replaces the slot in between.
+    private HashElement probed = null;
 
     private static boolean transposition_debug = false;
 
@@ -45,6 +51,7 @@ public class Transposition {
     public Transposition() {
       //only initialize the random number generator one time!
       randomNumberGenerator = new MersenneTwister();
+      hashTable = new HashElement[(int)TABLE_SIZE];
         
       // Load the Transposition table values into array here.
   	  String inFileName = "zobrist"+new Integer(BreakthroughBoard.BOARD_SIZE).toString()+".hsh";
@@ -121,6 +128,22 @@ public class Transposition {
       //and the hashValues needed for xor'ing new positions are all ready to go.
     } //constructor
 
+    /**
+     * Copy constructor used when a board is copied for another search thread.
+     * The Zobrist keys and the hash table storage are shared with t, only the
+     * current position key belongs to the new object. Entries are immutable
+     * once stored, so threads can replace slots without any locking.
+     *
+     * @param t the transposition table to share
+     */
+    public Transposition(Transposition t) {
+      randomNumberGenerator = t.randomNumberGenerator;
+      hashBoard = t.hashBoard;
+      to_move_hash_value = t.to_move_hash_value;
+      hashTable = t.hashTable;
+      currentHashKey = t.currentHashKey;
+    }
+
     public void clearTable() {
     	for( int i = 0; i < TABLE_SIZE; i++ )
     	  hashTable[i] = null;
@@ -181,6 +204,15 @@ public class Transposition {
                              hashBoard[colorMoved][BreakthroughBoard.BOARD_SIZE*y2+x2];
     }
 
+    /**
+     * makeNullMove
+     * The side to move passes, only the side to move part of the key changes.
+     * Reversing a null move is the same operation.
+     */
+    public void makeNullMove() {
+        currentHashKey ^= to_move_hash_value;
+    }
+
     /**
      * RecordHash
      * Generates a new board copying the Board b information.
@@ -219,16 +251,20 @@ public class Transposition {
       if(localHashElement.key == getHashKey()) {
         matchkey++;
         if (localHashElement.depth >= depth) {
+          probed = localHashElement;
           return localHashElement.flag;
         }//if localHashElement
       }
+      else
+        collisions++;
       //our hashtable didn't help us
       return UNKNOWN;
     }
 
     public double ProbeValue(int depth) {
-      int index = getHashIndex();
-      HashElement localHashElement = hashTable[index];
+      HashElement localHashElement = probed;
+      if (localHashElement == null || localHashElement.key != getHashKey())
+        localHashElement = hashTable[getHashIndex()];
       if (localHashElement == null )
         return UNKNOWN;
       if ( localHashElement.depth >= depth )
@@ -255,6 +291,8 @@ public class Transposition {
 
       if (localHashElement.key != getHashKey())
     	return null;
+      if (localHashElement.mX1 < 0) // stored without a best move
+        return null;
       BreakthroughMove m = new BreakthroughMove(localHashElement.mX1, localHashElement.mY1, localHashElement.mX2, localHashElement.mY2, (int)localHashElement.value, localHashElement.p);
       return m;
     }
@@ -271,10 +309,10 @@ public class Transposition {
     
     //inner class which defines the hash element. will be using it like a struct. i.e. no get/set methods
     private class HashElement {
-        public long key;
-        public int depth, flag;
-        public double value;
-        public int mX1, mX2, mY1, mY2;
+        public final long key;
+        public final int depth, flag;
+        public final double value;
+        public final int mX1, mX2, mY1, mY2;
         public BreakthroughPiece p;
         public String b;
 
@@ -0,0 +1,33 @@
+package AbstractGames;
+
+import java.util.Random;
+
+/**
+ * Plays a random capture or threat (Board.generateCaptures) with probability
+ * captureProbability, otherwise a uniformly random move. Playouts that take
+ * the free captures are closer to real games than uniformly random ones.
+ */
+public class CapturePlayoutPolicy implements PlayoutPolicy {
+
+  double captureProbability = 0.8;
+  RandomPlayoutPolicy uniform = new RandomPlayoutPolicy();
+
+  public CapturePlayoutPolicy() {
+  }
+
+  /**
+   * @param captureProbability probability of choosing a capture when there is one
+   */
+  public CapturePlayoutPolicy(double captureProbability) {
+    this.captureProbability = captureProbability;
+  }
+
+  public Move selectMove(Board board, Move moves, Random random) {
+    if (random.nextDouble() < captureProbability) {
+      Move captures = board.generateCaptures();
+      if (captures != null)
+        return uniform.selectMove(board, captures, random);
+    }
+    return uniform.selectMove(board, moves, random);
+  }
+}
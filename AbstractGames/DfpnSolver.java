@@ -0,0 +1,428 @@
+package AbstractGames;
+
+import java.util.HashSet;
+
+/**
+ * Depth-first proof-number search (df-pn) for exact endgame results.
+ *
+ * solve() tries to prove that the side to move wins, and if that fails, that
+ * the opponent wins. Only proofs are reported: a proof never relies on an
+ * unproven position, so WIN and LOSS are exact, and anything else is UNKNOWN.
+ *
+ * Proof and disproof numbers are kept in a bounded hash table keyed by the
+ * board's Zobrist key (TranspositionBoard.getHashKey()). A slot is replaced
+ * by a position that took at least as much work, so the large subtrees
+ * stay. Positions are reached through several move orders (a DAG), so the
+ * proof numbers may count a shared position more than once; this only
+ * affects the order in which the tree is searched, not the results.
+ *
+ * LOA positions can repeat. A move back to a position on the current path
+ * counts as not winning for the side trying to prove the win. Such
+ * disproofs depend on the path and may be stored, which can hide a win
+ * (the result is UNKNOWN), but they can never give a wrong WIN or LOSS.
+ *
+ * As a Search it solves the position when the board has at most maxPieces
+ * pieces, and hands everything else, and the positions it cannot solve
+ * within the node budget, to the fallback search.
+ */
+public class DfpnSolver<BOARD extends TranspositionBoard, MOVE extends Move> implements Search<BOARD,MOVE> {
+
+  public static final int WIN = 1;
+  public static final int LOSS = -1;
+  public static final int UNKNOWN = 0;
+
+  static final int INF = 100000000;
+  static final int BYTES_PER_ENTRY = 20;
+
+  BOARD board;
+  int attacker;                 // The side trying to prove a win
+  Search<BOARD,MOVE> fallback;
+  int maxPieces = Integer.MAX_VALUE;
+  long nodeBudget = 10000000;
+  SearchLimits limits;
+  long budgetEnd;               // Node count at which solve() gives up
+  boolean aborted;
+
+  // Hash table of proof and disproof numbers
+  long []key;
+  int []pn;
+  int []dn;
+  int []work;
+  int mask;
+
+  // Zobrist keys of the positions on the current path
+  long []path = new long[256];
+  int pathLength;
+
+  // Result of the last mid() call, from the view of the side to move there
+  int resultPhi, resultDelta;
+
+  // Statistics
+  long nodes;
+  int solutionSize;
+  SearchStatistics statistics = new SearchStatistics();
+  boolean fellBack;             // The last findBestMove used the fallback search
+  MOVE bestMove;
+
+  public DfpnSolver() {
+    this(null);
+  }
+
+  /**
+   * @param fallback search for the positions that are not solved, may be null
+   */
+  public DfpnSolver(Search<BOARD,MOVE> fallback) {
+    this.fallback = fallback;
+    setMemoryLimit(64L << 20);
+  }
+
+  /**
+   * Solve only when the board has at most maxPieces pieces (getPieceCount()).
+   */
+  public void setMaxPieces(int maxPieces) {
+    this.maxPieces = maxPieces;
+  }
+
+  /**
+   * Nodes for one solve(), both proof attempts together. A smaller node
+   * budget in the SearchLimits is used instead.
+   */
+  public void setNodeBudget(long nodeBudget) {
+    this.nodeBudget = nodeBudget;
+  }
+
+  /**
+   * @param bytes memory for the hash table, rounded down to a power of two entries
+   */
+  public void setMemoryLimit(long bytes) {
+    long entries = Math.max(1024, bytes / BYTES_PER_ENTRY);
+    int size = Integer.highestOneBit((int)Math.min(entries, 1 << 30));
+    key = new long[size];
+    pn = new int[size];
+    dn = new int[size];
+    work = new int[size];
+    mask = size - 1;
+  }
+
+  public long getNodes() {
+    return nodes;
+  }
+
+  /**
+   * @return positions in the last proof tree, each counted once
+   */
+  public int getSolutionSize() {
+    return solutionSize;
+  }
+
+  /**
+   * @return the winning move after a WIN, the longest resisting move after a LOSS
+   */
+  public MOVE getBestMove() {
+    return bestMove;
+  }
+
+  /**
+   * @return the statistics of the solver, or of the fallback search when the
+   *         last move came from it
+   */
+  public SearchStatistics getStatistics() {
+    return fellBack ? fallback.getStatistics() : statistics;
+  }
+
+  public MOVE findBestMove(BOARD board, int depth) {
+    return findBestMove(board, new SearchLimits(depth));
+  }
+
+  /**
+   * Solve the position, or use the fallback search when the board has too
+   * many pieces or is not solved. A solved move has the value 2.0 (win) or
+   * -2.0 (loss), as the proven values of MonteCarloTreeSearch.
+   */
+  public MOVE findBestMove(BOARD board, SearchLimits limits) {
+    fellBack = true;
+    if (fallback != null && board.getPieceCount() > maxPieces)
+      return fallback.findBestMove(board, limits);
+
+    int result = solve(board, limits);
+    if (result == UNKNOWN && fallback != null)
+      return fallback.findBestMove(board, limits);
+    fellBack = false;
+    if (bestMove == null) {
+      throw new Error ("No Move Available - Search Error!");
+    }
+    bestMove.value = 2.0 * result;
+    bestMove.next = null;
+    return bestMove;
+  }
+
+  public int solve(BOARD board) {
+    return solve(board, new SearchLimits(0));
+  }
+
+  /**
+   * Prove a win for the side to move, then a win for the opponent.
+   *
+   * @param board Game state, left unchanged
+   * @param limits node budget, deadline and stop flag. The stop flag is not
+   *               set by the solver, so a fallback search may still use them.
+   * @return WIN, LOSS or UNKNOWN for the side to move
+   */
+  public int solve(BOARD board, SearchLimits limits) {
+    statistics.start();
+    this.board = board;
+    this.limits = limits;
+    nodes = 0;
+    solutionSize = 0;
+    bestMove = null;
+    budgetEnd = nodeBudget;
+    if (limits.getNodeBudget() != SearchLimits.NO_LIMIT)
+      budgetEnd = Math.min(budgetEnd, limits.getNodeBudget());
+    if (board.endGame() != Board.GAME_CONTINUE) {
+      throw new Error ("No Move Available - Search Error!");
+    }
+
+    int side = board.getCurrentPlayer();
+    int result = UNKNOWN;
+    if (prove(side) == 0) {
+      result = WIN;
+    } else if (!aborted) {
+      int []player = board.getPlayerList();
+      int opponent = (player[0] == side) ? player[1] : player[0];
+      if (prove(opponent) == 0)
+        result = LOSS;
+    }
+    if (result != UNKNOWN)
+      solutionSize = countSolution();
+    if (bestMove == null)
+      bestMove = promisingMove();
+
+    SearchStatistics.Counters counts = new SearchStatistics.Counters();
+    counts.nodes = nodes;
+    statistics.iterationDone(0, counts, true, "df-pn " + (result == WIN ? "Win" : result == LOSS ? "Loss" : "Unknown") +
+        " Solution Size: " + solutionSize + (aborted ? " (budget)" : ""));
+    statistics.searchDone();
+    return result;
+  }
+
+  /**
+   * One df-pn run from the root for attacker.
+   *
+   * @return the proof number of the root, 0 when the win is proven
+   */
+  @SuppressWarnings("unchecked")
+  int prove(int attacker) {
+    this.attacker = attacker;
+    java.util.Arrays.fill(key, 0L);
+    java.util.Arrays.fill(work, 0);
+    aborted = false;
+    pathLength = 0;
+
+    mid(INF, INF);
+    boolean win = board.getCurrentPlayer() == attacker;
+    int rootPn = win ? resultPhi : resultDelta;
+    if (rootPn != 0)
+      return rootPn;
+
+    // The move: a proven child for a win, for a loss the child whose proof took the most work.
+    MOVE best = null;
+    int bestWork = -1;
+    for (MOVE m = (MOVE)board.generateMoves(); m != null; m = (MOVE)m.next) {
+      board.makeMove(m);
+      int game_state = board.endGame();
+      int i = lookup(board.getHashKey());
+      boolean won = game_state == attacker || (i >= 0 && pn[i] == 0);
+      int w = (game_state != Board.GAME_CONTINUE || i < 0) ? 0 : work[i];
+      board.reverseMove(m);
+      if (win) {
+        if (won) {
+          best = m;
+          break;
+        }
+      } else if (w > bestWork) {
+        best = m;
+        bestWork = w;
+      }
+    }
+    bestMove = best;
+    return 0;
+  }
+
+  /**
+   * Multiple iterative deepening (MID) of the current position until its
+   * phi reaches thPhi or its delta reaches thDelta. phi and delta are the
+   * proof and disproof numbers seen from the side to move: (pn, dn) when
+   * the attacker is to move, (dn, pn) otherwise.
+   */
+  @SuppressWarnings("unchecked")
+  void mid(int thPhi, int thDelta) {
+    nodes++;
+    long hashKey = board.getHashKey();
+    boolean or = board.getCurrentPlayer() == attacker;
+
+    int count = 0;
+    for (Move m = board.generateMoves(); m != null; m = m.next)
+      count++;
+    if (count == 0) { // No moves: not a win for the attacker
+      store(hashKey, or ? INF : 0, or ? 0 : INF, 1);
+      resultPhi = or ? INF : 0;
+      resultDelta = or ? 0 : INF;
+      return;
+    }
+    Move []moves = new Move[count];
+    long []childKey = new long[count];
+    int []childPhi = new int[count];
+    int []childDelta = new int[count];
+    count = 0;
+    for (Move m = board.generateMoves(); m != null; m = m.next)
+      moves[count++] = m;
+
+    // Initial proof numbers of the children, from the child's side to move.
+    for (int c = 0; c < count; c++) {
+      board.makeMove(moves[c]);
+      childKey[c] = board.getHashKey();
+      int childPn, childDn;
+      int game_state = board.endGame();
+      if (game_state != Board.GAME_CONTINUE) {
+        childPn = (game_state == attacker) ? 0 : INF;
+        childDn = (game_state == attacker) ? INF : 0;
+      } else if (onPath(childKey[c])) { // Repetition, not a win for the attacker
+        childPn = INF;
+        childDn = 0;
+      } else {
+        int i = lookup(childKey[c]);
+        childPn = (i < 0) ? 1 : pn[i];
+        childDn = (i < 0) ? 1 : dn[i];
+      }
+      board.reverseMove(moves[c]);
+      childPhi[c] = or ? childDn : childPn; // The child is the other kind of node
+      childDelta[c] = or ? childPn : childDn;
+    }
+
+    push(hashKey);
+    long startNodes = nodes;
+    int phi, delta;
+    while (true) {
+      phi = INF;
+      delta = 0;
+      int best = -1, delta2 = INF;
+      for (int c = 0; c < count; c++) {
+        delta = Math.min(INF, delta + childPhi[c]);
+        if (childDelta[c] < phi) {
+          delta2 = phi;
+          phi = childDelta[c];
+          best = c;
+        } else if (childDelta[c] < delta2) {
+          delta2 = childDelta[c];
+        }
+      }
+      if (phi >= thPhi || delta >= thDelta || phi == 0 || delta == 0)
+        break;
+      if (aborted || nodes >= budgetEnd || ((nodes & 1023) == 0 && timeUp())) {
+        aborted = true;
+        break;
+      }
+
+      int childThPhi = (int)Math.min(INF, (long)thDelta + childPhi[best] - delta);
+      int childThDelta = Math.min(thPhi, delta2 + 1);
+      board.makeMove(moves[best]);
+      mid(childThPhi, childThDelta);
+      board.reverseMove(moves[best]);
+      childPhi[best] = resultPhi;
+      childDelta[best] = resultDelta;
+    }
+    pathLength--;
+
+    store(hashKey, or ? phi : delta, or ? delta : phi, (int)Math.min(Integer.MAX_VALUE, nodes - startNodes + 1));
+    resultPhi = phi;
+    resultDelta = delta;
+  }
+
+  boolean timeUp() {
+    return limits.isStopped() ||
+        (limits.getDeadline() != SearchLimits.NO_LIMIT && System.currentTimeMillis() >= limits.getDeadline());
+  }
+
+  /**
+   * @return the index of key in the table, -1 if it is not there
+   */
+  int lookup(long hashKey) {
+    int i = (int)(hashKey & mask);
+    return (key[i] == hashKey && work[i] > 0) ? i : -1;
+  }
+
+  void store(long hashKey, int proof, int disproof, int nodesSpent) {
+    int i = (int)(hashKey & mask);
+    if (key[i] != hashKey && nodesSpent < work[i] && (proof != 0 && disproof != 0))
+      return; // Keep the bigger subtree, unless this one is solved
+    key[i] = hashKey;
+    pn[i] = proof;
+    dn[i] = disproof;
+    work[i] = Math.max(1, nodesSpent);
+  }
+
+  boolean onPath(long hashKey) {
+    for (int i = 0; i < pathLength; i++)
+      if (path[i] == hashKey)
+        return true;
+    return false;
+  }
+
+  void push(long hashKey) {
+    if (pathLength == path.length) {
+      long []grown = new long[path.length * 2];
+      System.arraycopy(path, 0, grown, 0, pathLength);
+      path = grown;
+    }
+    path[pathLength++] = hashKey;
+  }
+
+  /**
+   * Size of the proof tree of the last proof: one proven move at the
+   * attacker's nodes, every move at the defender's, as far as the table
+   * still holds it.
+   */
+  int countSolution() {
+    HashSet<Long> seen = new HashSet<Long>();
+    countSolution(seen);
+    return seen.size();
+  }
+
+  void countSolution(HashSet<Long> seen) {
+    if (!seen.add(board.getHashKey()) || board.endGame() != Board.GAME_CONTINUE)
+      return;
+    boolean or = board.getCurrentPlayer() == attacker;
+    for (Move m = board.generateMoves(); m != null; m = m.next) {
+      board.makeMove(m);
+      int game_state = board.endGame();
+      int i = lookup(board.getHashKey());
+      boolean proven = game_state == attacker || (i >= 0 && pn[i] == 0);
+      if (proven)
+        countSolution(seen);
+      board.reverseMove(m);
+      if (or && proven)
+        return;
+    }
+  }
+
+  /**
+   * Without a result: the move whose child has the smallest proof number
+   * for the side to move from the last run.
+   */
+  @SuppressWarnings("unchecked")
+  MOVE promisingMove() {
+    MOVE best = null;
+    int bestPn = Integer.MAX_VALUE;
+    for (MOVE m = (MOVE)board.generateMoves(); m != null; m = (MOVE)m.next) {
+      board.makeMove(m);
+      int i = lookup(board.getHashKey());
+      int proof = (i < 0) ? 1 : (attacker == board.getCurrentPlayer()) ? dn[i] : pn[i];
+      board.reverseMove(m);
+      if (best == null || proof < bestPn) {
+        best = m;
+        bestPn = proof;
+      }
+    }
+    return best;
+  }
+}
@@ -1,5 +1,8 @@
 package AbstractGames;
 
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
 /**
  *
  */
@@ -12,6 +15,68 @@ public class ExpectiminimaxSearch<BOARD extends StochasticBoard,MOVE extends Mov
 
   int totalNodesSearched;
   int totalLeafNodes;
+  SearchStatistics statistics = new SearchStatistics();
+
+  // Parallel chance events at the root, null for the serial search and
+  // between searches
+  ForkJoinPool pool;
+  int threads;
+  int rootDepth;
+
+  /**
+   * Result of the moves searched under one chance event of the root, in the
+   * order generateMoves returned them.
+   */
+  static class EventResult {
+    double probability;
+    Move []moves;
+    double []values;
+  }
+
+  /**
+   * Searches the root chance events first..last on its own board copy, or
+   * splits the range when it is larger than grain.
+   */
+  class EventTask extends RecursiveTask<EventResult[]> {
+    private static final long serialVersionUID = 1L;
+
+    final int first, last, depth, grain;
+
+    EventTask(int first, int last, int depth, int grain) {
+      this.first = first;
+      this.last = last;
+      this.depth = depth;
+      this.grain = grain;
+    }
+
+    @SuppressWarnings("unchecked")
+    protected EventResult[] compute() {
+      if (last - first + 1 > grain) {
+        int middle = (first + last) >>> 1;
+        EventTask low = new EventTask(first, middle, depth, grain);
+        EventTask high = new EventTask(middle + 1, last, depth, grain);
+        high.fork();
+        EventResult []a = low.compute();
+        EventResult []b = high.join();
+        EventResult []results = new EventResult[a.length + b.length];
+        System.arraycopy(a, 0, results, 0, a.length);
+        System.arraycopy(b, 0, results, a.length, b.length);
+        return results;
+      }
+
+      ExpectiminimaxSearch<BOARD,MOVE> search = new ExpectiminimaxSearch<BOARD,MOVE>();
+      search.board = (BOARD)board.copy();
+      search.maxPlayer = maxPlayer;
+      EventResult []results = new EventResult[last - first + 1];
+      for (int i = first; i <= last; i++)
+        results[i - first] = search.searchEvent(i, depth);
+      synchronized (ExpectiminimaxSearch.this) {
+        totalNodesSearched += search.totalNodesSearched;
+        totalLeafNodes += search.totalLeafNodes;
+      }
+      return results;
+    }
+  }
 
   /**
    *
@@ -21,6 +86,27 @@ public class ExpectiminimaxSearch<BOARD extends StochasticBoard,MOVE extends Mov
     totalLeafNodes = 0;
   }
 
+  /**
+   * Parallel version: the chance events of the root are split across a
+   * ForkJoinPool and every task searches its events on its own board copy.
+   * The per event results are then combined in event order exactly as the
+   * serial search does, so the move and value do not depend on the number of
+   * threads. The board must implement Board.copy(), and the returned move is
+   * one generated on a copy, so moves may not refer to the board they came from.
+   * The pool only lives for one findBestMove, so its threads are not left
+   * running between searches.
+   *
+   * @param threads worker threads of the pool, 1 or less for the serial search
+   */
+  public ExpectiminimaxSearch(int threads) {
+    this();
+    this.threads = threads;
+  }
+
+  public SearchStatistics getStatistics() {
+    return statistics;
+  }
+
   /**
    *
    * @param board Game state
@@ -30,28 +116,30 @@ public class ExpectiminimaxSearch<BOARD extends StochasticBoard,MOVE extends Mov
   @Override
   public MOVE findBestMove(BOARD board, int depth) {
     MOVE best_move = null;
-    int runningNodeTotal = 0;
-    long startTime = System.currentTimeMillis();
-    long elapsedTime = 0;
-    long currentPeriod;
-    long previousPeriod = 0;
 
+    statistics.start();
     this.board = board;
     maxPlayer = board.getCurrentPlayer();
 
     totalNodesSearched = totalLeafNodes = 0;
+    rootDepth = depth;
 
-    best_move = Expectiminimax(depth); // Min-Max alpha beta with transposition tables
-
-    elapsedTime = System.currentTimeMillis()-startTime;
-    currentPeriod = elapsedTime-previousPeriod;
-
-    runningNodeTotal += totalNodesSearched;
-    System.out.println("Depth: " + depth +" Time: " + elapsedTime/1000.0 + " " + currentPeriod/1000.0 + " Nodes Searched: " +
-        totalNodesSearched + " Leaf Nodes: " + totalLeafNodes);
-
+    if (threads > 1)
+      pool = new ForkJoinPool(threads);
+    try {
+      best_move = Expectiminimax(depth); // Min-Max alpha beta with transposition tables
+    } finally {
+      if (pool != null) {
+        pool.shutdown();
+        pool = null;
+      }
+    }
 
-    System.out.println("Nodes per Second = " + runningNodeTotal/(elapsedTime/1000.0));
+    SearchStatistics.Counters counts = new SearchStatistics.Counters();
+    counts.nodes = totalNodesSearched;
+    counts.leafNodes = totalLeafNodes;
+    statistics.iterationDone(depth, counts, true, null);
+    statistics.searchDone();
     if (best_move == null ) {
       throw new Error ("No Move Available - Search Error!");
     }
@@ -70,6 +158,7 @@ public class ExpectiminimaxSearch<BOARD extends StochasticBoard,MOVE extends Mov
     MOVE best_opponent_move = null;
     double v;
 
+    totalNodesSearched++;
     //First check if this is a frontier node, maximum depth?
     if (depth <= 0) {
       totalLeafNodes++;
@@ -117,6 +206,30 @@ public class ExpectiminimaxSearch<BOARD extends StochasticBoard,MOVE extends Mov
 
     best_move.value = bestEUMove.value = -2.0;
 
+    if (pool != null && depth == rootDepth && numberOfChanceEvents > 1) {
+      // A few tasks per thread, so that a slow range does not leave the others idle
+      int grain = (int)Math.max(1, numberOfChanceEvents / (threads * 4L));
+      EventResult []results = pool.invoke(new EventTask(1, (int)numberOfChanceEvents, depth, grain));
+
+      // Same steps as the serial loop below, including the best move carried across events
+      for (EventResult r : results) {
+        expectedUtility = 0.0;
+        for (int j = 0; j < r.moves.length; j++) {
+          v = r.values[j];
+          if (v > best_move.value) {
+            best_move = (MOVE)r.moves[j];
+            best_move.value = v;
+          }
+        }
+        expectedUtility += r.probability * best_move.value;
+        if (expectedUtility > bestEUMove.value) {
+          bestEUMove = best_move;
+          bestEUMove.value = expectedUtility;
+        }
+      }
+      return (MOVE)bestEUMove;
+    }
+
     for (int i = 1; i <= numberOfChanceEvents; i++) {
       StochasticEvent event = board.makeEvent(maxPlayer,i);
 
@@ -146,4 +259,30 @@ public class ExpectiminimaxSearch<BOARD extends StochasticBoard,MOVE extends Mov
 
     return (MOVE)bestEUMove;
   }
+
+  /**
+   * Search every move under chance event i of the root. Used by the parallel
+   * tasks on their board copies.
+   */
+  @SuppressWarnings("unchecked")
+  EventResult searchEvent(int i, int depth) {
+    EventResult r = new EventResult();
+    StochasticEvent event = board.makeEvent(maxPlayer,i);
+    r.probability = event.getEventProbability();
+
+    int count = 0;
+    for (Move m = board.generateMoves(maxPlayer); m != null; m = m.next)
+      count++;
+    r.moves = new Move[count];
+    r.values = new double[count];
+    count = 0;
+    for (MOVE m = (MOVE)board.generateMoves(maxPlayer); m != null; m = (MOVE) m.next) {
+      board.makeMove(maxPlayer,m);
+      r.values[count] = -Expectiminimax(depth-1).value;
+      board.reverseMove(maxPlayer,m);
+      r.moves[count++] = m;
+    }
+    board.reverseEvent(maxPlayer, i, event);
+    return r;
+  }
 }
@@ -0,0 +1,258 @@
+package AbstractGames;
+
+/**
+ * Expectiminimax with alpha-beta pruning at the move nodes and Ballard's
+ * Star1 / Star2 pruning at the chance nodes.
+ *
+ * Every node is a chance node over board.getEventCount(maxPlayer) events,
+ * followed by the moves of the side to move in that event. Unlike
+ * ExpectiminimaxSearch the value of a chance node is the probability
+ * weighted sum of its events, and the root chooses its move before the
+ * events, so the move is the one with the best expected value over the
+ * events that are still possible after it.
+ *
+ * Star1: the value of every node is known to lie in -(INF+depth)..INF+depth
+ * (win/loss scores, the static evaluations are clamped to -INF..INF). With
+ * the events searched so far, the remaining events can only move the chance
+ * node's value by their probability times these bounds, so each event gets a
+ * window from alpha and beta, and the chance node is cut off as soon as its
+ * value can no longer end inside alpha..beta.
+ *
+ * Star2: before the Star1 pass, only the first move of every event is
+ * searched (the probe). The first move is a lower bound on the event's
+ * value, so the probes alone may already prove the chance node fails high,
+ * and otherwise they tighten the beta side of the Star1 windows.
+ *
+ * The pruning returns the same move and value as the search without it
+ * (setPruning(NONE)), which is kept for comparing the node counts.
+ */
+public class ExpectiminimaxStarSearch<BOARD extends StochasticBoard, MOVE extends Move> implements Search<BOARD,MOVE> {
+
+  public static final int NONE = 0;   // Full expectiminimax, no pruning at all
+  public static final int STAR1 = 1;  // Alpha-beta and Star1
+  public static final int STAR2 = 2;  // Alpha-beta, Star1 and Star2 probing
+
+  static final double INF = 1.0;
+
+  BOARD board;
+  int maxPlayer;
+  int pruning = STAR2;
+
+  int totalNodesSearched;
+  int totalLeafNodes;
+  int chanceCutoffs;   // Chance nodes cut off by Star1
+  int probeCutoffs;    // Chance nodes cut off by the Star2 probes
+  SearchStatistics statistics = new SearchStatistics();
+
+  public ExpectiminimaxStarSearch() {
+  }
+
+  /**
+   * @param pruning NONE, STAR1 or STAR2
+   */
+  public ExpectiminimaxStarSearch(int pruning) {
+    setPruning(pruning);
+  }
+
+  public void setPruning(int pruning) {
+    this.pruning = pruning;
+  }
+
+  public int getTotalNodesSearched() {
+    return totalNodesSearched;
+  }
+
+  public SearchStatistics getStatistics() {
+    return statistics;
+  }
+
+  /**
+   *
+   * @param board Game state
+   * @param depth Search depth
+   * @return the move with the best expected value
+   */
+  @SuppressWarnings("unchecked")
+  public MOVE findBestMove(BOARD board, int depth) {
+    statistics.start();
+    this.board = board;
+    maxPlayer = board.getCurrentPlayer();
+    totalNodesSearched = totalLeafNodes = chanceCutoffs = probeCutoffs = 0;
+
+    MOVE best_move = null;
+    double alpha = -bound(depth);
+    double beta = bound(depth);
+    for (MOVE m = (MOVE)board.generateMoves(maxPlayer); m != null; m = (MOVE)m.next) {
+      board.makeMove(maxPlayer, m);
+      double v = (pruning == NONE) ? -chance(depth - 1, -beta, beta) : -chance(depth - 1, -beta, -alpha);
+      board.reverseMove(maxPlayer, m);
+      if (best_move == null || v > alpha) {
+        best_move = m;
+        alpha = v;
+      }
+    }
+
+    SearchStatistics.Counters counts = new SearchStatistics.Counters();
+    counts.nodes = totalNodesSearched;
+    counts.leafNodes = totalLeafNodes;
+    counts.cutoffs = chanceCutoffs + probeCutoffs;
+    statistics.iterationDone(depth, counts, true, "Chance Cutoffs: " + chanceCutoffs + " Probe Cutoffs: " + probeCutoffs);
+    statistics.searchDone();
+    if (best_move == null) {
+      throw new Error ("No Move Available - Search Error!");
+    }
+    best_move.value = alpha;
+    best_move.next = null;
+    return best_move;
+  }
+
+  /**
+   * @return the largest value of a node depth plies above the frontier
+   */
+  static double bound(int depth) {
+    return INF + Math.max(depth, 0);
+  }
+
+  /**
+   * Chance node, from the view of the side to move. Fail hard: the value is
+   * clamped to alpha..beta.
+   */
+  double chance(int depth, double alpha, double beta) {
+    int count = board.getEventCount(maxPlayer);
+    if (count <= 1) { // Nothing left to chance, the node is a move node
+      StochasticEvent event = board.makeEvent(maxPlayer, 1);
+      double v = node(depth, alpha, beta, false);
+      board.reverseEvent(maxPlayer, 1, event);
+      return v;
+    }
+
+    double upper = bound(depth);
+    double lower = -upper;
+    if (pruning == NONE) {
+      double sum = 0.0;
+      for (int i = 1; i <= count; i++) {
+        StochasticEvent event = board.makeEvent(maxPlayer, i);
+        sum += event.getEventProbability() * node(depth, lower, upper, false);
+        board.reverseEvent(maxPlayer, i, event);
+      }
+      return sum;
+    }
+
+    // Star2 probes: a lower bound of every event from its first move.
+    double []low = null;
+    double []probability = null;
+    if (pruning == STAR2) {
+      low = new double[count + 1];
+      probability = new double[count + 1];
+      double probed = 0.0; // Sum of probability * lower bound of the probed events
+      double remaining = 1.0;
+      for (int i = 1; i <= count; i++) {
+        StochasticEvent event = board.makeEvent(maxPlayer, i);
+        double p = event.getEventProbability();
+        remaining -= p;
+        double b = (beta - probed - Math.max(remaining, 0.0) * lower) / p;
+        double v = (b <= lower) ? b : node(depth, lower, Math.min(b, upper), true);
+        board.reverseEvent(maxPlayer, i, event);
+        if (v >= b) {
+          probeCutoffs++;
+          return beta;
+        }
+        low[i] = v;
+        probability[i] = p;
+        probed += p * v;
+      }
+    }
+
+    // Star1, with the probe bounds of the events still to come when known.
+    double sum = 0.0;      // Sum of probability * value of the searched events
+    double remaining = 1.0;
+    double lowAfter = 0.0; // Sum of probability * lower bound of the events after i
+    if (low != null)
+      for (int i = 1; i <= count; i++)
+        lowAfter += probability[i] * low[i];
+    for (int i = 1; i <= count; i++) {
+      StochasticEvent event = board.makeEvent(maxPlayer, i);
+      double p = event.getEventProbability();
+      remaining -= p;
+      double rest = Math.max(remaining, 0.0);
+      if (low != null)
+        lowAfter -= p * low[i];
+      else
+        lowAfter = rest * lower;
+      double a = (alpha - sum - rest * upper) / p;
+      double b = (beta - sum - lowAfter) / p;
+      double v;
+      if (a >= upper) // Cannot reach alpha, or cannot stay below beta, whatever this event is worth
+        v = a;
+      else if (b <= lower)
+        v = b;
+      else
+        v = node(depth, Math.max(a, lower), Math.min(b, upper), false);
+      board.reverseEvent(maxPlayer, i, event);
+      if (v <= a) {
+        chanceCutoffs++;
+        return alpha;
+      }
+      if (v >= b) {
+        chanceCutoffs++;
+        return beta;
+      }
+      sum += p * v;
+    }
+    return Math.max(alpha, Math.min(beta, sum));
+  }
+
+  /**
+   * Move node after the event has been made, from the view of the side to
+   * move. Fail hard.
+   *
+   * @param probe search only the first move (Star2 probe)
+   */
+  @SuppressWarnings("unchecked")
+  double node(int depth, double alpha, double beta, boolean probe) {
+    totalNodesSearched++;
+    if (pruning == NONE) {
+      alpha = -bound(depth);
+      beta = bound(depth);
+    }
+    int side = board.getCurrentPlayer(maxPlayer);
+
+    // Is this the end of the game?
+    int game_state = board.endGame(maxPlayer);
+    if (game_state != Board.GAME_CONTINUE) {
+      double v;
+      if (game_state == Board.GAME_DRAW)
+        v = 0.0;
+      else
+        v = (game_state == side) ? INF + depth : -(INF + depth);
+      return Math.max(alpha, Math.min(beta, v));
+    }
+
+    MOVE moves = (depth <= 0) ? null : (MOVE)board.generateMoves(maxPlayer);
+    if (moves == null) { // Frontier node, or nowhere left to play
+      totalLeafNodes++;
+      double v = Math.max(-INF, Math.min(INF, board.heuristicEvaluation(maxPlayer)));
+      if (side != maxPlayer)
+        v = -v;
+      return Math.max(alpha, Math.min(beta, v));
+    }
+
+    for (MOVE m = moves; m != null; m = (MOVE)m.next) {
+      board.makeMove(maxPlayer, m);
+      double v = -chance(depth - 1, -beta, -alpha);
+      board.reverseMove(maxPlayer, m);
+      if (pruning == NONE) {
+        if (v > alpha)
+          alpha = v;
+        continue;
+      }
+      if (v >= beta)
+        return beta;
+      if (v > alpha)
+        alpha = v;
+      if (probe)
+        break;
+    }
+    return alpha;
+  }
+}
@@ -0,0 +1,378 @@
+package AbstractGames;
+
+import java.util.Random;
+
+/**
+ * Single observer Information Set Monte Carlo Tree Search (SO-ISMCTS) for a
+ * StochasticBoard.
+ *
+ * The tree is built from the view of the player to move at the root (the
+ * perspective) and its nodes are information sets: a node is the sequence of
+ * moves made from the root, whatever the hidden state is. Each iteration
+ * samples one determinization with sampleEvent, plays an UCT iteration
+ * on the perspective board of that determinization and then reverts it.
+ * The cost of a decision is set by the number of iterations, not by the
+ * size of the event space that ExpectiminimaxSearch enumerates.
+ *
+ * A move can be legal in one determinization and not in another, so UCB1
+ * uses the number of times a child was available for selection in place of
+ * the parent's visits.
+ *
+ * The tree is a node pool of parallel arrays as in MonteCarloTreeSearch, and
+ * node values are kept from the view of the player that made the move into
+ * the node.
+ */
+public class InformationSetMCTS<BOARD extends StochasticBoard, MOVE extends Move> implements Search<BOARD,MOVE> {
+
+  BOARD board;
+  int perspective;
+  PlayoutPolicy policy;
+  Random random = new MersenneTwister();
+  double exploration = 0.7;     // UCB1 constant
+  int iterations = 10000;       // Iterations when the limits set neither time nor nodes
+  int playoutLimit = 200;       // Playout moves before the heuristic decides
+  int maxNodes = 1 << 20;       // Pool size limit (memory limit)
+
+  // Node pool
+  int size;
+  int []firstChild;
+  int []nextSibling;
+  int []visits;
+  int []availability;           // Iterations in which the move into the node was legal
+  double []wins;
+  Move []move;
+
+  // Statistics
+  int totalIterations;
+  SearchStatistics statistics = new SearchStatistics();
+  long playoutMoves;
+  int maxTreeDepth;
+
+  // Moves made on the board and nodes visited by the current iteration
+  Move []path = new Move[64];
+  int pathLength;
+  int []nodes = new int[64];
+  int nodeCount;
+
+  // Legal moves at the current node and their children, -1 if not in the tree
+  Move []legal = new Move[64];
+  int []legalChild = new int[64];
+
+  public InformationSetMCTS() {
+    this(new RandomPlayoutPolicy());
+  }
+
+  /**
+   * @param policy chooses the moves of the playouts
+   */
+  public InformationSetMCTS(PlayoutPolicy policy) {
+    this.policy = policy;
+    allocate(1024);
+  }
+
+  public void setExploration(double exploration) {
+    this.exploration = exploration;
+  }
+
+  public void setIterations(int iterations) {
+    this.iterations = Math.max(1, iterations);
+  }
+
+  public void setPlayoutLimit(int playoutLimit) {
+    this.playoutLimit = playoutLimit;
+  }
+
+  public void setSeed(long seed) {
+    random.setSeed(seed);
+  }
+
+  public void setMaxNodes(int maxNodes) {
+    this.maxNodes = Math.max(2, maxNodes);
+  }
+
+  /**
+   * @param bytes memory for the tree, converted with MonteCarloTreeSearch.BYTES_PER_NODE
+   */
+  public void setMemoryLimit(long bytes) {
+    setMaxNodes((int)Math.min(Integer.MAX_VALUE, bytes / MonteCarloTreeSearch.BYTES_PER_NODE));
+  }
+
+  public SearchStatistics getStatistics() {
+    return statistics;
+  }
+
+  /**
+   * ISMCTS has no search depth, the iteration budget is used instead.
+   */
+  public MOVE findBestMove(BOARD board, int depth) {
+    return findBestMove(board, new SearchLimits(depth));
+  }
+
+  /**
+   * Run iterations until the SearchLimits deadline, node budget (counted in
+   * iterations) or stop flag, or if neither time nor nodes are limited, the
+   * iteration budget.
+   *
+   * @param board Game state
+   * @param limits Search limits
+   * @return the most visited move
+   */
+  @SuppressWarnings("unchecked")
+  public MOVE findBestMove(BOARD board, SearchLimits limits) {
+    long startTime = System.currentTimeMillis();
+    long budget = limits.getNodeBudget();
+    if (budget == SearchLimits.NO_LIMIT && limits.getDeadline() == SearchLimits.NO_LIMIT)
+      budget = iterations;
+
+    this.board = board;
+    statistics.start();
+    perspective = board.getCurrentPlayer();
+    size = 0;
+    totalIterations = 0;
+    playoutMoves = 0;
+    maxTreeDepth = 0;
+    newNode(-1, null);
+
+    do {
+      StochasticEvent event = board.sampleEvent(perspective, random);
+      iterate();
+      board.reverseSampledEvent(perspective, event);
+      totalIterations++;
+    } while (!(budget != SearchLimits.NO_LIMIT && totalIterations >= budget) &&
+        !limits.limitReached(totalIterations));
+
+    SearchStatistics.Counters counts = new SearchStatistics.Counters();
+    counts.nodes = totalIterations; // An iteration is one determinization, selection, expansion and playout
+    counts.leafNodes = totalIterations;
+    statistics.iterationDone(maxTreeDepth, counts, true, "ISMCTS Tree Nodes: " + size + " Playout Moves: " + playoutMoves +
+        (size >= maxNodes ? " (pool full)" : ""));
+    statistics.searchDone();
+
+    int best = -1;
+    for (int c = firstChild[0]; c >= 0; c = nextSibling[c])
+      if (best < 0 || visits[c] > visits[best])
+        best = c;
+    if (best < 0) {
+      throw new Error ("No Move Available - Search Error!");
+    }
+    MOVE best_move = (MOVE)move[best];
+    best_move.value = 2.0 * wins[best] / visits[best] - 1.0;
+    best_move.next = null;
+    return best_move;
+  }
+
+  /**
+   * One iteration on the current determinization.
+   */
+  void iterate() {
+    int node = 0;
+    int mover = -1; // The player that moved into node
+    pathLength = 0;
+    nodeCount = 0;
+    nodes[nodeCount++] = 0;
+
+    double reward; // For the player that moved into node
+    while (true) {
+      int game_state = board.endGame(perspective);
+      if (game_state != Board.GAME_CONTINUE) {
+        if (game_state == Board.GAME_DRAW)
+          reward = 0.5;
+        else
+          reward = (game_state == mover) ? 1.0 : 0.0;
+        break;
+      }
+      int count = legalMoves(node);
+      if (count == 0) { // Nowhere left to play
+        reward = 0.5;
+        break;
+      }
+
+      // Expand one of the legal moves that is not in the tree yet.
+      int untried = 0;
+      for (int i = 0; i < count; i++)
+        if (legalChild[i] < 0)
+          untried++;
+      if (untried > 0 && size < maxNodes) {
+        int pick = random.nextInt(untried);
+        int i = 0;
+        while (legalChild[i] >= 0 || pick-- > 0)
+          i++;
+        mover = board.getCurrentPlayer(perspective);
+        play(legal[i]);
+        node = newNode(node, legal[i]);
+        legal[i].next = null; // Do not keep the rest of the move list alive
+        availability[node]++;
+        enter(node);
+        reward = 1.0 - playout();
+        break;
+      }
+
+      // Select among the children that are legal in this determinization.
+      int best = -1;
+      double bestValue = -Double.MAX_VALUE;
+      for (int i = 0; i < count; i++) {
+        int c = legalChild[i];
+        if (c < 0)
+          continue;
+        double value = wins[c] / visits[c] + exploration * Math.sqrt(Math.log(availability[c]) / visits[c]);
+        if (value > bestValue) {
+          bestValue = value;
+          best = i;
+        }
+      }
+      if (best < 0) { // Pool full and nothing in the tree, play out from here.
+        reward = 1.0 - playout();
+        break;
+      }
+      mover = board.getCurrentPlayer(perspective);
+      play(legal[best]);
+      node = legalChild[best];
+      enter(node);
+    }
+    if (nodeCount - 1 > maxTreeDepth)
+      maxTreeDepth = nodeCount - 1;
+
+    while (pathLength > 0)
+      board.reverseMove(perspective, path[--pathLength]);
+
+    for (int i = nodeCount - 1; i >= 0; i--) {
+      int n = nodes[i];
+      visits[n]++;
+      wins[n] += reward;
+      reward = 1.0 - reward;
+    }
+  }
+
+  /**
+   * Fill legal and legalChild with the moves of the current determinization
+   * and the children of node they lead to. Every child found is counted as
+   * available.
+   *
+   * @return number of legal moves
+   */
+  int legalMoves(int node) {
+    int count = 0;
+    for (Move m = board.generateMoves(perspective); m != null; m = m.next) {
+      if (count == legal.length) {
+        Move []grownLegal = new Move[legal.length * 2];
+        int []grownChild = new int[legal.length * 2];
+        System.arraycopy(legal, 0, grownLegal, 0, count);
+        System.arraycopy(legalChild, 0, grownChild, 0, count);
+        legal = grownLegal;
+        legalChild = grownChild;
+      }
+      int child = -1;
+      for (int c = firstChild[node]; c >= 0; c = nextSibling[c])
+        if (move[c].equals(m)) {
+          child = c;
+          availability[c]++;
+          break;
+        }
+      legal[count] = m;
+      legalChild[count] = child;
+      count++;
+    }
+    return count;
+  }
+
+  /**
+   * Play the determinization out.
+   *
+   * @return reward for the player to move at the start of the playout
+   */
+  double playout() {
+    int player = board.getCurrentPlayer(perspective);
+    int start = pathLength;
+    double reward;
+    while (true) {
+      int game_state = board.endGame(perspective);
+      if (game_state == Board.GAME_DRAW) {
+        reward = 0.5;
+        break;
+      }
+      if (game_state != Board.GAME_CONTINUE) {
+        reward = (game_state == player) ? 1.0 : 0.0;
+        break;
+      }
+      Move moves = board.generateMoves(perspective);
+      if (moves == null) {
+        reward = 0.5;
+        break;
+      }
+      if (pathLength - start >= playoutLimit) {
+        // The evaluation is from the view of the perspective player.
+        double h = Math.max(-1.0, Math.min(1.0, board.heuristicEvaluation(perspective)));
+        reward = (h + 1.0) / 2.0;
+        if (player != perspective)
+          reward = 1.0 - reward;
+        break;
+      }
+      play(policy.selectMove(board, moves, random));
+    }
+    playoutMoves += pathLength - start;
+    return reward;
+  }
+
+  void play(Move m) {
+    if (pathLength == path.length) {
+      Move []grown = new Move[path.length * 2];
+      System.arraycopy(path, 0, grown, 0, pathLength);
+      path = grown;
+    }
+    board.makeMove(perspective, m);
+    path[pathLength++] = m;
+  }
+
+  void enter(int node) {
+    if (nodeCount == nodes.length) {
+      int []grown = new int[nodes.length * 2];
+      System.arraycopy(nodes, 0, grown, 0, nodeCount);
+      nodes = grown;
+    }
+    nodes[nodeCount++] = node;
+  }
+
+  int newNode(int p, Move m) {
+    if (size == firstChild.length)
+      allocate(Math.min(maxNodes, firstChild.length * 2));
+    int n = size++;
+    firstChild[n] = -1;
+    nextSibling[n] = -1;
+    visits[n] = 0;
+    availability[n] = 0;
+    wins[n] = 0.0;
+    move[n] = m;
+    if (p >= 0) {
+      nextSibling[n] = firstChild[p];
+      firstChild[p] = n;
+    }
+    return n;
+  }
+
+  /**
+   * Grow the pool to capacity nodes, keeping the existing nodes.
+   */
+  void allocate(int capacity) {
+    int old = (firstChild == null) ? 0 : size;
+    int []newFirstChild = new int[capacity];
+    int []newNextSibling = new int[capacity];
+    int []newVisits = new int[capacity];
+    int []newAvailability = new int[capacity];
+    double []newWins = new double[capacity];
+    Move []newMove = new Move[capacity];
+    if (old > 0) {
+      System.arraycopy(firstChild, 0, newFirstChild, 0, old);
+      System.arraycopy(nextSibling, 0, newNextSibling, 0, old);
+      System.arraycopy(visits, 0, newVisits, 0, old);
+      System.arraycopy(availability, 0, newAvailability, 0, old);
+      System.arraycopy(wins, 0, newWins, 0, old);
+      System.arraycopy(move, 0, newMove, 0, old);
+    }
+    firstChild = newFirstChild;
+    nextSibling = newNextSibling;
+    visits = newVisits;
+    availability = newAvailability;
+    wins = newWins;
+    move = newMove;
+  }
+}
@@ -34,6 +34,7 @@ public class LOACustomPanel extends JPanel {
 
   LOABoard board; // The LOA board
   Search<LOABoard, LOAMove> search; // The Search algorithm
+  PonderingSearch<LOABoard, LOAMove> ponderingSearch; // Used instead of search when pondering
   public int x1, y1, x2, y2; // User move information
 
   private int depth;
@@ -47,6 +48,8 @@ public class LOACustomPanel extends JPanel {
   // Set SELF_PLAY to true to play by yourself (also, always select black when you start)
   private boolean SELF_PLAY = false;
 
+  private boolean pondering = false; // Search on the opponent's time, see setPondering
+
   /**
    * Select the evaluator and search algorithm here
    */
@@ -55,6 +58,9 @@ public class LOACustomPanel extends JPanel {
 //    search = new MinimaxSearch<LOABoard, LOAMove>();
 //    search = new MinimaxAlphaBetaSearch<LOABoard, LOAMove>();
     search = new MinimaxAlphaBetaTransposition<LOABoard, LOAMove>();
+    //search = new DfpnSolver<LOABoard, LOAMove>(new MinimaxAlphaBetaTransposition<LOABoard, LOAMove>()); // Solved endgames
+    // Search on the opponent's time, used instead of search when pondering is on
+    ponderingSearch = new PonderingSearch<LOABoard, LOAMove>(new MinimaxAlphaBetaTransposition<LOABoard, LOAMove>(), new MinimaxAlphaBetaTransposition<LOABoard, LOAMove>());
   }
   /**
    * The LOAWorker generates a thread that calls the WorkBoard bestMove
@@ -62,12 +68,17 @@ public class LOACustomPanel extends JPanel {
    */
   final class LOAWorker extends SwingWorker<Integer, Void> {
 
+    final LOABoard workBoard = board; // newGame replaces board
+    final Search<LOABoard, LOAMove> workSearch = activeSearch();
+
     protected Integer doInBackground() throws Exception {
       long startTime;
 
       startTime = System.currentTimeMillis();
       System.out.println(getDepth());
-      LOAMove move = search.findBestMove(board, getDepth());
+      LOAMove move = workSearch.findBestMove(workBoard, getDepth());
+      if (workBoard != board) // A new game was started during the search
+        return LOABoard.GAME_CONTINUE;
       startTime = System.currentTimeMillis() - startTime;
       board.makeMove(move);
       lgui.statusTextArea.append(computer + " Move: " + move.toString()
@@ -86,6 +97,10 @@ public class LOACustomPanel extends JPanel {
     protected void done() {
 
       Integer result;
+      if (workBoard != board || !pondering) // Restarted or pondering switched off during the search
+        stopPondering(workSearch);
+      if (workBoard != board)
+        return;
       try {
         // Retrieve the return value of doInBackground.
         result = get();
@@ -215,6 +230,7 @@ public class LOACustomPanel extends JPanel {
                   lgui.status.setText("GAME OVER White wins!");
                   lgui.statusTextArea.append("White wins!\n");
                 }
+                stopPondering();
                 repaint();
                 return;
               }
@@ -250,6 +266,52 @@ public class LOACustomPanel extends JPanel {
     worker.execute();
   }
 
+  /**
+   * Start a new game: stop the pondering and reset the board. A search that
+   * is still running finishes in the background and its move is dropped. The
+   * GUI then sets up the sides.
+   */
+  public void newGame() {
+    stopPondering();
+    initializeGame();
+    lastmove = null;
+    user_move = NOT_MOVE;
+    repaint();
+  }
+
+  /**
+   * @return the search of the next computer move
+   */
+  public Search<LOABoard, LOAMove> activeSearch() {
+    return pondering ? ponderingSearch : search;
+  }
+
+  public boolean isPondering() {
+    return pondering;
+  }
+
+  /**
+   * Search on the opponent's time with ponderingSearch instead of search,
+   * from the next computer move on.
+   */
+  public void setPondering(boolean pondering) {
+    this.pondering = pondering;
+    if (!pondering)
+      stopPondering();
+  }
+
+  /**
+   * Stop the background search, e.g. when the game ends or is restarted.
+   */
+  public void stopPondering() {
+    stopPondering(ponderingSearch);
+  }
+
+  void stopPondering(Search<LOABoard, LOAMove> s) {
+    if (s instanceof PonderingSearch)
+      ((PonderingSearch<?, ?>)s).stopPondering();
+  }
+
   /**
    * Load the artwork and initialize the drawing surfaces
    */
@@ -30,9 +30,9 @@ public class LOAGUI extends JApplet {
 
     GridBagLayout gridBagLayout = new GridBagLayout();
     gridBagLayout.columnWidths = new int[]{300, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0};
-    gridBagLayout.rowHeights = new int[]{0, 0, 0, 0, 0};
+    gridBagLayout.rowHeights = new int[]{0, 0, 0, 0, 0, 0};
     gridBagLayout.columnWeights = new double[]{0.0, 0.0, 0.0, 0.0, 0.0, 0.0, 0.0, 0.0, 0.0, 1.0, 1.0, Double.MIN_VALUE};
-    gridBagLayout.rowWeights = new double[]{0.0, 0.0, 0.0, 1.0, Double.MIN_VALUE};
+    gridBagLayout.rowWeights = new double[]{0.0, 0.0, 0.0, 1.0, 0.0, Double.MIN_VALUE};
     setLayout(gridBagLayout);
 
     JLabel lblNewLabel = new JLabel("Depth");
@@ -97,6 +97,29 @@ public class LOAGUI extends JApplet {
     gbc_statusTextArea.gridy = 3;
     add(statusTextArea, gbc_statusTextArea);
 
+    JCheckBox ponderCheckBox = new JCheckBox("Ponder");
+    ponderCheckBox.addItemListener(new ItemListener() {
+      public void itemStateChanged(ItemEvent e) {
+        ponderItemStateChanged(e);
+      }
+    });
+    GridBagConstraints gbc_ponderCheckBox = new GridBagConstraints();
+    gbc_ponderCheckBox.gridx = 9;
+    gbc_ponderCheckBox.gridy = 5;
+    add(ponderCheckBox, gbc_ponderCheckBox);
+
+    JButton newGameButton = new JButton("New Game");
+    newGameButton.addActionListener(new ActionListener() {
+      public void actionPerformed(ActionEvent e) {
+        newGame();
+      }
+    });
+    GridBagConstraints gbc_newGameButton = new GridBagConstraints();
+    gbc_newGameButton.fill = GridBagConstraints.HORIZONTAL;
+    gbc_newGameButton.gridx = 10;
+    gbc_newGameButton.gridy = 5;
+    add(newGameButton, gbc_newGameButton);
+
     boardPanel = new LOACustomPanel(this);
     boardPanel.setSize(300,300);
     boardPanel.setDoubleBuffered(true);
@@ -110,6 +133,14 @@ public class LOAGUI extends JApplet {
     gbc_boardPanel.gridy = 1;
     add(boardPanel, gbc_boardPanel);
 
+    chooseSide();
+    validate();
+  }
+
+  /**
+   * Ask the user for a side and set up the players.
+   */
+  void chooseSide() {
     Object[] possibilities = {"Black", "White"};
     String s = (String)JOptionPane.showInputDialog(
         this,
@@ -121,7 +152,7 @@ public class LOAGUI extends JApplet {
         "Black");
 
     //If a string was returned, say so.
-    if (s.equals("White")) {
+    if ("White".equals(s)) {
       // launch the SwingWorker thread for the computer to play black
       status.setText("Please select a search depth.");
       startAsBlack = true;
@@ -134,7 +165,28 @@ public class LOAGUI extends JApplet {
       boardPanel.setPlayer(new String("Black"));
       boardPanel.setComputer(new String("White"));
     }
-    validate();
+  }
+
+  /**
+   * Restart the game, keeping the depth and ponder settings.
+   */
+  void newGame() {
+    boardPanel.newGame();
+    statusTextArea.setText("");
+    chooseSide();
+    if (startAsBlack) { // The depth is already selected
+      startAsBlack = false;
+      status.setText("Computer's move as Black.");
+      boardPanel.runWorkerExtern();
+    }
+  }
+
+  void ponderItemStateChanged(ItemEvent e) {
+    boolean on = (e.getStateChange() == ItemEvent.SELECTED);
+    boardPanel.setPondering(on);
+    String D = "Pondering " + (on ? "on" : "off") + "\n";
+    statusTextArea.append(D);
+    status.setText(D);
   }
 
   void timeItemStateChanged(ItemEvent e) {
@@ -0,0 +1,324 @@
+package AbstractGames;
+
+/**
+ * MTD(f) search with a transposition table.
+ *
+ * Each iteration finds the minimax value with a series of zero window
+ * alpha-beta searches. Every pass either fails high, which raises the lower
+ * bound, or fails low, which lowers the upper bound, until the two meet. The
+ * first guess is the value of the previous iteration. The table keeps the
+ * bounds found by earlier passes, so each pass mostly re-reads work already
+ * done.
+ *
+ * Board values are doubles, so bounds only converge to within EPSILON. After
+ * maxPasses passes the remaining (lower, upper) interval is searched once
+ * with a normal window so the iteration always finishes.
+ */
+public class MTDfSearch<BOARD extends TranspositionBoard, MOVE extends Move> implements Search<BOARD,MOVE> {
+
+  /**
+   * Width of the zero window, and how close the bounds have to get.
+   */
+  static final double EPSILON = 1.0e-6;
+
+  BOARD board;
+  int totalNodesSearched;
+  int totalLeafNodes;
+  int transpositionTableHit;
+  int actualHit;
+  int ttProbes, cutoffs, firstMoveCutoffs;
+  long collisionsBefore; // Board collision count when the iteration started
+  SearchStatistics statistics = new SearchStatistics();
+  int passes;               // Zero window searches in this iteration
+  int maxPasses = 32;
+
+  SearchLimits limits;      // null while the search may not be stopped
+  int nodesBeforeIteration; // Nodes searched by the completed iterations
+  int pollCount;
+  boolean stopSearch = false;
+
+  public MTDfSearch() {
+    totalNodesSearched = 0;
+    totalLeafNodes = 0;
+  }
+
+  /**
+   * @param maxPasses zero window passes per iteration before the rest of the
+   *                  interval is searched with a normal window
+   */
+  public MTDfSearch(int maxPasses) {
+    this();
+    this.maxPasses = Math.max(1, maxPasses);
+  }
+
+  public SearchStatistics getStatistics() {
+    return statistics;
+  }
+
+  public MOVE findBestMove(BOARD board, int depth) {
+    return findBestMove(board, new SearchLimits(depth));
+  }
+
+  /**
+   * Iterative deepening MTD(f). Stops on the search limits like
+   * MinimaxAlphaBetaTransposition, returning the move of the last completed
+   * iteration.
+   *
+   * @param board Game state
+   * @param limits Search limits
+   * @return the best move
+   */
+  public MOVE findBestMove(BOARD board, SearchLimits limits) {
+    int depth = limits.getMaxDepth();
+    MOVE best_move = null;
+    double guess = 0.0;
+    int runningNodeTotal = 0;
+    long startTime = System.currentTimeMillis();
+    long elapsedTime = 0;
+    long currentPeriod;
+    long previousPeriod = 0;
+    int i = 1;
+
+    this.board = board;
+    statistics.start();
+    this.limits = null; // The first iteration always completes
+    stopSearch = false;
+    pollCount = 0;
+    TimeManager timeManager = null;
+    if (limits.getDeadline() != SearchLimits.NO_LIMIT)
+      timeManager = new TimeManager(limits);
+
+    while (i <= depth) {
+      totalNodesSearched = totalLeafNodes = transpositionTableHit = actualHit = passes = 0;
+      ttProbes = cutoffs = firstMoveCutoffs = 0;
+      collisionsBefore = board.getHashCollisions();
+      nodesBeforeIteration = runningNodeTotal;
+
+      MOVE move = MTDf(i, guess);
+      if (stopSearch) {
+        statistics.iterationDone(i, counters(), false, null);
+        break;
+      }
+      best_move = move;
+      guess = move.value;
+
+      elapsedTime = System.currentTimeMillis() - startTime;
+      currentPeriod = elapsedTime - previousPeriod;
+      double rate = 0.0;
+      if (i > 3 && previousPeriod > 50)
+        rate = (currentPeriod - previousPeriod) / previousPeriod;
+      previousPeriod = elapsedTime;
+
+      runningNodeTotal += totalNodesSearched;
+      statistics.iterationDone(i, counters(), true, "MTD(f) Passes: " + passes + " Rate: " + rate);
+
+      // increment indexes;
+      i = i + 2;
+      this.limits = limits;
+      if (limits.limitReached(runningNodeTotal))
+        break;
+      if (timeManager != null) {
+        timeManager.iterationDone(currentPeriod, totalNodesSearched, best_move);
+        if (i <= depth && !timeManager.startNextIteration()) {
+          statistics.log("Depth: " + i + " not started, predicted time: " + timeManager.getPredicted() / 1000.0 +
+              " Growth: " + timeManager.getGrowth());
+          break;
+        }
+      }
+    }
+    this.limits = null;
+
+    board.clearTranspositionTable();
+
+    statistics.searchDone();
+    if (best_move == null ) {
+      throw new Error ("No Move Available - Search Error!");
+    }
+    return best_move;
+  }
+
+  /**
+   * @return the counts since the start of the iteration
+   */
+  SearchStatistics.Counters counters() {
+    SearchStatistics.Counters c = new SearchStatistics.Counters();
+    c.nodes = totalNodesSearched;
+    c.leafNodes = totalLeafNodes;
+    c.ttProbes = ttProbes;
+    c.ttHits = transpositionTableHit;
+    c.ttCutoffs = actualHit;
+    c.ttCollisions = board.getHashCollisions() - collisionsBefore;
+    c.cutoffs = cutoffs;
+    c.firstMoveCutoffs = firstMoveCutoffs;
+    return c;
+  }
+
+  /**
+   * One MTD(f) iteration.
+   *
+   * @param depth search depth
+   * @param guess first guess of the value, usually the previous iteration's
+   * @return best move, with its value in Move.value
+   */
+  MOVE MTDf(int depth, double guess) {
+    double lower = -Double.MAX_VALUE;
+    double upper = Double.MAX_VALUE;
+    double g = guess;
+    MOVE best_move = null;
+    MOVE move;
+
+    while (upper - lower > EPSILON) {
+      if (passes >= maxPasses) {
+        // Not converged, finish with a normal window over what is left.
+        move = AlphaBetaWithMemory(depth, lower, upper);
+        if (best_move == null || move.value > lower)
+          best_move = move;
+        return best_move;
+      }
+      double beta = (g == lower) ? g + EPSILON : g;
+      passes++;
+      move = AlphaBetaWithMemory(depth, beta - EPSILON, beta);
+      if (stopSearch)
+        return move;
+      g = move.value;
+      if (g < beta)
+        upper = g;   // Fail low, the move is not reliable
+      else {
+        lower = g;   // Fail high, this move reaches at least g
+        best_move = move;
+      }
+      if (best_move == null)
+        best_move = move;
+    }
+    return best_move;
+  }
+
+  /**
+   * Fail soft alpha-beta that stores its bounds in the transposition table.
+   *
+   * @param depth int the depth of the search to conduct
+   * @return best move, with its value in Move.value
+   */
+  MOVE AlphaBetaWithMemory(int depth, double alpha, double beta) {
+    totalNodesSearched++;
+    MOVE best_move = (MOVE)board.newMove();
+    MOVE opponent_move;
+    MOVE best_opponent_move = null;
+
+    if (limits != null && ++pollCount >= limits.pollInterval) {
+      pollCount = 0;
+      if (limits.limitReached(nodesBeforeIteration + totalNodesSearched))
+        stopSearch = true;
+    }
+    if (stopSearch) // Out of time or cancelled, the iteration is discarded.
+      return best_move;
+
+    if (depth < 1) {
+      totalLeafNodes++;
+      best_move.value = board.heuristicEvaluation();
+      return best_move;
+    }
+
+    double alpha_start = alpha;
+    MOVE TransMove = (MOVE)board.ProbeMove();
+    ttProbes++;
+    int flag = board.ProbeHash(depth, alpha, beta);
+    // As in PrincipalVariationSearch only a hit with a valid table move is
+    // used, so a cutoff always returns a legal move.
+    if (flag != -5 && TransMove != null && board.moveIsValid(TransMove)) {
+      double value = board.ProbeValue(depth);
+      transpositionTableHit++;
+      boolean cutoff = false;
+      if (flag == board.HASH_EXACT)
+        cutoff = true;
+      else if (flag == board.HASH_BETA && value >= beta) // lower bound
+        cutoff = true;
+      else if (flag == board.HASH_ALPHA && value <= alpha) // upper bound
+        cutoff = true;
+      if (cutoff) {
+        actualHit++;
+        best_move = TransMove;
+        best_move.value = value;
+        return best_move;
+      }
+    }
+
+    // Is this the end of the game?
+    int game_state = board.endGame();
+    if (game_state != Board.GAME_CONTINUE) {
+      if (game_state == board.getCurrentPlayer()) { // Did this player win?
+        best_move.value = 1.0+depth/1.0;
+        return best_move;
+      }
+      int []player = board.getPlayerList(); // Did an opponent win?
+      for (int i = 0; i < player.length; i++) {
+        if (game_state == player[i]) {
+          best_move.value = -(1.0+depth/1.0);
+          return best_move;
+        }
+      }
+      if (game_state == Board.GAME_DRAW) { // Game is a draw
+        best_move.value = -(1.0+depth/1.0);
+        return best_move;
+      }
+    }
+
+    Move moves = board.generateMoves();  // Get all valid moves for this board
+    if (moves == null) { // Do we have any moves that we can make? If not assume that we have to withdraw and lose.
+      best_move.value = -(1.0+depth/1.0);
+      return best_move;
+    }
+    moves = board.moveOrdering(moves, depth);
+
+    // Move the transposition table move to the front of the list.
+    if (TransMove != null && !moves.equals(TransMove)) {
+      for (Move prev = moves; prev.next != null; prev = prev.next) {
+        if (prev.next.equals(TransMove)) {
+          Move m = prev.next;
+          prev.next = m.next;
+          m.next = moves;
+          moves = m;
+          break;
+        }
+      }
+    }
+
+    boolean first = true;
+    for ( Move m = moves; m != null; m = m.next ) {
+      board.makeMove(m);
+      opponent_move = AlphaBetaWithMemory(depth - 1, -beta, -alpha);
+      double v = -opponent_move.value;
+      board.reverseMove(m);
+
+      if (first || v > best_move.value) {
+        best_move = (MOVE)m;
+        best_move.value = v;
+        best_opponent_move = opponent_move;
+      }
+      first = false;
+      if (v > alpha)
+        alpha = v;
+      if (alpha >= beta) {
+        cutoffs++;
+        if (m == moves)
+          firstMoveCutoffs++;
+        if (!stopSearch)
+          board.RecordHash(depth, best_move.value, board.HASH_BETA, best_move, board);
+        board.moveOrderingData(best_move, depth, true);
+        return best_move;
+      }
+    }
+
+    best_move.next = best_opponent_move; // Track the move list.
+    if (stopSearch) // The values below this node are incomplete, keep them out of the table.
+      return best_move;
+    if (best_move.value > alpha_start)
+      board.RecordHash(depth, best_move.value, board.HASH_EXACT, best_move, board);
+    else
+      board.RecordHash(depth, best_move.value, board.HASH_ALPHA, best_move, board);
+    board.moveOrderingData(best_move, depth, false);
+
+    return best_move;
+  }
+
+}
@@ -8,12 +8,44 @@ public class MinimaxAlphaBetaSearch<BOARD extends Board, MOVE extends Move> impl
   BOARD board;
   int totalNodesSearched;
   int totalLeafNodes;
+  int cutoffs, firstMoveCutoffs;
+  SearchStatistics statistics = new SearchStatistics();
+
+  SearchLimits limits;     // null while the search may not be stopped
+  int nodesBeforeIteration; // Nodes searched by the completed iterations
+  int pollCount;
+  boolean stopSearch = false;
+
+  /**
+   * Aspiration windows: half widths of the window around the previous
+   * iteration's score, widened one step on each fail low or fail high.
+   * After the last width that side of the window is opened fully. null turns
+   * aspiration windows off.
+   */
+  double []aspirationWindows = null;
+  int aspirationResearches;
+
+  /**
+   * Quiescence search at the frontier nodes, null evaluates the frontier
+   * nodes directly.
+   */
+  QuiescenceSearch<BOARD> quiescence = null;
 
   public MinimaxAlphaBetaSearch() {
     totalNodesSearched = 0;
     totalLeafNodes = 0;
   }
 
+  /**
+   * Turn on aspiration windows.
+   *
+   * @param windows half widths of the window, widest last, e.g. 0.05, 0.25, 1.0.
+   *                No arguments turns aspiration windows off.
+   */
+  public void setAspirationWindows(double... windows) {
+    aspirationWindows = (windows == null || windows.length == 0) ? null : windows.clone();
+  }
+
   /**
    * NOTE: Minimax values are targeting between -1.0..1.0 for some of the learning algorithm.
    * But the win and loss is a bit more to make sure that they stick.
@@ -22,8 +54,33 @@ public class MinimaxAlphaBetaSearch<BOARD extends Board, MOVE extends Move> impl
    * @param depth Search depth
    * @return
    */
+  /**
+   * Turn the capture quiescence search at the frontier nodes on or off.
+   */
+  public void setQuiescence(boolean on) {
+    quiescence = on ? new QuiescenceSearch<BOARD>() : null;
+  }
+
+  public SearchStatistics getStatistics() {
+    return statistics;
+  }
+
   public MOVE findBestMove(BOARD board, int depth) {
+    return findBestMove(board, new SearchLimits(depth));
+  }
+
+  /**
+   * Iterative deepening that stops when a time, node or external stop limit
+   * is reached. The first iteration is always completed, after that the move
+   * of the last completed iteration is returned.
+   *
+   * @param board Game state
+   * @param limits Search limits
+   * @return
+   */
+  public MOVE findBestMove(BOARD board, SearchLimits limits) {
     MOVE best_move = null;
+    double previousScore = 0.0;
     int runningNodeTotal = 0;
     long startTime = System.currentTimeMillis();
     long elapsedTime = 0;
@@ -32,12 +89,33 @@ public class MinimaxAlphaBetaSearch<BOARD extends Board, MOVE extends Move> impl
     int i = 1;
 
     this.board = board;
+    statistics.start();
+    this.limits = null; // The first iteration always completes
+    stopSearch = false;
+    pollCount = 0;
+    TimeManager timeManager = null;
+    if (limits.getDeadline() != SearchLimits.NO_LIMIT)
+      timeManager = new TimeManager(limits);
 
     // Including the iterative deepening for consistency.
-    while (i <= depth) {
-      totalNodesSearched = totalLeafNodes = 0;
+    while (i <= limits.getMaxDepth()) {
+      totalNodesSearched = totalLeafNodes = cutoffs = firstMoveCutoffs = 0;
+      nodesBeforeIteration = runningNodeTotal;
+      aspirationResearches = 0;
+      if (quiescence != null)
+        quiescence.resetCounters();
 
-      best_move = MinimaxAB(i, -2.0, 2.0); // Min-Max alpha beta
+      MOVE move; // Min-Max alpha beta
+      if (aspirationWindows == null || best_move == null)
+        move = MinimaxAB(i, -2.0, 2.0);
+      else
+        move = aspirationSearch(i, previousScore);
+      if (stopSearch) {
+        statistics.iterationDone(i, counters(), false, null);
+        break;
+      }
+      best_move = move;
+      previousScore = move.value;
 
       elapsedTime = System.currentTimeMillis() - startTime;
       currentPeriod = elapsedTime - previousPeriod;
@@ -47,14 +125,27 @@ public class MinimaxAlphaBetaSearch<BOARD extends Board, MOVE extends Move> impl
       previousPeriod = elapsedTime;
 
       runningNodeTotal += totalNodesSearched;
-      System.out.println("Depth: " + i + " Time: " + elapsedTime / 1000.0 + " " + currentPeriod / 1000.0 + " Nodes Searched: " +
-          totalNodesSearched + " Leaf Nodes: " + totalLeafNodes + " Rate: " + rate);
+      statistics.iterationDone(i, counters(), true, "Aspiration Re-searches: " + aspirationResearches +
+          (quiescence == null ? "" : " Stand Pat Cutoffs: " + quiescence.getStandPatCutoffs() +
+          " Delta Prunes: " + quiescence.getDeltaPrunes()) + " Rate: " + rate);
 
       // increment indexes;
       i = i + 2;
+      this.limits = limits;
+      if (limits.limitReached(runningNodeTotal))
+        break;
+      if (timeManager != null) {
+        timeManager.iterationDone(currentPeriod, totalNodesSearched, best_move);
+        if (i <= limits.getMaxDepth() && !timeManager.startNextIteration()) {
+          statistics.log("Depth: " + i + " not started, predicted time: " + timeManager.getPredicted() / 1000.0 +
+              " Growth: " + timeManager.getGrowth());
+          break;
+        }
+      }
     }
+    this.limits = null;
 
-    System.out.println("Nodes per Second = " + runningNodeTotal/(elapsedTime/1000.0));
+    statistics.searchDone();
     if (best_move == null ) {
       throw new Error ("No Move Available - Search Error!");
     }
@@ -62,6 +153,49 @@ public class MinimaxAlphaBetaSearch<BOARD extends Board, MOVE extends Move> impl
   }
 
 
+  /**
+   * @return the counts since the start of the iteration
+   */
+  SearchStatistics.Counters counters() {
+    SearchStatistics.Counters c = new SearchStatistics.Counters();
+    c.nodes = totalNodesSearched;
+    c.leafNodes = totalLeafNodes;
+    c.qsNodes = (quiescence == null) ? 0 : quiescence.getNodes();
+    c.cutoffs = cutoffs;
+    c.firstMoveCutoffs = firstMoveCutoffs;
+    return c;
+  }
+
+  /**
+   * Search the root with a window centred on the previous iteration's score.
+   * A fail low widens the lower side and a fail high the upper side using the
+   * aspirationWindows schedule, until the value falls inside the window or
+   * the window is (-2.0, 2.0).
+   *
+   * @param depth search depth
+   * @param score previous iteration's score
+   * @return best move
+   */
+  MOVE aspirationSearch(int depth, double score) {
+    if (score <= -2.0 || score >= 2.0) // A won or lost game, search the full window.
+      return MinimaxAB(depth, -2.0, 2.0);
+    int low = 0, high = 0;
+    while (true) {
+      double alpha = (low < aspirationWindows.length) ? Math.max(-2.0, score - aspirationWindows[low]) : -2.0;
+      double beta = (high < aspirationWindows.length) ? Math.min(2.0, score + aspirationWindows[high]) : 2.0;
+      MOVE move = MinimaxAB(depth, alpha, beta);
+      if (stopSearch)
+        return move;
+      if (move.value <= alpha && alpha > -2.0)
+        low++;       // Fail low
+      else if (move.value >= beta && beta < 2.0)
+        high++;      // Fail high
+      else
+        return move;
+      aspirationResearches++;
+    }
+  }
+
   /**
    * Min-max alpha beta
    *
@@ -74,11 +208,22 @@ public class MinimaxAlphaBetaSearch<BOARD extends Board, MOVE extends Move> impl
     MOVE opponent_move = null;
     MOVE best_opponent_move = null;
 
+    if (limits != null && ++pollCount >= limits.pollInterval) {
+      pollCount = 0;
+      if (limits.limitReached(nodesBeforeIteration + totalNodesSearched))
+        stopSearch = true;
+    }
+    if (stopSearch) // Out of time or cancelled, the iteration is discarded.
+      return best_move;
+
     // This is the complete implementation of negamax with Alpha-Beta
     //First check if this is a frontier node, maximum depth?
     if (depth <= 0) {
       totalLeafNodes++;
-      best_move.value = board.heuristicEvaluation();
+      if (quiescence == null)
+        best_move.value = board.heuristicEvaluation();
+      else
+        best_move.value = quiescence.search(board, alpha, beta);
       return best_move; // If so, just return the evaluation of this board.
     }
 
@@ -126,6 +271,9 @@ public class MinimaxAlphaBetaSearch<BOARD extends Board, MOVE extends Move> impl
     // Iterate through each valid move, trying each one, and calculating results
     for ( Move m = moves; m != null; m = m.next ) {
       if ( best_move.value >= beta ) {//this whole node is trash, b/c the opponent won't allow it
+        cutoffs++;
+        if (m == moves)
+          firstMoveCutoffs++;
         board.moveOrderingData(best_move, depth, true);
         return best_move;
       }
@@ -1,5 +1,9 @@
 package AbstractGames;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+
 /**
  *
  */
@@ -10,14 +14,199 @@ public class MinimaxAlphaBetaTransposition<BOARD extends TranspositionBoard, MOV
   int totalLeafNodes;
   int transpositionTableHit;
   int actualHit;
+  int ttProbes, ttCutoffs, cutoffs, firstMoveCutoffs;
+  long collisionsBefore; // Board collision count when the iteration started
+  SearchStatistics statistics = new SearchStatistics();
+
+  /**
+   * Lazy SMP: the number of threads searching the root position. The calling
+   * thread is one of them, threads-1 helpers run the same iterative deepening
+   * on their own board copies and share only the transposition table.
+   */
+  int threads = 1;
+
+  /**
+   * Set by the main search to tell a helper to unwind. A stopped search
+   * returns immediately from every node and does not write to the table.
+   */
+  volatile boolean stopSearch = false;
+
+  SearchLimits limits;      // null while the search may not be stopped
+  int nodesBeforeIteration; // Nodes searched by the completed iterations
+  int pollCount;
+
+  /**
+   * Aspiration windows: half widths of the window around the previous
+   * iteration's score, widened one step on each fail low or fail high.
+   * After the last width that side of the window is opened fully. null turns
+   * aspiration windows off.
+   */
+  double []aspirationWindows = null;
+  int aspirationResearches;
+
+  /**
+   * Quiescence search at the frontier nodes, null evaluates the frontier
+   * nodes directly.
+   */
+  QuiescenceSearch<BOARD> quiescence = null;
+
+  /**
+   * Null move pruning: at a node that is not the root, give the opponent a
+   * free move and search it NULL_MOVE_REDUCTION plies shallower with a null
+   * window at beta. If the opponent still cannot get below beta the node is
+   * cut off without searching any moves. The board decides through
+   * nullMoveAllowed() when passing is safe (zugzwang).
+   */
+  boolean nullMovePruning = false;
+  static final int NULL_MOVE_REDUCTION = 2;
+  boolean lastMoveNull = false; // Never two null moves in a row
+  int nullMoveCutoffs;
+
+  /**
+   * Late move reductions: quiet moves ordered after the first
+   * LMR_FULL_DEPTH_MOVES are searched one ply shallower with a null window
+   * at alpha, and only searched again to full depth if they beat alpha.
+   */
+  boolean lateMoveReductions = false;
+  static final int LMR_FULL_DEPTH_MOVES = 3;
+  static final double NULL_WINDOW = 1.0e-6;
+  int lmrResearches;
+
+  int rootDepth; // Depth of the current iteration, the root is never pruned
+
+  /**
+   * Clear the transposition table after each search. Pondering turns this
+   * off so the entries of a search on the opponent's time are kept.
+   */
+  boolean clearTable = true;
+
+  /**
+   * Principal variations are kept in a triangular table: pv[ply] holds the
+   * line found below the node at that ply, from pv[ply][ply] up to
+   * pvLength[ply]. A node copies its child's line behind its best move. The
+   * move lists of the boards are never relinked.
+   */
+  Move [][]pv;
+  int []pvLength;
+  int ply; // Distance of the current node from the root
+
+  /**
+   * Multi-PV: the number of root moves that get an exact score and a
+   * principal variation. The root window is raised to the k-th best score
+   * instead of the best one, so only the moves that enter the top k are
+   * searched with an open window.
+   */
+  int multiPV = 1;
+  Move []rootMoves; // Root moves, the top k of the last iteration first
+  PVLine []lines;   // Top root moves of the last completed iteration
+
+  /**
+   * A root move with its score and principal variation.
+   */
+  public static class PVLine {
+    public final double value;
+    public final Move []moves; // moves[0] is the root move
+
+    PVLine(double value, Move []moves) {
+      this.value = value;
+      this.moves = moves;
+    }
+
+    public String toString() {
+      StringBuilder s = new StringBuilder();
+      s.append(value).append(":");
+      for (Move m : moves)
+        s.append(" ").append(m);
+      return s.toString();
+    }
+  }
 
   public MinimaxAlphaBetaTransposition() {
     totalNodesSearched = 0;
     totalLeafNodes = 0;
   }
 
+  /**
+   * @param threads number of Lazy SMP threads, 1 for a single threaded search
+   */
+  public MinimaxAlphaBetaTransposition(int threads) {
+    this();
+    this.threads = Math.max(1, threads);
+  }
+
+  /**
+   * Turn on aspiration windows.
+   *
+   * @param windows half widths of the window, widest last, e.g. 0.05, 0.25, 1.0.
+   *                No arguments turns aspiration windows off.
+   */
+  public void setAspirationWindows(double... windows) {
+    aspirationWindows = (windows == null || windows.length == 0) ? null : windows.clone();
+  }
+
+  public void setNullMovePruning(boolean nullMovePruning) {
+    this.nullMovePruning = nullMovePruning;
+  }
+
+  public void setLateMoveReductions(boolean lateMoveReductions) {
+    this.lateMoveReductions = lateMoveReductions;
+  }
+
+  public void setClearTable(boolean clearTable) {
+    this.clearTable = clearTable;
+  }
+
+  /**
+   * @param multiPV number of root moves to score exactly, 1 for a normal search
+   */
+  public void setMultiPV(int multiPV) {
+    this.multiPV = Math.max(1, multiPV);
+  }
+
+  /**
+   * @return the top root moves of the last completed iteration, best first,
+   *         each with its score and principal variation
+   */
+  public PVLine[] getMultiPV() {
+    return lines;
+  }
+
+  /**
+   * @return the principal variation of the last completed iteration
+   */
+  public Move[] getPrincipalVariation() {
+    return (lines == null || lines.length == 0) ? new Move[0] : lines[0].moves;
+  }
+
+  public SearchStatistics getStatistics() {
+    return statistics;
+  }
+
+  /**
+   * Turn the capture quiescence search at the frontier nodes on or off.
+   */
+  public void setQuiescence(boolean on) {
+    quiescence = on ? new QuiescenceSearch<BOARD>(true) : null; // Draws are losses, as in MinimaxAB_TT
+  }
+
   public MOVE findBestMove(BOARD board, int depth) {
+    return findBestMove(board, new SearchLimits(depth));
+  }
+
+  /**
+   * Iterative deepening that stops when a time, node or external stop limit
+   * is reached. The first iteration is always completed, after that the move
+   * of the last completed iteration is returned. The stopped iteration does
+   * not write to the transposition table.
+   *
+   * @param board Game state
+   * @param limits Search limits
+   * @return the best move
+   */
+  public MOVE findBestMove(BOARD board, SearchLimits limits) {
+    int depth = limits.getMaxDepth();
     MOVE best_move = null;
+    double previousScore = 0.0;
     int runningNodeTotal = 0;
     long startTime = System.currentTimeMillis();
     long elapsedTime = 0;
@@ -26,12 +215,64 @@ public class MinimaxAlphaBetaTransposition<BOARD extends TranspositionBoard, MOV
     int i = 1;
 
     this.board = board;
+    this.limits = null; // The first iteration always completes
+    statistics.start();
+    allocatePV(depth);
+    lines = null;
+    rootMoves = null;
+    if (multiPV > 1) {
+      Move moves = board.generateMoves();
+      if (moves != null) {
+        int count = 0;
+        moves = board.moveOrdering(moves, depth);
+        for (Move m = moves; m != null; m = m.next)
+          count++;
+        rootMoves = new Move[count];
+        count = 0;
+        for (Move m = moves; m != null; m = m.next)
+          rootMoves[count++] = m;
+      }
+    }
+    stopSearch = false;
+    pollCount = 0;
+    TimeManager timeManager = null;
+    if (limits.getDeadline() != SearchLimits.NO_LIMIT)
+      timeManager = new TimeManager(limits);
+    Thread[] workers = new Thread[threads - 1];
+    MinimaxAlphaBetaTransposition<BOARD,MOVE>[] helpers = startHelpers(workers, depth);
 
     // Including the iterative deepening for consistency.
     while (i <= depth) {
       totalNodesSearched = totalLeafNodes = transpositionTableHit = actualHit = 0;
+      ttProbes = ttCutoffs = cutoffs = firstMoveCutoffs = 0;
+      collisionsBefore = board.getHashCollisions();
+      nodesBeforeIteration = runningNodeTotal;
+      aspirationResearches = nullMoveCutoffs = lmrResearches = 0;
+      if (quiescence != null)
+        quiescence.resetCounters();
+      rootDepth = i;
+      lastMoveNull = false;
+      ply = 0;
 
-      best_move = MinimaxAB_TT(i, -2.0, 2.0); // Min-Max alpha beta
+      MOVE move; // Min-Max alpha beta
+      PVLine []top = null;
+      if (rootMoves != null)
+        move = (MOVE)(top = multiPVSearch(i))[0].moves[0];
+      else if (aspirationWindows == null || best_move == null)
+        move = MinimaxAB_TT(i, -2.0, 2.0);
+      else
+        move = aspirationSearch(i, previousScore);
+      if (stopSearch) {
+        statistics.iterationDone(i, counters(), false, null);
+        break;
+      }
+      best_move = move;
+      previousScore = move.value;
+      if (top == null)
+        top = new PVLine[] { new PVLine(move.value, rootLine(move)) };
+      for (int k = 0; k < top.length; k++)
+        top[k] = new PVLine(top[k].value, extendFromTable(top[k].moves, i));
+      lines = top;
 
       elapsedTime = System.currentTimeMillis() - startTime;
       currentPeriod = elapsedTime - previousPeriod;
@@ -41,22 +282,131 @@ public class MinimaxAlphaBetaTransposition<BOARD extends TranspositionBoard, MOV
       previousPeriod = elapsedTime;
 
       runningNodeTotal += totalNodesSearched;
-      System.out.println("Depth: " + i + " Time: " + elapsedTime / 1000.0 + " " + currentPeriod / 1000.0 + " Nodes Searched: " +
-          totalNodesSearched + " Leaf Nodes: " + totalLeafNodes + " Transposition Table Hits: " + transpositionTableHit + " actualHit: " + actualHit + " Rate: " + rate);
+      statistics.iterationDone(i, counters(), true, "Exact Hits: " + actualHit + " Aspiration Re-searches: " + aspirationResearches +
+          " Null Move Cutoffs: " + nullMoveCutoffs + " LMR Re-searches: " + lmrResearches +
+          (quiescence == null ? "" : " Stand Pat Cutoffs: " + quiescence.getStandPatCutoffs() +
+          " Delta Prunes: " + quiescence.getDeltaPrunes()) + " Rate: " + rate);
 
       // increment indexes;
       i = i + 2;
+      this.limits = limits;
+      if (limits.limitReached(runningNodeTotal))
+        break;
+      if (timeManager != null) {
+        timeManager.iterationDone(currentPeriod, totalNodesSearched, best_move);
+        if (i <= depth && !timeManager.startNextIteration()) {
+          statistics.log("Depth: " + i + " not started, predicted time: " + timeManager.getPredicted() / 1000.0 +
+              " Growth: " + timeManager.getGrowth());
+          break;
+        }
+      }
     }
+    this.limits = null;
 
-    board.clearTranspositionTable();
+    stopHelpers(workers, helpers);
 
-    System.out.println("Nodes per Second = " + runningNodeTotal/(elapsedTime/1000.0));
+    if (clearTable)
+      board.clearTranspositionTable();
+
+    statistics.searchDone();
     if (best_move == null ) {
       throw new Error ("No Move Available - Search Error!");
     }
+    best_move.next = null;
     return best_move;
   }
 
+  /**
+   * Start the Lazy SMP helpers. Each helper is a separate search object, so it
+   * has its own board copy and its own node counters. Odd numbered helpers
+   * start one iteration ahead of the main search (depths go up by 2) so that
+   * the threads do not all work on the same depth and fill the table with
+   * entries the main search can use.
+   *
+   * @param workers array filled with the started helper threads
+   * @param depth maximum search depth
+   * @return the helper searches
+   */
+  @SuppressWarnings("unchecked")
+  private MinimaxAlphaBetaTransposition<BOARD,MOVE>[] startHelpers(Thread[] workers, final int depth) {
+    MinimaxAlphaBetaTransposition<BOARD,MOVE>[] helpers = (MinimaxAlphaBetaTransposition<BOARD,MOVE>[])new MinimaxAlphaBetaTransposition<?,?>[workers.length];
+    for (int t = 0; t < workers.length; t++) {
+      final MinimaxAlphaBetaTransposition<BOARD,MOVE> helper = new MinimaxAlphaBetaTransposition<BOARD,MOVE>();
+      final int startDepth = (t % 2 == 0) ? 3 : 1;
+      helper.board = (BOARD)board.copy();
+      helper.allocatePV(depth);
+      helper.nullMovePruning = nullMovePruning;
+      helper.lateMoveReductions = lateMoveReductions;
+      if (quiescence != null) {
+        helper.quiescence = new QuiescenceSearch<BOARD>(true);
+        helper.quiescence.setDelta(quiescence.delta);
+      }
+      helpers[t] = helper;
+      workers[t] = new Thread(new Runnable() {
+        public void run() {
+          for (int d = startDepth; d <= depth && !helper.stopSearch; d += 2) {
+            helper.rootDepth = d;
+            helper.MinimaxAB_TT(d, -2.0, 2.0);
+          }
+        }
+      }, "LazySMP-" + (t + 1));
+      workers[t].setDaemon(true);
+      workers[t].start();
+    }
+    return helpers;
+  }
+
+  /**
+   * Stop the Lazy SMP helpers, wait for them to unwind and add their counts
+   * to the statistics.
+   */
+  private void stopHelpers(Thread[] workers, MinimaxAlphaBetaTransposition<BOARD,MOVE>[] helpers) {
+    int helperNodes = 0;
+    for (int t = 0; t < workers.length; t++)
+      helpers[t].stopSearch = true;
+    for (int t = 0; t < workers.length; t++) {
+      try {
+        workers[t].join();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      helperNodes += helpers[t].totalNodesSearched;
+      statistics.add(helpers[t].counters());
+    }
+    if (workers.length > 0)
+      statistics.log("Lazy SMP Threads: " + threads + " Helper Nodes Searched: " + helperNodes);
+  }
+
+  /**
+   * Search the root with a window centred on the previous iteration's score.
+   * A fail low widens the lower side and a fail high the upper side using the
+   * aspirationWindows schedule, until the value falls inside the window or
+   * the window is (-2.0, 2.0).
+   *
+   * @param depth search depth
+   * @param score previous iteration's score
+   * @return best move
+   */
+  MOVE aspirationSearch(int depth, double score) {
+    if (score <= -2.0 || score >= 2.0) // A won or lost game, search the full window.
+      return MinimaxAB_TT(depth, -2.0, 2.0);
+    int low = 0, high = 0;
+    while (true) {
+      double alpha = (low < aspirationWindows.length) ? Math.max(-2.0, score - aspirationWindows[low]) : -2.0;
+      double beta = (high < aspirationWindows.length) ? Math.min(2.0, score + aspirationWindows[high]) : 2.0;
+      MOVE move = MinimaxAB_TT(depth, alpha, beta);
+      if (stopSearch)
+        return move;
+      if (move.value <= alpha && alpha > -2.0)
+        low++;       // Fail low
+      else if (move.value >= beta && beta < 2.0)
+        high++;      // Fail high
+      else
+        return move;
+      aspirationResearches++;
+    }
+  }
+
   /**
    * Min-max alpha beta with transposition table.
    *
@@ -65,12 +415,22 @@ public class MinimaxAlphaBetaTransposition<BOARD extends TranspositionBoard, MOV
    */
   MOVE MinimaxAB_TT(int depth, double alpha, double beta) {
     totalNodesSearched++;
+    pvLength[ply] = ply;
     MOVE best_move = (MOVE)board.newMove();
     MOVE opponent_move = null;
-    MOVE best_opponent_move = null;
     MOVE TransMove = null;
     boolean valid = false;
     boolean eval_is_exact = false;
+    boolean afterNullMove = lastMoveNull;
+    lastMoveNull = false;
+
+    if (limits != null && ++pollCount >= limits.pollInterval) {
+      pollCount = 0;
+      if (limits.limitReached(nodesBeforeIteration + totalNodesSearched))
+        stopSearch = true;
+    }
+    if (stopSearch) // A Lazy SMP helper that is no longer needed, or out of time, unwind.
+      return best_move;
 
     // This is the complete implementation of negamax with Alpha-Beta
     // and the transposition table optimization
@@ -78,26 +438,40 @@ public class MinimaxAlphaBetaTransposition<BOARD extends TranspositionBoard, MOV
     // Check if this is a frontier node, maximum depth?
     if (depth < 1) {
       totalLeafNodes++;
-      best_move.value = board.heuristicEvaluation();
-      board.RecordHash(depth, best_move.value, board.HASH_EXACT, null, board);
+      if (quiescence == null) {
+        best_move.value = board.heuristicEvaluation();
+        board.RecordHash(depth, best_move.value, board.HASH_EXACT, null, board);
+      } else {
+        // The quiescence value is only exact inside the window.
+        best_move.value = quiescence.search(board, alpha, beta);
+        if (best_move.value >= beta)
+          board.RecordHash(depth, best_move.value, board.HASH_BETA, null, board);
+        else if (best_move.value <= alpha)
+          board.RecordHash(depth, best_move.value, board.HASH_ALPHA, null, board);
+        else
+          board.RecordHash(depth, best_move.value, board.HASH_EXACT, null, board);
+      }
       return best_move; // If so, just return the evaluation of this board.
     }
 
     TransMove = (MOVE)board.ProbeMove();
+    ttProbes++;
     int flag = board.ProbeHash(depth, alpha, beta);
-    if ( flag != -5 &&  board.moveIsValid(TransMove)) {
+    if ( flag != -5 && TransMove != null && board.moveIsValid(TransMove)) {
       TransMove.value = board.ProbeValue(depth);
       valid = true;
       transpositionTableHit++;
       if (flag == board.HASH_EXACT) { // hashExact
         actualHit++;
+        ttCutoffs++;
         return TransMove; // return this move
       }
-      if (flag == board.HASH_ALPHA && TransMove.value > alpha) // hashAlpha
-        alpha = TransMove.value;
-      if (flag == board.HASH_BETA && beta > TransMove.value) // hashBeta
-        beta = TransMove.value;
-      if (alpha >= beta) { // alpha and beta have crossed return this move
+      // HASH_BETA entries are stored on a cutoff and are lower bounds,
+      // HASH_ALPHA entries are stored when no move raised alpha and are upper
+      // bounds. A bound outside the window is enough to return.
+      if ((flag == board.HASH_BETA && TransMove.value >= beta) || // hashBeta
+          (flag == board.HASH_ALPHA && TransMove.value <= alpha)) { // hashAlpha
+        ttCutoffs++;
         return TransMove;
       }
     }
@@ -124,23 +498,49 @@ public class MinimaxAlphaBetaTransposition<BOARD extends TranspositionBoard, MOV
       }
     }
 
+    // Null move. Skipped at the root, right after another null move, when a
+    // won or lost score is being proved and when the board says passing is
+    // unsafe (few pieces left, zugzwang becomes likely).
+    if (nullMovePruning && depth >= NULL_MOVE_REDUCTION + 1 && depth < rootDepth && !afterNullMove &&
+        beta < 1.0 && board.nullMoveAllowed()) {
+      board.makeNullMove();
+      lastMoveNull = true;
+      ply++;
+      Move opponent = MinimaxAB_TT(depth - 1 - NULL_MOVE_REDUCTION, -beta, -beta + NULL_WINDOW);
+      ply--;
+      lastMoveNull = false;
+      board.reverseNullMove();
+      double v = -opponent.value;
+      if (v >= beta && !stopSearch) {
+        nullMoveCutoffs++;
+        // A win found after passing is not a real win, keep the score at beta.
+        best_move.value = beta;
+        return best_move;
+      }
+    }
+
     Move moves = board.generateMoves();  // Get all valid moves for this board
     if (moves == null) { // Do we have any moves that we can make? If not assume that we have to withdraw and lose.
       best_move.value = -(1.0+depth/1.0);
       return best_move;
     }
     moves = board.moveOrdering(moves, depth);
+    int searched = 1; // The first move below is always searched to full depth
 
     // If we got a valid transposition table move that wasn't an exact hash,
     // search it's move first.
     if (valid) { // apply the transposition move first
       board.makeMove( TransMove );
-      best_opponent_move = opponent_move = MinimaxAB_TT(depth - 1, -beta, -alpha); // search deeper
+      ply++;
+      opponent_move = MinimaxAB_TT(depth - 1, -beta, -alpha); // search deeper
+      ply--;
       TransMove.value = -opponent_move.value; // update the score and if > beta return
       best_move = TransMove;
       best_move.value = alpha;
       if ( opponent_move != null )
         best_move.value = - opponent_move.value;
+      if (best_move.value > alpha)
+        updatePV(best_move);
       board.reverseMove(TransMove);
     }
     // Otherwise search the first generated move so that there is something in
@@ -148,11 +548,15 @@ public class MinimaxAlphaBetaTransposition<BOARD extends TranspositionBoard, MOV
     // transposition table move.
     if (!valid ) {
       board.makeMove(moves);
-      best_opponent_move = opponent_move = MinimaxAB_TT(depth - 1, -beta, -alpha);
+      ply++;
+      opponent_move = MinimaxAB_TT(depth - 1, -beta, -alpha);
+      ply--;
       best_move = (MOVE)moves; // This gives a best move in case one is not found in time later.
       best_move.value = alpha;
       if (opponent_move != null )
         best_move.value = -opponent_move.value;
+      if (best_move.value > alpha)
+        updatePV(best_move);
       board.reverseMove(moves);
       moves = moves.next;
     }
@@ -163,33 +567,205 @@ public class MinimaxAlphaBetaTransposition<BOARD extends TranspositionBoard, MOV
       if ( m.equals(TransMove) )
         continue;
       if ( best_move.value >= beta ) {//this whole node is trash, b/c the opponent won't allow it
-        board.RecordHash(depth, best_move.value, board.HASH_BETA, best_move, board);
+        cutoffs++;
+        if (searched == 1)
+          firstMoveCutoffs++;
+        if (!stopSearch)
+          board.RecordHash(depth, best_move.value, board.HASH_BETA, best_move, board);
         board.moveOrderingData(best_move, depth, true);
         return best_move;
       }
-      board.makeMove(m);
       if ( alpha < best_move.value )
         alpha = best_move.value;
-      Move opponent = MinimaxAB_TT(depth - 1, -beta, -alpha);
-      double v = -opponent.value;
+      boolean reduce = lateMoveReductions && searched >= LMR_FULL_DEPTH_MOVES && depth >= 3 &&
+          depth < rootDepth && board.isQuietMove(m);
+      searched++;
+      board.makeMove(m);
+      ply++;
+      Move opponent;
+      double v;
+      if (reduce) {
+        opponent = MinimaxAB_TT(depth - 2, -alpha - NULL_WINDOW, -alpha);
+        v = -opponent.value;
+        if (v > alpha && !stopSearch) { // The reduced search failed high, it has to be verified.
+          lmrResearches++;
+          opponent = MinimaxAB_TT(depth - 1, -beta, -alpha);
+          v = -opponent.value;
+        }
+      } else {
+        opponent = MinimaxAB_TT(depth - 1, -beta, -alpha);
+        v = -opponent.value;
+      }
+      ply--;
       if (v > alpha) {
         alpha = v;
         best_move = (MOVE)m;
         best_move.value = v;
-        best_opponent_move = opponent_move;
         eval_is_exact = true;
+        updatePV(m);
       }
       board.reverseMove(m); //Undo the move we just tried.
     }
 
-    best_move.next = best_opponent_move; // Need to track the move list for the KillerMove ordering.
-    if (eval_is_exact)
+    if (stopSearch) // The values below this node are incomplete, keep them out of the table.
+      return best_move;
+    // When every move failed low only "at most alpha" is known. The value of
+    // the first move can be far lower than that, and passing it up would give
+    // the parent (and its table entry) a lower bound that is too high.
+    if (best_move.value < alpha)
+      best_move.value = alpha;
+    if (best_move.value >= beta) { // The last move failed high, this is a lower bound.
+      cutoffs++;
+      if (searched == 1)
+        firstMoveCutoffs++;
+      board.RecordHash(depth, best_move.value, board.HASH_BETA, best_move, board);
+    }
+    else if (eval_is_exact)
       board.RecordHash(depth, alpha, board.HASH_EXACT, best_move, board);
-    else
+    else // Every move failed low, the value is at most alpha.
       board.RecordHash(depth, best_move.value, board.HASH_ALPHA, best_move, board);
     board.moveOrderingData(best_move, depth, false);
 
     return best_move;
   }
 
+  /**
+   * @return the counts since the start of the iteration (of the helper's search)
+   */
+  SearchStatistics.Counters counters() {
+    SearchStatistics.Counters c = new SearchStatistics.Counters();
+    c.nodes = totalNodesSearched;
+    c.leafNodes = totalLeafNodes;
+    c.qsNodes = (quiescence == null) ? 0 : quiescence.getNodes();
+    c.ttProbes = ttProbes;
+    c.ttHits = transpositionTableHit;
+    c.ttCutoffs = ttCutoffs;
+    c.ttCollisions = board.getHashCollisions() - collisionsBefore;
+    c.cutoffs = cutoffs;
+    c.firstMoveCutoffs = firstMoveCutoffs;
+    return c;
+  }
+
+  void allocatePV(int depth) {
+    pv = new Move[depth + 2][depth + 2];
+    pvLength = new int[depth + 2];
+  }
+
+  /**
+   * Put m in front of the line of the child searched last.
+   */
+  void updatePV(Move m) {
+    pv[ply][ply] = m;
+    int length = pvLength[ply + 1];
+    System.arraycopy(pv[ply + 1], ply + 1, pv[ply], ply + 1, length - ply - 1);
+    pvLength[ply] = length;
+  }
+
+  /**
+   * @return the root line of the last search, or just move when the root
+   *         did not record one (a table cutoff)
+   */
+  Move[] rootLine(Move move) {
+    if (pvLength[0] == 0 || pv[0][0] != move)
+      return new Move[] { move };
+    return Arrays.copyOf(pv[0], pvLength[0]);
+  }
+
+  /**
+   * Table cutoffs end a line early. Continue it with the table moves, up to
+   * depth moves in total, stopping at the end of the game or a repeated
+   * position. The board is left unchanged.
+   */
+  Move[] extendFromTable(Move []line, int depth) {
+    if (line.length >= depth)
+      return line;
+    ArrayList<Move> moves = new ArrayList<Move>(Arrays.asList(line));
+    HashSet<Long> seen = new HashSet<Long>();
+    for (Move m : line) {
+      seen.add(board.getHashKey());
+      board.makeMove(m);
+    }
+    while (moves.size() < depth && board.endGame() == Board.GAME_CONTINUE && seen.add(board.getHashKey())) {
+      Move m = board.ProbeMove();
+      if (m == null || !board.moveIsValid(m))
+        break;
+      board.makeMove(m);
+      moves.add(m);
+    }
+    for (int k = moves.size() - 1; k >= 0; k--)
+      board.reverseMove(moves.get(k));
+    return moves.toArray(new Move[moves.size()]);
+  }
+
+  /**
+   * Multi-PV root search. Every root move is searched with the window
+   * (k-th best score so far, 2.0): a move that fails low cannot enter the top
+   * k, a move that gets above the bound has an exact score and replaces the
+   * k-th line. Until k moves have been searched the window is open.
+   * The root moves are reordered so that the next iteration searches the
+   * top k first.
+   *
+   * @param depth search depth
+   * @return the top k lines, best first
+   */
+  PVLine[] multiPVSearch(int depth) {
+    int k = Math.min(multiPV, rootMoves.length);
+    PVLine []top = new PVLine[k];
+    int found = 0;
+    pvLength[0] = 0;
+    for (Move m : rootMoves) {
+      double alpha = (found < k) ? -2.0 : top[k - 1].value;
+      if (alpha >= 2.0) // The top k moves all win.
+        break;
+      totalNodesSearched++;
+      board.makeMove(m);
+      ply++;
+      Move opponent = MinimaxAB_TT(depth - 1, -2.0, -alpha);
+      ply--;
+      board.reverseMove(m);
+      if (stopSearch)
+        break;
+      double v = -opponent.value;
+      if (found < k || v > alpha) {
+        int i = Math.min(found, k - 1);
+        for (; i > 0 && top[i - 1].value < v; i--)
+          top[i] = top[i - 1];
+        Move []line = new Move[pvLength[1]];
+        line[0] = m;
+        System.arraycopy(pv[1], 1, line, 1, pvLength[1] - 1);
+        top[i] = new PVLine(v, line);
+        if (found < k)
+          found++;
+      }
+    }
+    if (found == 0) // Stopped in the first move, the caller discards the result.
+      return new PVLine[] { new PVLine(-2.0, new Move[] { rootMoves[0] }) };
+    top = Arrays.copyOf(top, found);
+
+    // The top moves first, in order, then the others in their old order.
+    Move []order = new Move[rootMoves.length];
+    int n = 0;
+    for (PVLine line : top)
+      order[n++] = line.moves[0];
+    for (Move m : rootMoves) {
+      boolean inTop = false;
+      for (PVLine line : top)
+        inTop |= (line.moves[0] == m);
+      if (!inTop)
+        order[n++] = m;
+    }
+    rootMoves = order;
+
+    Move best = top[0].moves[0];
+    best.value = top[0].value;
+    if (!stopSearch) {
+      board.RecordHash(depth, best.value, board.HASH_EXACT, best, board);
+      board.moveOrderingData(best, depth, false);
+    }
+    pv[0][0] = best;
+    System.arraycopy(top[0].moves, 1, pv[0], 1, top[0].moves.length - 1);
+    pvLength[0] = top[0].moves.length;
+    return top;
+  }
+
 }
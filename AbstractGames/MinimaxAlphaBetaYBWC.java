@@ -0,0 +1,407 @@
+package AbstractGames;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Young Brothers Wait (YBWC) parallel version of MinimaxAlphaBetaSearch.
+ *
+ * The search returns the move, value and node counts of
+ * MinimaxAlphaBetaSearch, whatever the number of threads.
+ *
+ * At each node the first (eldest) move is searched serially. Once it has
+ * returned, the remaining siblings are forked as RecursiveTasks when the
+ * remaining depth is at least splitDepth, with the window that was known
+ * after the eldest move.
+ *
+ * A forked sibling is searched by a helper search object of the worker
+ * thread that runs it. Each helper has a board copied once from the root
+ * position, and a task plays the moves from the root to its split point and
+ * its sibling move on it, and takes them back when it is done. A thread only
+ * needs another helper while its first one is in use by a task it is joining.
+ *
+ * The sibling results are joined in move order. A result is kept when the
+ * sibling was searched with the window the serial search would have used,
+ * which holds until a sibling raises alpha. Then the younger siblings are
+ * aborted and forked again with the new window, or, when the raised alpha
+ * fails high, dropped because the serial search would never have searched
+ * them. The nodes of the dropped searches are reported as speculative nodes
+ * and are not in the node counts.
+ *
+ * This needs the order of the moves to depend only on the position. When
+ * Board.usesMoveOrderingData() is true (killer and history moves) every
+ * sibling's search is ordered by what the siblings before it learned, so
+ * the siblings cannot be searched at the same time, and the search does not
+ * split at all.
+ *
+ * The board must implement Board.copy().
+ */
+public class MinimaxAlphaBetaYBWC<BOARD extends Board, MOVE extends Move> implements Search<BOARD,MOVE> {
+
+  BOARD board;
+  int totalNodesSearched;
+  int totalLeafNodes;
+  int cutoffs, firstMoveCutoffs;
+  int speculativeNodes; // Nodes of sibling searches whose results were dropped
+  SearchStatistics statistics = new SearchStatistics();
+
+  int threads;
+  int splitDepth = 3;   // Minimum remaining depth at which siblings are forked
+  ForkJoinPool pool;
+  boolean splitting;    // False when the move ordering depends on the siblings searched before
+  SplitPoint split;     // Split point this search object is working under (null at the root)
+
+  MinimaxAlphaBetaYBWC<BOARD,MOVE> owner;  // The search that findBestMove was called on
+  BOARD rootPosition;   // Copy of the root position, only read by the helpers
+  ThreadLocal<ArrayDeque<MinimaxAlphaBetaYBWC<BOARD,MOVE>>> helpers; // Idle helpers of each thread
+  List<Move> line = new ArrayList<Move>(); // Moves made on board since the root position
+
+  /**
+   * Shared between the sibling tasks of one node. Setting aborted stops the
+   * siblings, and everything forked below them, at their next node.
+   */
+  static class SplitPoint {
+    final SplitPoint parent;
+    volatile boolean aborted = false;
+
+    SplitPoint(SplitPoint parent) {
+      this.parent = parent;
+    }
+
+    boolean isAborted() {
+      for (SplitPoint s = this; s != null; s = s.parent)
+        if (s.aborted)
+          return true;
+      return false;
+    }
+  }
+
+  /**
+   * Searches one sibling move on a helper board. The moves were generated on
+   * the parent's board, so the matching moves are regenerated on the helper
+   * board before they are made.
+   */
+  class SiblingTask extends RecursiveTask<MOVE> {
+    private static final long serialVersionUID = 1L;
+
+    final MinimaxAlphaBetaYBWC<BOARD,MOVE> parent;
+    final Move []path;  // Moves from the root to the split point
+    final Move move;    // null for the root task, which runs on the parent itself
+    final SplitPoint split;
+    final int depth;
+    final double alpha, beta;
+    int nodes, leafNodes, cutoffs, firstMoveCutoffs, speculativeNodes; // Counts of the helper for this task
+
+    SiblingTask(MinimaxAlphaBetaYBWC<BOARD,MOVE> parent, Move []path, Move move, SplitPoint split,
+                int depth, double alpha, double beta) {
+      this.parent = parent;
+      this.path = path;
+      this.move = move;
+      this.split = split;
+      this.depth = depth;
+      this.alpha = alpha;
+      this.beta = beta;
+    }
+
+    protected MOVE compute() {
+      if (move == null)
+        return parent.MinimaxYBWC(depth, alpha, beta);
+      MinimaxAlphaBetaYBWC<BOARD,MOVE> search = parent.owner.borrowHelper();
+      int n = search.totalNodesSearched, l = search.totalLeafNodes;
+      int c = search.cutoffs, f = search.firstMoveCutoffs, sn = search.speculativeNodes;
+      search.split = split;
+      try {
+        for (Move m : path)
+          search.play(m);
+        search.play(move);
+        return search.MinimaxYBWC(depth - 1, -beta, -alpha);
+      } finally {
+        while (!search.line.isEmpty())
+          search.board.reverseMove(search.line.remove(search.line.size() - 1));
+        nodes = search.totalNodesSearched - n;
+        leafNodes = search.totalLeafNodes - l;
+        cutoffs = search.cutoffs - c;
+        firstMoveCutoffs = search.firstMoveCutoffs - f;
+        speculativeNodes = search.speculativeNodes - sn;
+        parent.owner.returnHelper(search);
+      }
+    }
+  }
+
+  /**
+   * Make the move of this board that equals m, a move generated on another
+   * board.
+   */
+  void play(Move m) {
+    Move local = board.generateMoves();
+    while (local != null && !local.equals(m))
+      local = local.next;
+    if (local == null)
+      throw new Error("Sibling move " + m + " not found on board copy - Search Error!");
+    board.makeMove(local);
+    line.add(local);
+  }
+
+  /**
+   * @return an idle helper of the current thread, created on first use
+   */
+  MinimaxAlphaBetaYBWC<BOARD,MOVE> borrowHelper() {
+    MinimaxAlphaBetaYBWC<BOARD,MOVE> helper = helpers.get().poll();
+    if (helper == null) {
+      helper = new MinimaxAlphaBetaYBWC<BOARD,MOVE>(threads, splitDepth);
+      synchronized (rootPosition) {
+        helper.board = (BOARD)rootPosition.copy();
+      }
+      helper.pool = pool;
+      helper.owner = this;
+    }
+    return helper;
+  }
+
+  void returnHelper(MinimaxAlphaBetaYBWC<BOARD,MOVE> helper) {
+    helper.split = null;
+    helpers.get().push(helper);
+  }
+
+  public MinimaxAlphaBetaYBWC() {
+    this(Runtime.getRuntime().availableProcessors());
+  }
+
+  public MinimaxAlphaBetaYBWC(int threads) {
+    totalNodesSearched = 0;
+    totalLeafNodes = 0;
+    this.threads = Math.max(1, threads);
+  }
+
+  public MinimaxAlphaBetaYBWC(int threads, int splitDepth) {
+    this(threads);
+    this.splitDepth = Math.max(1, splitDepth);
+  }
+
+  public SearchStatistics getStatistics() {
+    return statistics;
+  }
+
+  /**
+   * NOTE: Minimax values are targeting between -1.0..1.0 for some of the learning algorithm.
+   * But the win and loss is a bit more to make sure that they stick.
+   *
+   * @param board Game state
+   * @param depth Search depth
+   * @return
+   */
+  public MOVE findBestMove(BOARD board, int depth) {
+    MOVE best_move = null;
+    long startTime = System.currentTimeMillis();
+    long elapsedTime = 0;
+    long currentPeriod;
+    long previousPeriod = 0;
+    int i = 1;
+
+    this.board = board;
+    statistics.start();
+    split = null;
+    owner = this;
+    line.clear();
+    splitting = !board.usesMoveOrderingData();
+    rootPosition = (BOARD)board.copy();
+    helpers = ThreadLocal.withInitial(ArrayDeque::new);
+    pool = new ForkJoinPool(threads);
+
+    try {
+      // Including the iterative deepening for consistency.
+      while (i <= depth) {
+        totalNodesSearched = totalLeafNodes = cutoffs = firstMoveCutoffs = speculativeNodes = 0;
+
+        best_move = pool.invoke(new SiblingTask(this, null, null, null, i, -2.0, 2.0)); // Min-Max alpha beta
+
+        elapsedTime = System.currentTimeMillis() - startTime;
+        currentPeriod = elapsedTime - previousPeriod;
+        double rate = 0.0;
+        if (i > 3 && previousPeriod > 50)
+          rate = (currentPeriod - previousPeriod) / previousPeriod;
+        previousPeriod = elapsedTime;
+
+        SearchStatistics.Counters c = new SearchStatistics.Counters();
+        c.nodes = totalNodesSearched;
+        c.leafNodes = totalLeafNodes;
+        c.cutoffs = cutoffs;
+        c.firstMoveCutoffs = firstMoveCutoffs;
+        statistics.iterationDone(i, c, true, "Speculative Nodes: " + speculativeNodes + " Rate: " + rate);
+
+        // increment indexes;
+        i = i + 2;
+      }
+    } finally {
+      pool.shutdown();
+      pool = null;
+      helpers = null;
+      rootPosition = null;
+    }
+
+    statistics.log("YBWC Threads: " + threads + " Split Depth: " + splitDepth +
+        (splitting ? "" : " Not split, the move ordering uses the searched moves"));
+    statistics.searchDone();
+    if (best_move == null ) {
+      throw new Error ("No Move Available - Search Error!");
+    }
+    return best_move;
+  }
+
+  /**
+   * Min-max alpha beta with Young Brothers Wait splitting. Apart from the
+   * sibling loop this is MinimaxAlphaBetaSearch.MinimaxAB.
+   *
+   * @param depth int the depth of the search to conduct
+   * @return maximum heuristic board found value
+   */
+  MOVE MinimaxYBWC(int depth, double alpha, double beta) {
+    totalNodesSearched++;
+    MOVE best_move = (MOVE)board.newMove();
+    MOVE opponent_move = null;
+    MOVE best_opponent_move = null;
+
+    // The result of an aborted sibling is never used.
+    if (split != null && split.isAborted())
+      return best_move;
+
+    //First check if this is a frontier node, maximum depth?
+    if (depth <= 0) {
+      totalLeafNodes++;
+      best_move.value = board.heuristicEvaluation();
+      return best_move; // If so, just return the evaluation of this board.
+    }
+
+    // Is this the end of the game?
+    int game_state = board.endGame();
+    if (game_state != Board.GAME_CONTINUE) {
+      if (game_state == board.getCurrentPlayer()) { // Did this player win?
+        best_move.value = 1.0+depth/1.0;
+        return best_move;
+      }
+      int []player = board.getPlayerList(); // Did an opponent win?
+      for (int i = 0; i < player.length; i++) {
+        if (game_state == player[i]) {
+          best_move.value = -(1.0+depth/1.0);
+          return best_move;
+        }
+      }
+      if (game_state == Board.GAME_DRAW) { // Game is a draw
+        best_move.value = 0.0;
+        return best_move;
+      }
+    }
+
+    // Get all valid moves for this board
+    MOVE moves = (MOVE)board.generateMoves();
+    if (moves == null) { // Do we have any moves that we can make? If not assume that we have to withdraw and lose.
+      best_move.value = -(1.0+depth/1.0);
+      return best_move;
+    }
+
+    moves = (MOVE)board.moveOrdering(moves, depth);
+
+    // The eldest brother is always searched serially.
+    board.makeMove(moves);
+    line.add(moves);
+    best_opponent_move = opponent_move = MinimaxYBWC(depth - 1, -beta, -alpha);
+    best_move = moves;
+    best_move.value = alpha;
+    if (opponent_move != null )
+      best_move.value = -opponent_move.value;
+    line.remove(line.size() - 1);
+    board.reverseMove(moves);
+    moves = (MOVE)moves.next;
+
+    if (moves == null || depth < splitDepth || best_move.value >= beta || !owner.splitting) {
+      // Not a split point, this is the serial loop from MinimaxAB.
+      for ( Move m = moves; m != null; m = m.next ) {
+        if ( best_move.value >= beta ) {
+          cutoffs++;
+          if (m == moves)
+            firstMoveCutoffs++;
+          board.moveOrderingData(best_move, depth, true);
+          return best_move;
+        }
+        if (split != null && split.isAborted())
+          return best_move;
+        board.makeMove(m);
+        line.add(m);
+        if ( alpha < best_move.value )
+          alpha = best_move.value;
+        opponent_move = MinimaxYBWC(depth - 1, -beta, -alpha);
+        double v = -opponent_move.value;
+        if (v > alpha) {
+          alpha = v;
+          best_move = (MOVE)m;
+          best_move.value = v;
+          best_opponent_move = opponent_move;
+        }
+        line.remove(line.size() - 1);
+        board.reverseMove(m);
+      }
+    } else {
+      // Young brothers: fork every remaining sibling with the current window,
+      // and fork the ones after a sibling that raised alpha again.
+      if ( alpha < best_move.value )
+        alpha = best_move.value;
+      Move []path = line.toArray(new Move[0]);
+      boolean pruned = false;
+      while (moves != null && !pruned) {
+        SplitPoint sp = new SplitPoint(split);
+        List<SiblingTask> task = new ArrayList<SiblingTask>();
+        for ( Move m = moves; m != null; m = m.next )
+          task.add(new SiblingTask(this, path, m, sp, depth, alpha, beta));
+        int count = task.size();
+        for (int k = count - 1; k >= 0; k--) // Pushed in reverse so the eldest is popped first
+          task.get(k).fork();
+
+        // Keep the results in move order while they had the serial window.
+        for (int k = 0; k < count; k++) {
+          SiblingTask t = task.get(k);
+          opponent_move = t.join();
+          if (sp.aborted || (split != null && split.isAborted())) {
+            speculativeNodes += t.nodes + t.speculativeNodes;
+            continue;
+          }
+          totalNodesSearched += t.nodes;
+          totalLeafNodes += t.leafNodes;
+          cutoffs += t.cutoffs;
+          firstMoveCutoffs += t.firstMoveCutoffs;
+          speculativeNodes += t.speculativeNodes;
+          moves = (MOVE)t.move.next;
+          double v = -opponent_move.value;
+          if (v > alpha) {
+            alpha = v;
+            best_move = (MOVE)t.move;
+            best_move.value = v;
+            best_opponent_move = opponent_move;
+            if (moves != null) {
+              // The younger brothers were searched with the old alpha, or
+              // would never have been searched after a fail high.
+              sp.aborted = true;
+              pruned = best_move.value >= beta;
+            }
+          }
+        }
+        if (split != null && split.isAborted())
+          return best_move;
+      }
+      if (pruned) {
+        cutoffs++;
+        board.moveOrderingData(best_move, depth, true);
+        return best_move;
+      }
+    }
+
+    best_move.next = best_opponent_move; // Track the move list.
+
+    board.moveOrderingData(best_move, depth, false);
+
+    return best_move;
+  }
+
+}
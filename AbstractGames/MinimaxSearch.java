@@ -7,6 +7,7 @@ public class MinimaxSearch<BOARD extends Board, MOVE extends Move> implements Se
   BOARD board;
   int totalNodesSearched;
   int totalLeafNodes;
+  SearchStatistics statistics = new SearchStatistics();
   static final double INF = 1000.0;
 
   public MinimaxSearch() {
@@ -14,9 +15,12 @@ public class MinimaxSearch<BOARD extends Board, MOVE extends Move> implements Se
     totalLeafNodes = 0;
   }
 
+  public SearchStatistics getStatistics() {
+    return statistics;
+  }
+
   public MOVE findBestMove(BOARD board, int depth) {
     MOVE best_move = null;
-    int runningNodeTotal = 0;
     long startTime = System.currentTimeMillis();
     long elapsedTime = 0;
     long currentPeriod;
@@ -24,6 +28,7 @@ public class MinimaxSearch<BOARD extends Board, MOVE extends Move> implements Se
     int i = 1;
 
     this.board = board;
+    statistics.start();
 
     // Including the iterative deepening for consistency.
     while ( i <= depth ) {
@@ -38,15 +43,16 @@ public class MinimaxSearch<BOARD extends Board, MOVE extends Move> implements Se
         rate = (currentPeriod - previousPeriod)/previousPeriod;
       previousPeriod = elapsedTime;
 
-      runningNodeTotal += totalNodesSearched;
-      System.out.println("Depth: " + i +" Time: " + elapsedTime/1000.0 + " " + currentPeriod/1000.0 + " Nodes Searched: " +
-          totalNodesSearched + " Leaf Nodes: " + totalLeafNodes + " Rate: " + rate);
+      SearchStatistics.Counters c = new SearchStatistics.Counters();
+      c.nodes = totalNodesSearched;
+      c.leafNodes = totalLeafNodes;
+      statistics.iterationDone(i, c, true, "Rate: " + rate);
 
       // increment indexes;
       i =  i+2;
     }
 
-    System.out.println("Nodes per Second = " + runningNodeTotal/(elapsedTime/1000.0));
+    statistics.searchDone();
     if (best_move == null ) {
       throw new Error ("No Move Available - Search Error!");
     }
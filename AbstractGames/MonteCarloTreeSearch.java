@@ -0,0 +1,493 @@
+package AbstractGames;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * UCT Monte Carlo Tree Search for any two player Board.
+ *
+ * Every iteration walks down the tree choosing children with UCB1, adds one
+ * new child to the tree, plays the game out with the PlayoutPolicy and
+ * backs the result up the path. The move played most often at the root is
+ * returned.
+ *
+ * The tree is kept in parallel arrays indexed by node number (a node pool)
+ * instead of one object per node. Node 0 is the root. On boards with packed
+ * moves (Board.hasPackedMoves()) the moves are ints in the pool as well: the
+ * moves generated at a node are pushed on one MoveStack for the whole
+ * search, the untried ones are untriedNext..untriedEnd-1, and the tree moves
+ * are made with makeMove(int). The playouts use the move objects of the
+ * PlayoutPolicy. Other boards keep the Move into each node, and the moves
+ * that have not been added to a node yet stay in the linked list returned by
+ * generateMoves(). Either way a node costs one move list however many of
+ * its children are never expanded.
+ *
+ * MCTS-Solver: a node whose game is over is proven. A node with a proven won
+ * child is a proven loss for the player that moved into it, and a node whose
+ * children are all proven losses is a proven win. Proven nodes are not
+ * played out again, and a proven root ends the search.
+ *
+ * Rewards are 1.0 for a win, 0.0 for a loss and 0.5 for a draw. Node values
+ * are kept from the view of the player that made the move into the node.
+ * Playouts longer than playoutLimit moves are scored with the heuristic
+ * evaluation, taken to be in -1.0..1.0.
+ */
+public class MonteCarloTreeSearch<BOARD extends Board, MOVE extends Move> implements Search<BOARD,MOVE> {
+
+  static final byte UNKNOWN = 0;
+  static final byte PROVEN_WIN = 1;  // The player that moved into the node wins
+  static final byte PROVEN_LOSS = 2; // The player that moved into the node loses
+  static final byte DRAW = 3;        // The game is over and drawn
+
+  /**
+   * Estimated bytes per node: the pool arrays plus the Move object of a
+   * board without packed moves.
+   */
+  public static final int BYTES_PER_NODE = 80;
+
+  BOARD board;
+  PlayoutPolicy policy;
+  Random random = new MersenneTwister();
+  double exploration = Math.sqrt(2.0); // UCB1 constant
+  int iterations = 10000;       // Iterations when the limits set neither time nor nodes
+  int playoutLimit = 200;       // Playout moves before the heuristic decides
+  int maxNodes = 1 << 20;       // Pool size limit (memory limit)
+
+  // Node pool
+  int size;
+  int []parent;
+  int []firstChild;
+  int []nextSibling;
+  int []visits;
+  double []wins;
+  byte []state;
+  boolean []generated;          // The untried moves have been generated
+  boolean packed;               // board.hasPackedMoves(), which of the move arrays are used
+  Move []move;                  // Move into the node
+  Move []untried;
+  int []packedMove;             // Packed move into the node
+  int []untriedNext;            // Packed untried moves in moveList
+  int []untriedEnd;
+  MoveStack moveList = new MoveStack();
+
+  // Statistics
+  int totalIterations;
+  long playoutMoves;
+  int maxTreeDepth;
+  SearchStatistics statistics = new SearchStatistics();
+
+  // Moves made on the board by the current iteration: the packed tree moves,
+  // then the move objects
+  int []treePath = new int[64];
+  int treeLength;
+  Move []path = new Move[64];
+  int pathLength;
+
+  public MonteCarloTreeSearch() {
+    this(new RandomPlayoutPolicy());
+  }
+
+  /**
+   * @param policy chooses the moves of the playouts
+   */
+  public MonteCarloTreeSearch(PlayoutPolicy policy) {
+    this.policy = policy;
+    allocate(1024);
+  }
+
+  public void setPlayoutPolicy(PlayoutPolicy policy) {
+    this.policy = policy;
+  }
+
+  public void setExploration(double exploration) {
+    this.exploration = exploration;
+  }
+
+  public void setIterations(int iterations) {
+    this.iterations = Math.max(1, iterations);
+  }
+
+  public void setPlayoutLimit(int playoutLimit) {
+    this.playoutLimit = playoutLimit;
+  }
+
+  public void setSeed(long seed) {
+    random.setSeed(seed);
+  }
+
+  /**
+   * Limit the tree to maxNodes nodes. Once the pool is full the search goes
+   * on with playouts from the existing leaves, it does not fail.
+   */
+  public void setMaxNodes(int maxNodes) {
+    this.maxNodes = Math.max(2, maxNodes);
+  }
+
+  /**
+   * @param bytes memory for the tree, converted with BYTES_PER_NODE
+   */
+  public void setMemoryLimit(long bytes) {
+    setMaxNodes((int)Math.min(Integer.MAX_VALUE, bytes / BYTES_PER_NODE));
+  }
+
+  /**
+   * MCTS has no search depth, the iteration budget is used instead.
+   */
+  public MOVE findBestMove(BOARD board, int depth) {
+    return findBestMove(board, new SearchLimits(depth));
+  }
+
+  public SearchStatistics getStatistics() {
+    return statistics;
+  }
+
+  /**
+   * Run iterations until a limit is reached: the SearchLimits deadline, the
+   * node budget (counted in iterations), the stop flag or, if neither time
+   * nor nodes are limited, the iteration budget. The root is always searched
+   * at least once.
+   *
+   * @param board Game state
+   * @param limits Search limits
+   * @return the most visited move, or a proven win
+   */
+  @SuppressWarnings("unchecked")
+  public MOVE findBestMove(BOARD board, SearchLimits limits) {
+    long startTime = System.currentTimeMillis();
+    long budget = limits.getNodeBudget();
+    if (budget == SearchLimits.NO_LIMIT && limits.getDeadline() == SearchLimits.NO_LIMIT)
+      budget = iterations;
+
+    this.board = board;
+    statistics.start();
+    size = 0;
+    if (packed != board.hasPackedMoves()) {
+      packed = board.hasPackedMoves();
+      allocate(parent.length);
+    }
+    moveList.clear();
+    totalIterations = 0;
+    playoutMoves = 0;
+    maxTreeDepth = 0;
+    newNode(-1);
+
+    do {
+      iterate();
+      totalIterations++;
+    } while (state[0] == UNKNOWN && !(budget != SearchLimits.NO_LIMIT && totalIterations >= budget) &&
+        !limits.limitReached(totalIterations));
+
+    int best = bestChild();
+    SearchStatistics.Counters counts = new SearchStatistics.Counters();
+    counts.nodes = totalIterations; // An iteration is one selection, expansion and playout
+    counts.leafNodes = totalIterations;
+    statistics.iterationDone(maxTreeDepth, counts, true, "MCTS Tree Nodes: " + size + " Playout Moves: " + playoutMoves +
+        " Root: " + stateName(state[0]) + (size >= maxNodes ? " (pool full)" : ""));
+    statistics.searchDone();
+    if (best < 0) {
+      throw new Error ("No Move Available - Search Error!");
+    }
+
+    MOVE best_move = (MOVE)(packed ? board.unpackMove(packedMove[best]) : move[best]);
+    if (state[best] == PROVEN_WIN)
+      best_move.value = 2.0;
+    else if (state[best] == PROVEN_LOSS)
+      best_move.value = -2.0;
+    else
+      best_move.value = 2.0 * wins[best] / visits[best] - 1.0;
+    best_move.next = null;
+    return best_move;
+  }
+
+  /**
+   * One iteration: selection, expansion, playout and backup.
+   */
+  void iterate() {
+    int node = 0;
+    int depth = 0;
+    treeLength = pathLength = 0;
+
+    while (state[node] == UNKNOWN) {
+      if (!generated[node]) {
+        generated[node] = true;
+        if (!generate(node)) { // No moves, the player to move has to withdraw and loses.
+          state[node] = PROVEN_WIN;
+          break;
+        }
+      }
+      if (hasUntried(node)) {
+        if (size >= maxNodes) // Pool full, play out from here.
+          break;
+        int mover = board.getCurrentPlayer();
+        node = expand(node);
+        depth++;
+        int game_state = board.endGame();
+        if (game_state == Board.GAME_DRAW)
+          state[node] = DRAW;
+        else if (game_state != Board.GAME_CONTINUE)
+          state[node] = (game_state == mover) ? PROVEN_WIN : PROVEN_LOSS;
+        break;
+      }
+      node = selectChild(node);
+      if (packed)
+        playPacked(packedMove[node]);
+      else
+        play(move[node]);
+      depth++;
+    }
+    if (depth > maxTreeDepth)
+      maxTreeDepth = depth;
+
+    double reward; // For the player that moved into node
+    if (state[node] == PROVEN_WIN)
+      reward = 1.0;
+    else if (state[node] == PROVEN_LOSS)
+      reward = 0.0;
+    else if (state[node] == DRAW)
+      reward = 0.5;
+    else
+      reward = 1.0 - playout();
+
+    while (pathLength > 0)
+      board.reverseMove(path[--pathLength]);
+    while (treeLength > 0)
+      board.reverseMove(treePath[--treeLength]);
+
+    for (int n = node; n >= 0; n = parent[n]) {
+      visits[n]++;
+      wins[n] += reward;
+      reward = 1.0 - reward;
+    }
+    if (state[node] == PROVEN_WIN || state[node] == PROVEN_LOSS)
+      solve(node);
+  }
+
+  /**
+   * UCB1 over the children of node. Proven losses are never chosen while
+   * another child is left, a proven win is always chosen.
+   */
+  int selectChild(int node) {
+    double logVisits = Math.log(visits[node]);
+    int best = -1;
+    double bestValue = -Double.MAX_VALUE;
+    for (int c = firstChild[node]; c >= 0; c = nextSibling[c]) {
+      if (state[c] == PROVEN_WIN)
+        return c;
+      double value;
+      if (state[c] == PROVEN_LOSS)
+        value = -1.0;
+      else
+        value = wins[c] / visits[c] + exploration * Math.sqrt(logVisits / visits[c]);
+      if (value > bestValue) {
+        bestValue = value;
+        best = c;
+      }
+    }
+    return best;
+  }
+
+  /**
+   * Play the game out from the current board.
+   *
+   * @return reward for the player to move at the start of the playout
+   */
+  double playout() {
+    int player = board.getCurrentPlayer();
+    int start = pathLength;
+    double reward;
+    while (true) {
+      int game_state = board.endGame();
+      if (game_state == Board.GAME_DRAW) {
+        reward = 0.5;
+        break;
+      }
+      if (game_state != Board.GAME_CONTINUE) {
+        reward = (game_state == player) ? 1.0 : 0.0;
+        break;
+      }
+      Move moves = board.generateMoves();
+      if (moves == null) { // The player to move has to withdraw and loses.
+        reward = (board.getCurrentPlayer() == player) ? 0.0 : 1.0;
+        break;
+      }
+      if (pathLength - start >= playoutLimit) {
+        double h = Math.max(-1.0, Math.min(1.0, board.heuristicEvaluation()));
+        reward = (h + 1.0) / 2.0;
+        if (board.getCurrentPlayer() != player)
+          reward = 1.0 - reward;
+        break;
+      }
+      play(policy.selectMove(board, moves, random));
+    }
+    playoutMoves += pathLength - start;
+    return reward;
+  }
+
+  /**
+   * Pass a proven result up the tree as far as it decides the parents.
+   */
+  void solve(int node) {
+    for (int n = node; n > 0; n = parent[n]) {
+      int p = parent[n];
+      if (state[n] == PROVEN_WIN) {
+        state[p] = PROVEN_LOSS;
+        continue;
+      }
+      if (state[n] != PROVEN_LOSS || !generated[p] || hasUntried(p))
+        return;
+      for (int c = firstChild[p]; c >= 0; c = nextSibling[c])
+        if (state[c] != PROVEN_LOSS)
+          return;
+      state[p] = PROVEN_WIN;
+    }
+  }
+
+  /**
+   * The root child to play: a proven win, otherwise the most visited child
+   * that is not a proven loss.
+   */
+  int bestChild() {
+    int best = -1;
+    for (int c = firstChild[0]; c >= 0; c = nextSibling[c]) {
+      if (state[c] == PROVEN_WIN)
+        return c;
+      if (best < 0)
+        best = c;
+      else if ((state[best] == PROVEN_LOSS) != (state[c] == PROVEN_LOSS)) {
+        if (state[best] == PROVEN_LOSS)
+          best = c;
+      } else if (visits[c] > visits[best])
+        best = c;
+    }
+    return best;
+  }
+
+  void play(Move m) {
+    if (pathLength == path.length) {
+      Move []grown = new Move[path.length * 2];
+      System.arraycopy(path, 0, grown, 0, pathLength);
+      path = grown;
+    }
+    board.makeMove(m);
+    path[pathLength++] = m;
+  }
+
+  /**
+   * Generate the moves of node, all of them untried.
+   *
+   * @return false if there are none
+   */
+  boolean generate(int node) {
+    if (!packed) {
+      untried[node] = board.generateMoves();
+      return untried[node] != null;
+    }
+    untriedNext[node] = moveList.size();
+    untriedEnd[node] = untriedNext[node] + board.generateMoves(moveList);
+    return untriedEnd[node] > untriedNext[node];
+  }
+
+  boolean hasUntried(int node) {
+    return packed ? untriedNext[node] < untriedEnd[node] : untried[node] != null;
+  }
+
+  /**
+   * Make the next untried move of node and add its child to the tree.
+   *
+   * @return the child
+   */
+  int expand(int node) {
+    if (packed) {
+      int m = moveList.get(untriedNext[node]++);
+      playPacked(m);
+      int child = newNode(node);
+      packedMove[child] = m;
+      return child;
+    }
+    Move m = untried[node];
+    untried[node] = m.next;
+    play(m);
+    int child = newNode(node);
+    move[child] = m;
+    return child;
+  }
+
+  void playPacked(int m) {
+    if (treeLength == treePath.length)
+      treePath = Arrays.copyOf(treePath, treeLength * 2);
+    board.makeMove(m);
+    treePath[treeLength++] = m;
+  }
+
+  int newNode(int p) {
+    if (size == parent.length)
+      allocate(Math.min(maxNodes, parent.length * 2));
+    int n = size++;
+    parent[n] = p;
+    firstChild[n] = -1;
+    nextSibling[n] = -1;
+    visits[n] = 0;
+    wins[n] = 0.0;
+    state[n] = UNKNOWN;
+    generated[n] = false;
+    if (packed)
+      untriedNext[n] = untriedEnd[n] = 0;
+    else
+      untried[n] = null;
+    if (p >= 0) {
+      nextSibling[n] = firstChild[p];
+      firstChild[p] = n;
+    }
+    return n;
+  }
+
+  /**
+   * Grow the pool to capacity nodes, keeping the existing nodes. Only the
+   * move arrays of the current kind of board are kept.
+   */
+  void allocate(int capacity) {
+    int old = (parent == null) ? 0 : size;
+    int []newParent = new int[capacity];
+    int []newFirstChild = new int[capacity];
+    int []newNextSibling = new int[capacity];
+    int []newVisits = new int[capacity];
+    double []newWins = new double[capacity];
+    byte []newState = new byte[capacity];
+    boolean []newGenerated = new boolean[capacity];
+    if (old > 0) {
+      System.arraycopy(parent, 0, newParent, 0, old);
+      System.arraycopy(firstChild, 0, newFirstChild, 0, old);
+      System.arraycopy(nextSibling, 0, newNextSibling, 0, old);
+      System.arraycopy(visits, 0, newVisits, 0, old);
+      System.arraycopy(wins, 0, newWins, 0, old);
+      System.arraycopy(state, 0, newState, 0, old);
+      System.arraycopy(generated, 0, newGenerated, 0, old);
+    }
+    parent = newParent;
+    firstChild = newFirstChild;
+    nextSibling = newNextSibling;
+    visits = newVisits;
+    wins = newWins;
+    state = newState;
+    generated = newGenerated;
+    if (packed) {
+      packedMove = (packedMove == null) ? new int[capacity] : Arrays.copyOf(packedMove, capacity);
+      untriedNext = (untriedNext == null) ? new int[capacity] : Arrays.copyOf(untriedNext, capacity);
+      untriedEnd = (untriedEnd == null) ? new int[capacity] : Arrays.copyOf(untriedEnd, capacity);
+      move = untried = null;
+    } else {
+      move = (move == null) ? new Move[capacity] : Arrays.copyOf(move, capacity);
+      untried = (untried == null) ? new Move[capacity] : Arrays.copyOf(untried, capacity);
+      packedMove = untriedNext = untriedEnd = null;
+    }
+  }
+
+  static String stateName(byte s) {
+    switch (s) {
+      case PROVEN_WIN: return "proven loss for the player to move";
+      case PROVEN_LOSS: return "proven win for the player to move";
+      case DRAW: return "draw";
+      default: return "unknown";
+    }
+  }
+}
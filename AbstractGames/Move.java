@@ -8,6 +8,15 @@ import java.util.ArrayList;
  */
 public abstract class Move {
 
+  /**
+   * Packed moves (see Board.generateMoves(MoveStack)) keep the from and to
+   * squares of the game in the low 16 bits and these flags above them.
+   */
+  public static final int PACKED_SQUARES = 0xFFFF;
+  public static final int PACKED_CAPTURE = 1 << 16; /**< The move captures a piece */
+  public static final int PACKED_THREAT = 1 << 17;  /**< Board.isThreat, e.g. a move next to the goal */
+  public static final int PACKED_TACTICAL = PACKED_CAPTURE | PACKED_THREAT;
+
   public double value; /**< Store an estimate of the move for move ordering */
   public Move next;    /**< Pointer to the next move in the linked list */
   ArrayList<Double> h = null;
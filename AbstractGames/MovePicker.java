@@ -0,0 +1,162 @@
+package AbstractGames;
+
+/**
+ * Staged move selection for a packed move search (see
+ * Board.generateMoves(MoveStack)). The moves of a node come in stages:
+ *
+ *   1. the hash move, the best move found here before
+ *   2. the captures and threats (generateTacticalMoves), threatening
+ *      captures first and then by history
+ *   3. the killer moves of the ply
+ *   4. the quiet moves (generateQuietMoves), by history
+ *
+ * A stage is only generated when the stages before it did not cut the node
+ * off, and within a stage the moves are picked one at a time with
+ * MoveStack.selectBest, so a node cut off by the hash move generates and
+ * sorts nothing. The hash and killer moves come from other positions and are
+ * checked with Board.moveIsValid before they are returned, and they are not
+ * returned again by the later stages.
+ *
+ * A search keeps one picker per ply: init at the start of the node, next
+ * until it returns NO_MOVE or the node is cut off, then done.
+ */
+public class MovePicker {
+
+  public static final int NO_MOVE = -1;
+
+  static final int HASH_MOVE = 0;
+  static final int GENERATE_TACTICAL = 1;
+  static final int TACTICAL = 2;
+  static final int KILLERS = 3;
+  static final int GENERATE_QUIET = 4;
+  static final int QUIET = 5;
+  static final int DONE = 6;
+
+  static final int CAPTURE = 1 << 26;
+  static final int THREAT = 1 << 25;
+
+  Board board;
+  MoveStack stack;
+  int []history;   // History counts of the side to move by Move.PACKED_SQUARES
+  int hashMove;
+  int []killers;   // Killers of the ply, NO_MOVE for an empty slot
+  int stage;
+  int start;       // Stack size at init, the moves of the node are above it
+  int current, end;
+  int killer;      // Next killer slot to try
+  int killersTried;
+  int []triedKillers;
+  boolean quietGenerated;
+
+  /**
+   * @param killerSlots killer moves per ply
+   */
+  public MovePicker(int killerSlots) {
+    triedKillers = new int[killerSlots];
+  }
+
+  /**
+   * Start picking the moves of the board's position.
+   *
+   * @param stack the move stack of the search, the moves are pushed on it
+   * @param hashMove the hash move, NO_MOVE if none
+   * @param killers the killer moves of the ply
+   * @param history history counts of the side to move by Move.PACKED_SQUARES
+   */
+  public void init(Board board, MoveStack stack, int hashMove, int []killers, int []history) {
+    this.board = board;
+    this.stack = stack;
+    this.hashMove = hashMove;
+    this.killers = killers;
+    this.history = history;
+    stage = HASH_MOVE;
+    start = current = end = stack.size();
+    killer = killersTried = 0;
+    quietGenerated = false;
+  }
+
+  /**
+   * @return the next move, NO_MOVE when there are no more
+   */
+  public int next() {
+    while (true) {
+      switch (stage) {
+      case HASH_MOVE:
+        stage = GENERATE_TACTICAL;
+        if (hashMove != NO_MOVE && board.moveIsValid(hashMove))
+          return hashMove;
+        hashMove = NO_MOVE;
+        break;
+      case GENERATE_TACTICAL:
+        end = current + board.generateTacticalMoves(stack);
+        for (int k = current; k < end; k++) {
+          int m = stack.get(k);
+          stack.setScore(k, ((m & Move.PACKED_CAPTURE) != 0 ? CAPTURE : 0) +
+              ((m & Move.PACKED_THREAT) != 0 ? THREAT : 0) + history[m & Move.PACKED_SQUARES]);
+        }
+        stage = TACTICAL;
+        break;
+      case TACTICAL:
+        while (current < end) {
+          int m = stack.selectBest(current++, end);
+          if (m != hashMove)
+            return m;
+        }
+        stage = KILLERS;
+        break;
+      case KILLERS:
+        while (killer < killers.length) {
+          int m = killers[killer++];
+          if (m != NO_MOVE && m != hashMove && (m & Move.PACKED_TACTICAL) == 0 && !tried(m) &&
+              board.moveIsValid(m)) {
+            triedKillers[killersTried++] = m;
+            return m;
+          }
+        }
+        stage = GENERATE_QUIET;
+        break;
+      case GENERATE_QUIET:
+        stack.popTo(start);
+        quietGenerated = true;
+        current = start;
+        end = current + board.generateQuietMoves(stack);
+        for (int k = current; k < end; k++)
+          stack.setScore(k, history[stack.get(k) & Move.PACKED_SQUARES]);
+        stage = QUIET;
+        break;
+      case QUIET:
+        while (current < end) {
+          int m = stack.selectBest(current++, end);
+          if (m != hashMove && !tried(m))
+            return m;
+        }
+        stage = DONE;
+        break;
+      default:
+        return NO_MOVE;
+      }
+    }
+  }
+
+  boolean tried(int move) {
+    for (int k = 0; k < killersTried; k++)
+      if (triedKillers[k] == move)
+        return true;
+    return false;
+  }
+
+  /**
+   * @return true if the quiet moves were generated, i.e. the node was not cut
+   *         off before the last stage
+   */
+  public boolean quietGenerated() {
+    return quietGenerated;
+  }
+
+  /**
+   * Pop the moves of the node from the stack.
+   */
+  public void done() {
+    stack.popTo(start);
+  }
+}
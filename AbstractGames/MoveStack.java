@@ -0,0 +1,114 @@
+package AbstractGames;
+
+import java.util.Arrays;
+
+/**
+ * The packed moves of a search (see Board.generateMoves(MoveStack)), all
+ * plies in one int array. A node pushes its moves on top of the moves of its
+ * parent and pops them with popTo when it is done, so once the arrays have
+ * grown to the deepest line no move is allocated at all.
+ *
+ * Each move has an int score beside it for move ordering, and selectBest
+ * picks the moves in score order one at a time, so a node cut off after its
+ * first move never sorts the rest.
+ */
+public class MoveStack {
+
+  int []moves;
+  int []scores;
+  int size;
+
+  public MoveStack() {
+    this(1024);
+  }
+
+  /**
+   * @param capacity moves before the arrays grow
+   */
+  public MoveStack(int capacity) {
+    moves = new int[Math.max(16, capacity)];
+    scores = new int[moves.length];
+  }
+
+  /**
+   * Push a move with a score of 0.
+   */
+  public void push(int move) {
+    if (size == moves.length) {
+      moves = Arrays.copyOf(moves, 2 * size);
+      scores = Arrays.copyOf(scores, 2 * size);
+    }
+    moves[size] = move;
+    scores[size++] = 0;
+  }
+
+  /**
+   * @return the number of moves on the stack, the start of the next ply
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Pop the moves above size, e.g. the moves of a finished node.
+   */
+  public void popTo(int size) {
+    this.size = size;
+  }
+
+  public void clear() {
+    size = 0;
+  }
+
+  public int get(int i) {
+    return moves[i];
+  }
+
+  public int getScore(int i) {
+    return scores[i];
+  }
+
+  public void setScore(int i, int score) {
+    scores[i] = score;
+  }
+
+  /**
+   * Keep only the moves above from that have one of the flags (set) or none
+   * of them (!set), in their order.
+   *
+   * @return the number of moves kept
+   */
+  public int keep(int from, int flags, boolean set) {
+    int to = from;
+    for (int i = from; i < size; i++) {
+      if (((moves[i] & flags) != 0) == set) {
+        moves[to] = moves[i];
+        scores[to++] = scores[i];
+      }
+    }
+    size = to;
+    return to - from;
+  }
+
+  /**
+   * One step of a selection sort: swap the best scored move of [from, to)
+   * to from. Equal scores keep their order.
+   *
+   * @return the move now at from
+   */
+  public int selectBest(int from, int to) {
+    int best = from;
+    for (int i = from + 1; i < to; i++)
+      if (scores[i] > scores[best])
+        best = i;
+    if (best != from) {
+      int move = moves[best];
+      int score = scores[best];
+      moves[best] = moves[from];
+      scores[best] = scores[from];
+      moves[from] = move;
+      scores[from] = score;
+    }
+    return moves[from];
+  }
+}
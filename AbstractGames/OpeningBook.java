@@ -0,0 +1,170 @@
+package AbstractGames;
+
+import java.io.*;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Random;
+
+/**
+ * Opening book read from a memory-mapped file.
+ *
+ * The file is a header followed by records of (key, move, weight, score),
+ * sorted by key. The key is the board's Zobrist key
+ * (TranspositionBoard.getHashKey()), the move is Board.encodeMove(), the
+ * weight is how often the move was played or chosen, and the score is the
+ * result or search value of the move for the side that made it.
+ * A position is found by binary search over the mapped records, so opening
+ * the book costs nothing and the pages are shared by all the processes that
+ * use it.
+ *
+ * The Zobrist keys come from the zobrist*.hsh file of the game. The header
+ * keeps the key of the start position, so a book is only used with the
+ * keys it was built with.
+ *
+ * Books are written by OpeningBookBuilder.
+ */
+public class OpeningBook {
+
+  static final int MAGIC = 0x424f4f4b; // "BOOK"
+  static final int HEADER = 16;       // magic, record count, start position key
+  static final int RECORD = 24;       // key, move, weight, score
+
+  MappedByteBuffer buffer;
+  int records;
+  long rootKey;
+
+  OpeningBook() {
+  }
+
+  /**
+   * Map a book file.
+   *
+   * @param file book written by OpeningBookBuilder
+   * @param rootKey getHashKey() of the start position with the keys in use
+   */
+  public static OpeningBook open(File file, long rootKey) throws IOException {
+    OpeningBook book = new OpeningBook();
+    try (RandomAccessFile raf = new RandomAccessFile(file, "r"); FileChannel channel = raf.getChannel()) {
+      book.buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+    }
+    if (book.buffer.capacity() < HEADER || book.buffer.getInt(0) != MAGIC)
+      throw new IOException("Not an opening book: " + file);
+    book.records = book.buffer.getInt(4);
+    book.rootKey = book.buffer.getLong(8);
+    if (book.buffer.capacity() != HEADER + (long)book.records * RECORD)
+      throw new IOException("Opening book is truncated: " + file);
+    if (book.rootKey != rootKey)
+      throw new IOException("Opening book " + file + " was built with other Zobrist keys");
+    return book;
+  }
+
+  public int size() {
+    return records;
+  }
+
+  public long getRootKey() {
+    return rootKey;
+  }
+
+  long key(int record) {
+    return buffer.getLong(HEADER + record * RECORD);
+  }
+
+  int move(int record) {
+    return buffer.getInt(HEADER + record * RECORD + 8);
+  }
+
+  int weight(int record) {
+    return buffer.getInt(HEADER + record * RECORD + 12);
+  }
+
+  double score(int record) {
+    return buffer.getDouble(HEADER + record * RECORD + 16);
+  }
+
+  /**
+   * @return the first record with key, or -1 if the position is not in the book
+   */
+  int find(long key) {
+    int low = 0, high = records;
+    while (low < high) {
+      int middle = (low + high) >>> 1;
+      if (key(middle) < key)
+        low = middle + 1;
+      else
+        high = middle;
+    }
+    return (low < records && key(low) == key) ? low : -1;
+  }
+
+  /**
+   * @return the number of book moves for the position
+   */
+  public int count(long key) {
+    int first = find(key);
+    if (first < 0)
+      return 0;
+    int last = first;
+    while (last < records && key(last) == key)
+      last++;
+    return last - first;
+  }
+
+  /**
+   * Choose a book move for the current position of board.
+   *
+   * Without random the move with the highest weight is chosen. With random
+   * a move is drawn with probability proportional to its weight, so that
+   * self-play games do not all repeat the same line.
+   *
+   * @param board game state
+   * @param minWeight moves played less often are ignored
+   * @param random null for the most played move
+   * @return the board's own move with the book score as value, or null
+   */
+  public Move probe(TranspositionBoard board, int minWeight, Random random) {
+    long key = board.getHashKey();
+    int first = find(key);
+    if (first < 0)
+      return null;
+
+    long total = 0;
+    int best = -1;
+    for (int r = first; r < records && key(r) == key; r++) {
+      if (weight(r) < minWeight || lookup(board, move(r)) == null)
+        continue;
+      total += weight(r);
+      if (best < 0 || weight(r) > weight(best))
+        best = r;
+    }
+    if (best < 0)
+      return null;
+    if (random != null) {
+      long pick = (long)(random.nextDouble() * total);
+      for (int r = first; r < records && key(r) == key; r++) {
+        if (weight(r) < minWeight || lookup(board, move(r)) == null)
+          continue;
+        pick -= weight(r);
+        if (pick < 0) {
+          best = r;
+          break;
+        }
+      }
+    }
+    Move m = lookup(board, move(best));
+    m.value = score(best);
+    m.next = null;
+    return m;
+  }
+
+  /**
+   * @return the legal move of board with the code, null if there is none
+   *         (a Zobrist collision)
+   */
+  static Move lookup(Board board, int code) {
+    for (Move m = board.generateMoves(); m != null; m = m.next)
+      if (board.encodeMove(m) == code)
+        return m;
+    return null;
+  }
+}
@@ -0,0 +1,169 @@
+package AbstractGames;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Builds and extends OpeningBook files.
+ *
+ * The book grows in two ways:
+ *  - addGame: every move of a self-play game up to maxPly is added, or its
+ *    weight raised. The score is the running average of the results for
+ *    the side that played it (1 win, -1 loss, 0 draw).
+ *  - deepen: the positions after the book moves are searched offline, down
+ *    to maxPly, and the move found is added with its search value as score.
+ *
+ * Typical use: load the old book, add the new self-play games, deepen, write.
+ */
+public class OpeningBookBuilder<BOARD extends TranspositionBoard, MOVE extends Move> {
+
+  static class Entry {
+    int weight;
+    double score;
+
+    Entry(int weight, double score) {
+      this.weight = weight;
+      this.score = score;
+    }
+  }
+
+  HashMap<Long, HashMap<Integer, Entry>> positions = new HashMap<Long, HashMap<Integer, Entry>>();
+  long rootKey;
+  int maxPly;
+  int searched;
+
+  /**
+   * @param start the start position, its key is written in the book header
+   * @param maxPly moves deeper than this are not added
+   */
+  public OpeningBookBuilder(BOARD start, int maxPly) {
+    rootKey = start.getHashKey();
+    this.maxPly = maxPly;
+  }
+
+  /**
+   * Add the records of an existing book.
+   */
+  public void load(File file) throws IOException {
+    OpeningBook book = OpeningBook.open(file, rootKey);
+    for (int r = 0; r < book.size(); r++)
+      add(book.key(r), book.move(r), book.weight(r), book.score(r));
+  }
+
+  /**
+   * Add a move, or merge it with the move already in the book: the weights
+   * are summed and the scores averaged by weight.
+   */
+  public void add(long key, int move, int weight, double score) {
+    HashMap<Integer, Entry> moves = positions.get(key);
+    if (moves == null) {
+      moves = new HashMap<Integer, Entry>();
+      positions.put(key, moves);
+    }
+    Entry e = moves.get(move);
+    if (e == null) {
+      moves.put(move, new Entry(weight, score));
+    } else {
+      e.score = (e.score * e.weight + score * weight) / (e.weight + weight);
+      e.weight += weight;
+    }
+  }
+
+  /**
+   * Add a self-play game. The board is left in the start position.
+   *
+   * @param board the start position of the game
+   * @param moves the moves of the game in order
+   * @param winner the winning player, or Board.GAME_DRAW
+   */
+  public void addGame(BOARD board, List<MOVE> moves, int winner) {
+    int plies = Math.min(maxPly, moves.size());
+    Move []made = new Move[plies];
+    for (int ply = 0; ply < plies; ply++) {
+      Move m = OpeningBook.lookup(board, board.encodeMove(moves.get(ply)));
+      if (m == null)
+        throw new Error("Illegal move in game at ply " + ply + ": " + moves.get(ply));
+      int player = board.getCurrentPlayer();
+      double result = (winner == Board.GAME_DRAW) ? 0.0 : (winner == player) ? 1.0 : -1.0;
+      add(board.getHashKey(), board.encodeMove(m), 1, result);
+      board.makeMove(m);
+      made[ply] = m;
+    }
+    for (int ply = plies - 1; ply >= 0; ply--)
+      board.reverseMove(made[ply]);
+  }
+
+  /**
+   * Follow every book move from the position of board, and search the
+   * positions that have no book move yet, down to maxPly. The board is left
+   * unchanged.
+   *
+   * @param board the start position
+   * @param search the offline search
+   * @param depth its search depth
+   * @return the number of positions searched
+   */
+  public int deepen(BOARD board, Search<BOARD,MOVE> search, int depth) {
+    searched = 0;
+    deepen(board, search, depth, 0, new HashMap<Long, Boolean>());
+    return searched;
+  }
+
+  void deepen(BOARD board, Search<BOARD,MOVE> search, int depth, int ply, HashMap<Long, Boolean> visited) {
+    if (ply >= maxPly || board.endGame() != Board.GAME_CONTINUE || visited.put(board.getHashKey(), Boolean.TRUE) != null)
+      return;
+    HashMap<Integer, Entry> moves = positions.get(board.getHashKey());
+    if (moves == null) {
+      MOVE best = search.findBestMove(board, depth);
+      searched++;
+      add(board.getHashKey(), board.encodeMove(best), 1, best.value);
+      moves = positions.get(board.getHashKey());
+    }
+    for (Integer code : new ArrayList<Integer>(moves.keySet())) {
+      Move m = OpeningBook.lookup(board, code);
+      if (m == null)
+        continue;
+      board.makeMove(m);
+      deepen(board, search, depth, ply + 1, visited);
+      board.reverseMove(m);
+    }
+  }
+
+  /**
+   * @return the number of records the book will have
+   */
+  public int size() {
+    int count = 0;
+    for (HashMap<Integer, Entry> moves : positions.values())
+      count += moves.size();
+    return count;
+  }
+
+  /**
+   * Write the book sorted by key, the most played move first.
+   */
+  public void write(File file) throws IOException {
+    Long []keys = positions.keySet().toArray(new Long[0]);
+    Arrays.sort(keys);
+    try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+      out.writeInt(OpeningBook.MAGIC);
+      out.writeInt(size());
+      out.writeLong(rootKey);
+      for (Long key : keys) {
+        HashMap<Integer, Entry> moves = positions.get(key);
+        Integer []codes = moves.keySet().toArray(new Integer[0]);
+        Arrays.sort(codes, (a, b) -> moves.get(b).weight - moves.get(a).weight);
+        for (Integer code : codes) {
+          Entry e = moves.get(code);
+          out.writeLong(key);
+          out.writeInt(code);
+          out.writeInt(e.weight);
+          out.writeDouble(e.score);
+        }
+      }
+    }
+  }
+}
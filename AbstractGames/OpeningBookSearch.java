@@ -0,0 +1,82 @@
+package AbstractGames;
+
+import java.util.Random;
+
+/**
+ * Search decorator that plays from an OpeningBook while the position is in
+ * the book, and asks the wrapped search otherwise.
+ */
+public class OpeningBookSearch<BOARD extends TranspositionBoard, MOVE extends Move> implements Search<BOARD,MOVE> {
+
+  OpeningBook book;
+  Search<BOARD,MOVE> search;
+  int minWeight = 1;
+  Random random = null;
+  int bookMoves;
+  boolean inBook;    // The last move came from the book
+  SearchStatistics statistics = new SearchStatistics();
+
+  /**
+   * @param book the book, null to always search
+   * @param search the search used out of book
+   */
+  public OpeningBookSearch(OpeningBook book, Search<BOARD,MOVE> search) {
+    this.book = book;
+    this.search = search;
+  }
+
+  /**
+   * @param minWeight book moves played less often are ignored
+   */
+  public void setMinWeight(int minWeight) {
+    this.minWeight = minWeight;
+  }
+
+  /**
+   * Choose among the book moves by weight instead of always the most played,
+   * e.g. for self-play. null turns it off.
+   */
+  public void setRandom(Random random) {
+    this.random = random;
+  }
+
+  /**
+   * @return the number of moves played from the book
+   */
+  public int getBookMoves() {
+    return bookMoves;
+  }
+
+  /**
+   * @return the statistics of the wrapped search, or empty statistics (no
+   *         nodes) when the last move came from the book
+   */
+  public SearchStatistics getStatistics() {
+    return inBook ? statistics : search.getStatistics();
+  }
+
+  public MOVE findBestMove(BOARD board, int depth) {
+    MOVE m = probe(board);
+    return (m != null) ? m : search.findBestMove(board, depth);
+  }
+
+  public MOVE findBestMove(BOARD board, SearchLimits limits) {
+    MOVE m = probe(board);
+    return (m != null) ? m : search.findBestMove(board, limits);
+  }
+
+  @SuppressWarnings("unchecked")
+  MOVE probe(BOARD board) {
+    if (book == null)
+      return null;
+    MOVE m = (MOVE)book.probe(board, minWeight, random);
+    inBook = (m != null);
+    if (m != null) {
+      bookMoves++;
+      statistics.start();
+      statistics.log("Book Move: " + m + " Score: " + m.value);
+      statistics.searchDone();
+    }
+    return m;
+  }
+}
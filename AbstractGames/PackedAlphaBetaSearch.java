@@ -0,0 +1,295 @@
+package AbstractGames;
+
+/**
+ * Negamax alpha beta on packed moves (see Board.generateMoves(MoveStack)).
+ *
+ * The search is MinimaxAlphaBetaSearch without the Move objects: every node
+ * pushes its moves on one MoveStack, plays them with makeMove(int) and
+ * reverseMove(int) and pops them when it returns, so a search allocates
+ * nothing after the first iteration has grown the stack. Only the move
+ * returned by findBestMove is unpacked.
+ *
+ * The moves come from a MovePicker per ply, in stages: the hash move, the
+ * captures and threats, the killer moves of the ply and then the quiet moves
+ * by history. The hash moves are the best moves of earlier visits, kept in a
+ * table of moves only by TranspositionBoard.getHashKey(). Boards without a
+ * hash key only have the best move of the previous iteration at the root.
+ */
+public class PackedAlphaBetaSearch<BOARD extends Board, MOVE extends Move> implements Search<BOARD,MOVE> {
+
+  static final int HISTORY_LIMIT = 1 << 24; // History counts are halved above this
+  static final int MAX_PLY = 64;
+  static final int KILLER_SLOTS = 2;
+
+  BOARD board;
+  MoveStack stack = new MoveStack();
+  MovePicker []pickers = new MovePicker[MAX_PLY + 1];
+  int [][]killers = new int[MAX_PLY + 1][KILLER_SLOTS];
+  int [][]history = new int[2][Move.PACKED_SQUARES + 1];
+  int rootBest;             // Best move of the last completed iteration, NO_MOVE if none
+  double rootValue;
+
+  int hashBits = 16;
+  long []hashKeys;
+  int []hashMoves;
+  TranspositionBoard hashBoard; // The board if it has a hash key, else null
+
+  int totalNodesSearched;
+  int totalLeafNodes;
+  int cutoffs, firstMoveCutoffs;
+  int quietGenerations;     // Nodes that got to the quiet moves
+  SearchStatistics statistics = new SearchStatistics();
+
+  SearchLimits limits;     // null while the search may not be stopped
+  int nodesBeforeIteration; // Nodes searched by the completed iterations
+  int pollCount;
+  boolean stopSearch = false;
+
+  public PackedAlphaBetaSearch() {
+    for (int i = 0; i < pickers.length; i++)
+      pickers[i] = new MovePicker(KILLER_SLOTS);
+  }
+
+  /**
+   * @param bits the hash move table has 2^bits entries
+   */
+  public void setHashBits(int bits) {
+    hashBits = bits;
+  }
+
+  public SearchStatistics getStatistics() {
+    return statistics;
+  }
+
+  public MOVE findBestMove(BOARD board, int depth) {
+    return findBestMove(board, new SearchLimits(depth));
+  }
+
+  /**
+   * Iterative deepening that stops when a time, node or external stop limit
+   * is reached. The first iteration is always completed, after that the move
+   * of the last completed iteration is returned.
+   *
+   * @param board Game state
+   * @param limits Search limits
+   * @return
+   */
+  public MOVE findBestMove(BOARD board, SearchLimits limits) {
+    int best_move = MovePicker.NO_MOVE;
+    double best_value = 0.0;
+    int runningNodeTotal = 0;
+    long startTime = System.currentTimeMillis();
+    long elapsedTime = 0;
+    long currentPeriod;
+    long previousPeriod = 0;
+    int i = 1;
+
+    this.board = board;
+    statistics.start();
+    this.limits = null; // The first iteration always completes
+    stopSearch = false;
+    pollCount = 0;
+    rootBest = MovePicker.NO_MOVE;
+    stack.clear();
+    for (int []k : killers)
+      java.util.Arrays.fill(k, MovePicker.NO_MOVE);
+    for (int []h : history)
+      java.util.Arrays.fill(h, 0);
+    hashBoard = (board instanceof TranspositionBoard) ? (TranspositionBoard)board : null;
+    if (hashBoard != null) {
+      if (hashKeys == null || hashKeys.length != 1 << hashBits) {
+        hashKeys = new long[1 << hashBits];
+        hashMoves = new int[1 << hashBits];
+      }
+      java.util.Arrays.fill(hashMoves, MovePicker.NO_MOVE);
+    }
+    TimeManager timeManager = null;
+    if (limits.getDeadline() != SearchLimits.NO_LIMIT)
+      timeManager = new TimeManager(limits);
+
+    while (i <= limits.getMaxDepth()) {
+      totalNodesSearched = totalLeafNodes = cutoffs = firstMoveCutoffs = quietGenerations = 0;
+      nodesBeforeIteration = runningNodeTotal;
+
+      searchRoot(i);
+      if (stopSearch) {
+        statistics.iterationDone(i, counters(), false, null);
+        break;
+      }
+      best_move = rootBest;
+      best_value = rootValue;
+
+      elapsedTime = System.currentTimeMillis() - startTime;
+      currentPeriod = elapsedTime - previousPeriod;
+      previousPeriod = elapsedTime;
+
+      runningNodeTotal += totalNodesSearched;
+      statistics.iterationDone(i, counters(), true, "Quiet Generations: " + quietGenerations);
+
+      // increment indexes;
+      i = i + 2;
+      this.limits = limits;
+      if (limits.limitReached(runningNodeTotal))
+        break;
+      if (timeManager != null) {
+        timeManager.iterationDone(currentPeriod, totalNodesSearched, board.unpackMove(best_move));
+        if (i <= limits.getMaxDepth() && !timeManager.startNextIteration()) {
+          statistics.log("Depth: " + i + " not started, predicted time: " + timeManager.getPredicted() / 1000.0 +
+              " Growth: " + timeManager.getGrowth());
+          break;
+        }
+      }
+    }
+    this.limits = null;
+
+    statistics.searchDone();
+    if (best_move == MovePicker.NO_MOVE) {
+      throw new Error ("No Move Available - Search Error!");
+    }
+    MOVE move = (MOVE)board.unpackMove(best_move);
+    move.value = best_value;
+    return move;
+  }
+
+  /**
+   * @return the counts since the start of the iteration
+   */
+  SearchStatistics.Counters counters() {
+    SearchStatistics.Counters c = new SearchStatistics.Counters();
+    c.nodes = totalNodesSearched;
+    c.leafNodes = totalLeafNodes;
+    c.cutoffs = cutoffs;
+    c.firstMoveCutoffs = firstMoveCutoffs;
+    return c;
+  }
+
+  /**
+   * Search the root moves with the full window, the best move of the
+   * previous iteration first. Sets rootBest and rootValue unless the search
+   * is stopped.
+   */
+  void searchRoot(int depth) {
+    totalNodesSearched++;
+    MovePicker picker = pickers[0];
+    picker.init(board, stack, rootBest, killers[0], history[board.getCurrentPlayer() & 1]);
+    int best = MovePicker.NO_MOVE;
+    double alpha = -Double.MAX_VALUE;
+    for (int m = picker.next(); m != MovePicker.NO_MOVE; m = picker.next()) {
+      board.makeMove(m);
+      double v = -search(depth - 1, -Double.MAX_VALUE, -alpha, 1);
+      board.reverseMove(m);
+      if (stopSearch)
+        break;
+      if (best == MovePicker.NO_MOVE || v > alpha) {
+        alpha = v;
+        best = m;
+      }
+    }
+    picker.done();
+    if (!stopSearch && best != MovePicker.NO_MOVE) {
+      rootBest = best;
+      rootValue = alpha;
+    }
+  }
+
+  /**
+   * Negamax alpha beta
+   *
+   * @param depth int the depth of the search to conduct
+   * @param ply distance from the root, for the killer moves
+   * @return the value of the board for the player to move
+   */
+  double search(int depth, double alpha, double beta, int ply) {
+    totalNodesSearched++;
+
+    if (limits != null && ++pollCount >= limits.pollInterval) {
+      pollCount = 0;
+      if (limits.limitReached(nodesBeforeIteration + totalNodesSearched))
+        stopSearch = true;
+    }
+    if (stopSearch) // Out of time or cancelled, the iteration is discarded.
+      return 0.0;
+
+    if (depth <= 0 || ply >= MAX_PLY) {
+      totalLeafNodes++;
+      return board.heuristicEvaluation();
+    }
+
+    // Is this the end of the game?
+    int game_state = board.endGame();
+    if (game_state != Board.GAME_CONTINUE) {
+      if (game_state == board.getCurrentPlayer()) // Did this player win?
+        return 1.0+depth/1.0;
+      int []player = board.getPlayerList(); // Did an opponent win?
+      for (int i = 0; i < player.length; i++)
+        if (game_state == player[i])
+          return -(1.0+depth/1.0);
+      if (game_state == Board.GAME_DRAW) // Game is a draw
+        return 0.0;
+    }
+
+    int slot = -1;
+    int hashMove = MovePicker.NO_MOVE;
+    if (hashBoard != null) {
+      long key = hashBoard.getHashKey();
+      slot = (int)(key ^ (key >>> 32)) & (hashMoves.length - 1);
+      if (hashKeys[slot] == key)
+        hashMove = hashMoves[slot];
+    }
+
+    MovePicker picker = pickers[ply];
+    picker.init(board, stack, hashMove, killers[ply], history[board.getCurrentPlayer() & 1]);
+    double best = -Double.MAX_VALUE;
+    int best_move = MovePicker.NO_MOVE;
+    int searched = 0;
+    for (int m = picker.next(); m != MovePicker.NO_MOVE; m = picker.next()) {
+      board.makeMove(m);
+      double v = -search(depth - 1, -beta, -Math.max(alpha, best), ply + 1);
+      board.reverseMove(m);
+      searched++;
+      if (v > best) {
+        best = v;
+        best_move = m;
+      }
+      if (best >= beta) { // The opponent won't allow this node
+        cutoffs++;
+        if (searched == 1)
+          firstMoveCutoffs++;
+        if ((m & Move.PACKED_TACTICAL) == 0) {
+          addKiller(ply, m);
+          addHistory(m, depth);
+        }
+        break;
+      }
+    }
+    if (picker.quietGenerated())
+      quietGenerations++;
+    picker.done();
+    if (searched == 0) // No moves, assume that we have to withdraw and lose.
+      return -(1.0+depth/1.0);
+
+    if (slot >= 0 && !stopSearch) {
+      hashKeys[slot] = hashBoard.getHashKey();
+      hashMoves[slot] = best_move;
+    }
+    return best;
+  }
+
+  void addKiller(int ply, int move) {
+    int []k = killers[ply];
+    if (k[0] == move)
+      return;
+    for (int i = k.length - 1; i > 0; i--)
+      k[i] = k[i - 1];
+    k[0] = move;
+  }
+
+  void addHistory(int move, int depth) {
+    int []h = history[board.getCurrentPlayer() & 1];
+    h[move & Move.PACKED_SQUARES] += depth * depth;
+    if (h[move & Move.PACKED_SQUARES] > HISTORY_LIMIT)
+      for (int []t : history)
+        for (int k = 0; k < t.length; k++)
+          t[k] >>= 1;
+  }
+}
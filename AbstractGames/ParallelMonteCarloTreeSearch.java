@@ -0,0 +1,510 @@
+package AbstractGames;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Tree parallel UCT Monte Carlo Tree Search. All threads run iterations on
+ * one shared tree, each on its own copy of the board.
+ *
+ * The node statistics are atomic arrays, so no node is ever locked:
+ * - Virtual loss: a thread going down the tree adds virtualLoss visits (and
+ *   no wins) to every node on its path, and takes them back when it backs up
+ *   the result. Until then the path looks worse to the other threads, so
+ *   they spread out over the tree instead of all following the same path.
+ * - Expansion: a leaf is expanded by the thread that moves its status from
+ *   UNEXPANDED to EXPANDING with a compare and set. That thread generates all
+ *   of the children into a block taken from the pool, then publishes them by
+ *   setting the status to EXPANDED. A thread that finds the leaf EXPANDING
+ *   plays out from the leaf instead of waiting.
+ *
+ * On boards with packed moves (Board.hasPackedMoves(): Breakthrough, LOA and
+ * mnk) the tree stores packed moves, which belong to no board, and each
+ * thread plays them on its own board with makeMove(int). The playouts use
+ * the move objects of the PlayoutPolicy on top of them. On the other boards
+ * (e.g. TicTacToe and phantom mnk) the tree stores the move objects of the
+ * thread that expanded the node, and makeMove writes into them, so each
+ * thread plays the equal move from its own generateMoves() list. Boards have
+ * to implement copy().
+ *
+ * The pool grows in blocks of BLOCK_SIZE nodes up to maxNodes. A block is
+ * never moved once it is allocated, so the threads can keep updating the
+ * nodes while the pool grows.
+ *
+ * Wins are kept in fixed point (WIN_SCALE per win) so that they can be added
+ * atomically, from the view of the player that moved into the node, as in
+ * MonteCarloTreeSearch.
+ */
+public class ParallelMonteCarloTreeSearch<BOARD extends Board, MOVE extends Move> implements Search<BOARD,MOVE> {
+
+  static final int UNEXPANDED = 0;
+  static final int EXPANDING = 1;
+  static final int EXPANDED = 2;
+  static final int TERMINAL = 3;  // Game over, terminalWins holds the result
+  static final int FULL = 4;      // Not expanded because the pool is full
+
+  static final long WIN_SCALE = 1 << 20;
+
+  static final int BLOCK_BITS = 12;
+  static final int BLOCK_SIZE = 1 << BLOCK_BITS;
+  static final int BLOCK_MASK = BLOCK_SIZE - 1;
+
+  int threads;
+  int virtualLoss = 3;
+  PlayoutPolicy policy;
+  double exploration = Math.sqrt(2.0);
+  int iterations = 10000;       // Iterations when the limits set neither time nor nodes
+  int playoutLimit = 200;
+  int maxNodes = 1 << 20;
+
+  // Node pool, children of a node are the nodes firstChild..firstChild+childCount-1
+  AtomicInteger size = new AtomicInteger();
+  AtomicReferenceArray<Block> blocks;
+  boolean packed;  // The blocks hold packed moves, else move objects
+
+  volatile boolean stop;
+  LongAdder totalIterations = new LongAdder();
+  SearchStatistics statistics = new SearchStatistics();
+
+  public ParallelMonteCarloTreeSearch() {
+    this(Runtime.getRuntime().availableProcessors());
+  }
+
+  /**
+   * @param threads number of threads searching the tree, including the caller
+   */
+  public ParallelMonteCarloTreeSearch(int threads) {
+    this(threads, new RandomPlayoutPolicy());
+  }
+
+  /**
+   * @param threads number of threads searching the tree, including the caller
+   * @param policy chooses the moves of the playouts, shared by the threads
+   */
+  public ParallelMonteCarloTreeSearch(int threads, PlayoutPolicy policy) {
+    this.threads = Math.max(1, threads);
+    this.policy = policy;
+  }
+
+  public void setVirtualLoss(int virtualLoss) {
+    this.virtualLoss = Math.max(0, virtualLoss);
+  }
+
+  public void setExploration(double exploration) {
+    this.exploration = exploration;
+  }
+
+  public void setIterations(int iterations) {
+    this.iterations = Math.max(1, iterations);
+  }
+
+  public void setPlayoutLimit(int playoutLimit) {
+    this.playoutLimit = playoutLimit;
+  }
+
+  /**
+   * The pool grows up to maxNodes nodes. Once it is full the leaves are
+   * played out without being expanded.
+   */
+  public void setMaxNodes(int maxNodes) {
+    this.maxNodes = Math.max(2, maxNodes);
+  }
+
+  /**
+   * @param bytes memory for the tree, converted with MonteCarloTreeSearch.BYTES_PER_NODE
+   */
+  public void setMemoryLimit(long bytes) {
+    setMaxNodes((int)Math.min(Integer.MAX_VALUE, bytes / MonteCarloTreeSearch.BYTES_PER_NODE));
+  }
+
+  /**
+   * MCTS has no search depth, the iteration budget is used instead.
+   */
+  public MOVE findBestMove(BOARD board, int depth) {
+    return findBestMove(board, new SearchLimits(depth));
+  }
+
+  public SearchStatistics getStatistics() {
+    return statistics;
+  }
+
+  /**
+   * Run the threads until a limit is reached: the SearchLimits deadline, the
+   * node budget (counted in iterations over all threads), the stop flag or,
+   * if neither time nor nodes are limited, the iteration budget.
+   *
+   * @param board Game state
+   * @param limits Search limits
+   * @return the most visited move
+   */
+  @SuppressWarnings("unchecked")
+  public MOVE findBestMove(BOARD board, SearchLimits limits) {
+    long startTime = System.currentTimeMillis();
+    long budget = limits.getNodeBudget();
+    if (budget == SearchLimits.NO_LIMIT && limits.getDeadline() == SearchLimits.NO_LIMIT)
+      budget = iterations;
+
+    int blockCount = (maxNodes + BLOCK_MASK) >> BLOCK_BITS;
+    if (blocks == null || blocks.length() != blockCount || packed != board.hasPackedMoves()) {
+      blocks = new AtomicReferenceArray<Block>(blockCount); // Else the blocks of the last search are reused
+      packed = board.hasPackedMoves();
+    }
+    allocate(0, 1);
+    size.set(1);
+    resetNode(0);
+    stop = false;
+    totalIterations.reset();
+    statistics.start();
+
+    // The calling thread searches on board itself, the others on copies.
+    Worker main = new Worker(board, 0);
+    ArrayList<Worker> helpers = new ArrayList<Worker>();
+    Thread []workers = new Thread[threads - 1];
+    for (int t = 0; t < workers.length; t++) {
+      final Worker helper = new Worker((BOARD)board.copy(), t + 1);
+      helpers.add(helper);
+      workers[t] = new Thread(new Runnable() {
+        public void run() {
+          while (!stop)
+            helper.iterate();
+        }
+      }, "MCTS-" + (t + 1));
+      workers[t].setDaemon(true);
+      workers[t].start();
+    }
+
+    do {
+      main.iterate();
+    } while (!(budget != SearchLimits.NO_LIMIT && totalIterations.sum() >= budget) &&
+        !limits.limitReached(totalIterations.sum()));
+    stop = true;
+
+    long playoutMoves = main.playoutMoves;
+    int collisions = main.collisions;
+    for (int t = 0; t < workers.length; t++) {
+      try {
+        workers[t].join();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      playoutMoves += helpers.get(t).playoutMoves;
+      collisions += helpers.get(t).collisions;
+    }
+
+    SearchStatistics.Counters counts = new SearchStatistics.Counters();
+    counts.nodes = totalIterations.sum(); // Iterations of all the threads
+    counts.leafNodes = counts.nodes;
+    statistics.iterationDone(0, counts, true, "Parallel MCTS Threads: " + threads + " Tree Nodes: " + Math.min(size.get(), maxNodes) +
+        " Playout Moves: " + playoutMoves + " Expansion Collisions: " + collisions + (size.get() >= maxNodes ? " (pool full)" : ""));
+    statistics.searchDone();
+
+    int best = -1;
+    Block root = block(0);
+    if (root.status.get(0) == EXPANDED) {
+      for (int c = root.firstChild[0]; c < root.firstChild[0] + root.childCount[0]; c++)
+        if (best < 0 || visits(c) > visits(best))
+          best = c;
+    }
+    if (best < 0 || visits(best) == 0) {
+      throw new Error ("No Move Available - Search Error!");
+    }
+    MOVE best_move = (MOVE)(packed ? board.unpackMove(block(best).move[best & BLOCK_MASK]) :
+        main.local(block(best).objectMove[best & BLOCK_MASK]));
+    best_move.value = 2.0 * block(best).wins.get(best & BLOCK_MASK) / WIN_SCALE / visits(best) - 1.0;
+    best_move.next = null;
+    return best_move;
+  }
+
+  /**
+   * BLOCK_SIZE nodes of the pool.
+   */
+  static class Block {
+    int []firstChild = new int[BLOCK_SIZE];
+    int []childCount = new int[BLOCK_SIZE];
+    int []move;         // Packed move into the node, null without packed moves
+    Move []objectMove;  // Move into the node, null with packed moves
+    long []terminalWins = new long[BLOCK_SIZE];
+    AtomicIntegerArray status = new AtomicIntegerArray(BLOCK_SIZE);
+    AtomicIntegerArray visits = new AtomicIntegerArray(BLOCK_SIZE);
+    AtomicLongArray wins = new AtomicLongArray(BLOCK_SIZE);
+
+    Block(boolean packed) {
+      if (packed)
+        move = new int[BLOCK_SIZE];
+      else
+        objectMove = new Move[BLOCK_SIZE];
+    }
+  }
+
+  /**
+   * Allocate the blocks of the nodes first..first+count-1 that are not
+   * there yet.
+   */
+  void allocate(int first, int count) {
+    for (int b = first >> BLOCK_BITS; b <= (first + count - 1) >> BLOCK_BITS; b++)
+      if (blocks.get(b) == null)
+        blocks.compareAndSet(b, null, new Block(packed));
+  }
+
+  Block block(int n) {
+    return blocks.get(n >> BLOCK_BITS);
+  }
+
+  int visits(int n) {
+    return block(n).visits.get(n & BLOCK_MASK);
+  }
+
+  void resetNode(int n) {
+    Block b = block(n);
+    b.visits.set(n & BLOCK_MASK, 0);
+    b.wins.set(n & BLOCK_MASK, 0);
+    b.status.set(n & BLOCK_MASK, UNEXPANDED);
+  }
+
+  /**
+   * One search thread: a board of its own and the path of its current
+   * iteration.
+   */
+  class Worker {
+    BOARD board;
+    Random random;
+    MoveStack stack = new MoveStack();
+    int []nodes = new int[64];  // Tree nodes of the current iteration
+    int nodeCount;
+    int []treePath = new int[64]; // Packed tree moves made on board by the current iteration
+    int treeLength;
+    Move []path = new Move[64];   // Move objects made on board after them
+    int pathLength;
+    long playoutMoves;
+    int collisions;
+
+    Worker(BOARD board, int id) {
+      this.board = board;
+      random = new MersenneTwister(System.nanoTime() + id);
+    }
+
+    void iterate() {
+      int node = 0;
+      int mover = -1; // The player that moved into node
+      nodeCount = 0;
+      treeLength = pathLength = 0;
+      enter(node);
+
+      long reward; // For the player that moved into node
+      while (true) {
+        Block b = block(node);
+        int i = node & BLOCK_MASK;
+        int st = b.status.get(i);
+        if (st == EXPANDED) {
+          node = selectChild(node);
+          enter(node);
+          mover = board.getCurrentPlayer();
+          playNode(node);
+          continue;
+        }
+        if (st == TERMINAL) {
+          reward = b.terminalWins[i];
+          break;
+        }
+        int game_state = board.endGame();
+        if (game_state != Board.GAME_CONTINUE) {
+          // Every thread that gets here computes the same result.
+          if (game_state == Board.GAME_DRAW)
+            reward = WIN_SCALE / 2;
+          else
+            reward = (game_state == mover) ? WIN_SCALE : 0;
+          b.terminalWins[i] = reward;
+          b.status.compareAndSet(i, UNEXPANDED, TERMINAL);
+          break;
+        }
+        if (st == UNEXPANDED && b.status.compareAndSet(i, UNEXPANDED, EXPANDING)) {
+          if (expand(node)) { // Play out from one of the new children
+            node = selectChild(node);
+            enter(node);
+            playNode(node);
+            reward = WIN_SCALE - playout();
+            break;
+          }
+          reward = b.terminalWins[i];
+          if (b.status.get(i) != TERMINAL) // Pool full
+            reward = WIN_SCALE - playout();
+          break;
+        }
+        if (st == EXPANDING)
+          collisions++;
+        reward = WIN_SCALE - playout(); // Another thread is expanding, or the pool is full
+        break;
+      }
+
+      while (pathLength > 0)
+        board.reverseMove(path[--pathLength]);
+      while (treeLength > 0)
+        board.reverseMove(treePath[--treeLength]);
+
+      for (int i = nodeCount - 1; i >= 0; i--) {
+        int n = nodes[i];
+        Block b = block(n);
+        b.visits.addAndGet(n & BLOCK_MASK, 1 - virtualLoss);
+        b.wins.addAndGet(n & BLOCK_MASK, reward);
+        reward = WIN_SCALE - reward;
+      }
+      totalIterations.increment();
+    }
+
+    /**
+     * Generate the children of node, which this thread has moved to
+     * EXPANDING.
+     *
+     * @return true if node now has children
+     */
+    boolean expand(int node) {
+      Block b = block(node);
+      int i = node & BLOCK_MASK;
+      Move moves = null;
+      int count = 0;
+      if (packed) {
+        stack.clear();
+        count = board.generateMoves(stack);
+      } else {
+        moves = board.generateMoves();
+        for (Move m = moves; m != null; m = m.next)
+          count++;
+      }
+      if (count == 0) { // No moves, the player to move has to withdraw and loses.
+        b.terminalWins[i] = WIN_SCALE;
+        b.status.set(i, TERMINAL);
+        return false;
+      }
+      int base = size.getAndAdd(count);
+      if (base + count > maxNodes) {
+        b.status.set(i, FULL);
+        return false;
+      }
+      allocate(base, count);
+      for (int k = 0; k < count; k++) {
+        if (packed)
+          block(base + k).move[(base + k) & BLOCK_MASK] = stack.get(k);
+        else {
+          block(base + k).objectMove[(base + k) & BLOCK_MASK] = moves;
+          moves = moves.next;
+        }
+        resetNode(base + k);
+      }
+      b.firstChild[i] = base;
+      b.childCount[i] = count;
+      b.status.set(i, EXPANDED); // Publishes the children to the other threads
+      return true;
+    }
+
+    /**
+     * UCB1 with the virtual losses of the other threads included. Unvisited
+     * children are taken first.
+     */
+    int selectChild(int node) {
+      Block b = block(node);
+      double logVisits = Math.log(Math.max(1, b.visits.get(node & BLOCK_MASK)));
+      int best = -1;
+      double bestValue = -Double.MAX_VALUE;
+      int first = b.firstChild[node & BLOCK_MASK];
+      for (int c = first; c < first + b.childCount[node & BLOCK_MASK]; c++) {
+        Block cb = block(c);
+        int v = cb.visits.get(c & BLOCK_MASK);
+        if (v == 0)
+          return c;
+        double value = (double)cb.wins.get(c & BLOCK_MASK) / WIN_SCALE / v + exploration * Math.sqrt(logVisits / v);
+        if (value > bestValue) {
+          bestValue = value;
+          best = c;
+        }
+      }
+      return best;
+    }
+
+    /**
+     * @return fixed point reward for the player to move at the start of the playout
+     */
+    long playout() {
+      int player = board.getCurrentPlayer();
+      int start = pathLength;
+      double reward;
+      while (true) {
+        int game_state = board.endGame();
+        if (game_state == Board.GAME_DRAW) {
+          reward = 0.5;
+          break;
+        }
+        if (game_state != Board.GAME_CONTINUE) {
+          reward = (game_state == player) ? 1.0 : 0.0;
+          break;
+        }
+        Move moves = board.generateMoves();
+        if (moves == null) {
+          reward = (board.getCurrentPlayer() == player) ? 0.0 : 1.0;
+          break;
+        }
+        if (pathLength - start >= playoutLimit) {
+          double h = Math.max(-1.0, Math.min(1.0, board.heuristicEvaluation()));
+          reward = (h + 1.0) / 2.0;
+          if (board.getCurrentPlayer() != player)
+            reward = 1.0 - reward;
+          break;
+        }
+        play(policy.selectMove(board, moves, random));
+      }
+      playoutMoves += pathLength - start;
+      return Math.round(reward * WIN_SCALE);
+    }
+
+    /**
+     * @return the move of this thread's board equal to m
+     */
+    Move local(Move m) {
+      for (Move l = board.generateMoves(); l != null; l = l.next)
+        if (l.equals(m))
+          return l;
+      throw new Error("Move " + m + " is not valid on this board");
+    }
+
+    /**
+     * Make the move into node.
+     */
+    void playNode(int node) {
+      Block b = block(node);
+      if (!packed) {
+        play(local(b.objectMove[node & BLOCK_MASK]));
+        return;
+      }
+      if (treeLength == treePath.length)
+        treePath = Arrays.copyOf(treePath, treeLength * 2);
+      int m = b.move[node & BLOCK_MASK];
+      board.makeMove(m);
+      treePath[treeLength++] = m;
+    }
+
+    void enter(int node) {
+      if (nodeCount == nodes.length) {
+        int []grown = new int[nodes.length * 2];
+        System.arraycopy(nodes, 0, grown, 0, nodeCount);
+        nodes = grown;
+      }
+      nodes[nodeCount++] = node;
+      block(node).visits.addAndGet(node & BLOCK_MASK, virtualLoss);
+    }
+
+    void play(Move m) {
+      if (pathLength == path.length) {
+        Move []grown = new Move[path.length * 2];
+        System.arraycopy(path, 0, grown, 0, pathLength);
+        path = grown;
+      }
+      board.makeMove(m);
+      path[pathLength++] = m;
+    }
+  }
+}
@@ -0,0 +1,20 @@
+package AbstractGames;
+
+import java.util.Random;
+
+/**
+ * Chooses the moves of the simulated games (playouts) in Monte Carlo Tree
+ * Search.
+ */
+public interface PlayoutPolicy {
+
+  /**
+   * Choose the next move of a playout.
+   *
+   * @param board current state of the playout
+   * @param moves all valid moves for board, not null
+   * @param random random number generator of the search
+   * @return one of the moves in the moves list
+   */
+  public Move selectMove(Board board, Move moves, Random random);
+}
@@ -0,0 +1,182 @@
+package AbstractGames;
+
+/**
+ * Pondering: search on the opponent's time.
+ *
+ * After each move the reply the search expects (the next move of the
+ * principal variation, or the table move when the variation is empty) is
+ * played on a board copy and a second search starts on that position in
+ * the background, without a time limit. When the opponent plays the
+ * expected move (a ponder hit) the background search gets the time limit
+ * of the real search and its result is played. Otherwise (a ponder miss) it
+ * is stopped and the normal search runs.
+ *
+ * Both searches leave the transposition table filled, and the board copy
+ * shares its table with the game board, so even after a miss the entries of
+ * the pondered position help the real search.
+ */
+public class PonderingSearch<BOARD extends TranspositionBoard, MOVE extends Move> implements Search<BOARD,MOVE> {
+
+  MinimaxAlphaBetaTransposition<BOARD,MOVE> search;       // Searches on our time
+  MinimaxAlphaBetaTransposition<BOARD,MOVE> ponderSearch; // Searches on the opponent's time
+
+  Thread ponderThread = null;
+  SearchLimits ponderLimits;
+  long ponderKey;           // Hash key of the pondered position
+  volatile MOVE ponderMove; // Result of the background search
+  int ponderHits, ponderMisses;
+  SearchStatistics statistics;  // Of the search that found the last move
+
+  /**
+   * @param search the search for our moves
+   * @param ponderSearch a second search object with the same settings, used
+   *                     on the opponent's time
+   */
+  public PonderingSearch(MinimaxAlphaBetaTransposition<BOARD,MOVE> search, MinimaxAlphaBetaTransposition<BOARD,MOVE> ponderSearch) {
+    this.search = search;
+    this.ponderSearch = ponderSearch;
+    search.setClearTable(false);
+    ponderSearch.setClearTable(false);
+  }
+
+  public int getPonderHits() {
+    return ponderHits;
+  }
+
+  public int getPonderMisses() {
+    return ponderMisses;
+  }
+
+  /**
+   * @return the statistics of the background search after a ponder hit, of
+   *         the normal search otherwise
+   */
+  public SearchStatistics getStatistics() {
+    return statistics;
+  }
+
+  public MOVE findBestMove(BOARD board, int depth) {
+    return findBestMove(board, new SearchLimits(depth));
+  }
+
+  /**
+   * On a ponder hit wait for the background search under the limits,
+   * otherwise search. Then start pondering the expected reply to the move.
+   */
+  @SuppressWarnings("unchecked")
+  public MOVE findBestMove(BOARD board, SearchLimits limits) {
+    MOVE best = null;
+    Move []line = null;
+    if (ponderThread != null && board.getHashKey() == ponderKey) {
+      ponderHits++;
+      ponderSearch.getStatistics().log("Ponder Hit");
+      ponderLimits.setDeadline(limits.getDeadline());
+      ponderLimits.setNodeBudget(limits.getNodeBudget());
+      while (ponderThread.isAlive()) {
+        if (limits.isStopped())
+          ponderLimits.stop();
+        try {
+          ponderThread.join(10);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          ponderLimits.stop();
+        }
+      }
+      ponderThread = null;
+      best = ponderMove;
+      // The move belongs to the board copy, play the same move of this board.
+      if (best != null) {
+        MOVE move = find(board, best);
+        if (move != null)
+          move.value = best.value;
+        best = move;
+      }
+      if (best != null) {
+        line = ponderSearch.getPrincipalVariation();
+        statistics = ponderSearch.getStatistics();
+      }
+    } else if (ponderThread != null) {
+      ponderMisses++;
+      search.getStatistics().log("Ponder Miss");
+      stopPondering();
+    }
+    if (best == null) {
+      best = search.findBestMove(board, limits);
+      line = search.getPrincipalVariation();
+      statistics = search.getStatistics();
+    }
+    Move reply = (line.length > 1 && line[0].equals(best)) ? line[1] : null;
+    startPondering(board, best, (MOVE)reply, limits.getMaxDepth());
+    return best;
+  }
+
+  /**
+   * Stop the background search, e.g. when the game ends or is restarted.
+   */
+  public void stopPondering() {
+    if (ponderThread == null)
+      return;
+    ponderLimits.stop();
+    try {
+      ponderThread.join();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    ponderThread = null;
+  }
+
+  /**
+   * Play move and the expected reply on a copy of board and search the
+   * position in the background.
+   *
+   * @param expected the reply from the principal variation, null to use the
+   *                 table move
+   */
+  @SuppressWarnings("unchecked")
+  void startPondering(BOARD board, MOVE move, MOVE expected, int depth) {
+    final BOARD ponderBoard = (BOARD)board.copy();
+    MOVE ours = find(ponderBoard, move);
+    if (ours == null)
+      return;
+    ponderBoard.makeMove(ours);
+    if (ponderBoard.endGame() != Board.GAME_CONTINUE)
+      return;
+    MOVE reply = (expected != null) ? find(ponderBoard, expected) : null;
+    if (reply == null) {
+      Move tableMove = ponderBoard.ProbeMove();
+      if (tableMove != null && ponderBoard.moveIsValid(tableMove))
+        reply = find(ponderBoard, (MOVE)tableMove);
+    }
+    if (reply == null)
+      return;
+    ponderBoard.makeMove(reply);
+    if (ponderBoard.endGame() != Board.GAME_CONTINUE)
+      return;
+
+    search.getStatistics().log("Pondering: " + reply);
+    ponderKey = ponderBoard.getHashKey();
+    ponderLimits = new SearchLimits(depth);
+    ponderMove = null;
+    final SearchLimits limits = ponderLimits;
+    ponderThread = new Thread(new Runnable() {
+      public void run() {
+        ponderMove = ponderSearch.findBestMove(ponderBoard, limits);
+      }
+    }, "Ponder");
+    ponderThread.setDaemon(true);
+    ponderThread.start();
+  }
+
+  /**
+   * @return the move of board equal to move, or null if it is not legal
+   */
+  @SuppressWarnings("unchecked")
+  MOVE find(BOARD board, MOVE move) {
+    for (Move m = board.generateMoves(); m != null; m = m.next)
+      if (m.equals(move)) {
+        m.next = null;
+        return (MOVE)m;
+      }
+    return null;
+  }
+}
@@ -0,0 +1,285 @@
+package AbstractGames;
+
+/**
+ * Principal Variation Search (NegaScout) with a transposition table.
+ *
+ * The first move of each node is searched with the full window. Every later
+ * move is searched with a null window around alpha to prove that it is not
+ * better than the first one, and only a move that fails high on the null
+ * window is searched again with the full window. With good move ordering the
+ * first move is usually the best, so most moves only need the cheaper null
+ * window search.
+ *
+ * Move order: the transposition table move first, then Board.moveOrdering.
+ * Table entries use HASH_EXACT for exact values, HASH_BETA for lower bounds
+ * (fail high) and HASH_ALPHA for upper bounds (fail low).
+ */
+public class PrincipalVariationSearch<BOARD extends TranspositionBoard, MOVE extends Move> implements Search<BOARD,MOVE> {
+
+  /**
+   * Width of the null window. Board values are doubles, so the window has to
+   * be small enough not to hide a real difference between two moves.
+   */
+  static final double NULL_WINDOW = 1.0e-6;
+
+  BOARD board;
+  int totalNodesSearched;
+  int totalLeafNodes;
+  int transpositionTableHit;
+  int actualHit;
+  int ttProbes, cutoffs, firstMoveCutoffs;
+  long collisionsBefore; // Board collision count when the iteration started
+  SearchStatistics statistics = new SearchStatistics();
+  int researches;           // Null window searches that failed high and were searched again
+
+  SearchLimits limits;      // null while the search may not be stopped
+  int nodesBeforeIteration; // Nodes searched by the completed iterations
+  int pollCount;
+  boolean stopSearch = false;
+
+  public PrincipalVariationSearch() {
+    totalNodesSearched = 0;
+    totalLeafNodes = 0;
+  }
+
+  public SearchStatistics getStatistics() {
+    return statistics;
+  }
+
+  public MOVE findBestMove(BOARD board, int depth) {
+    return findBestMove(board, new SearchLimits(depth));
+  }
+
+  /**
+   * Iterative deepening PVS. Stops on the search limits like
+   * MinimaxAlphaBetaTransposition, returning the move of the last completed
+   * iteration.
+   *
+   * @param board Game state
+   * @param limits Search limits
+   * @return the best move
+   */
+  public MOVE findBestMove(BOARD board, SearchLimits limits) {
+    int depth = limits.getMaxDepth();
+    MOVE best_move = null;
+    int runningNodeTotal = 0;
+    long startTime = System.currentTimeMillis();
+    long elapsedTime = 0;
+    long currentPeriod;
+    long previousPeriod = 0;
+    int i = 1;
+
+    this.board = board;
+    statistics.start();
+    this.limits = null; // The first iteration always completes
+    stopSearch = false;
+    pollCount = 0;
+    TimeManager timeManager = null;
+    if (limits.getDeadline() != SearchLimits.NO_LIMIT)
+      timeManager = new TimeManager(limits);
+
+    while (i <= depth) {
+      totalNodesSearched = totalLeafNodes = transpositionTableHit = actualHit = researches = 0;
+      ttProbes = cutoffs = firstMoveCutoffs = 0;
+      collisionsBefore = board.getHashCollisions();
+      nodesBeforeIteration = runningNodeTotal;
+
+      MOVE move = PVS(i, -2.0, 2.0);
+      if (stopSearch) {
+        statistics.iterationDone(i, counters(), false, null);
+        break;
+      }
+      best_move = move;
+
+      elapsedTime = System.currentTimeMillis() - startTime;
+      currentPeriod = elapsedTime - previousPeriod;
+      double rate = 0.0;
+      if (i > 3 && previousPeriod > 50)
+        rate = (currentPeriod - previousPeriod) / previousPeriod;
+      previousPeriod = elapsedTime;
+
+      runningNodeTotal += totalNodesSearched;
+      statistics.iterationDone(i, counters(), true, "Re-searches: " + researches + " Rate: " + rate);
+
+      // increment indexes;
+      i = i + 2;
+      this.limits = limits;
+      if (limits.limitReached(runningNodeTotal))
+        break;
+      if (timeManager != null) {
+        timeManager.iterationDone(currentPeriod, totalNodesSearched, best_move);
+        if (i <= depth && !timeManager.startNextIteration()) {
+          statistics.log("Depth: " + i + " not started, predicted time: " + timeManager.getPredicted() / 1000.0 +
+              " Growth: " + timeManager.getGrowth());
+          break;
+        }
+      }
+    }
+    this.limits = null;
+
+    board.clearTranspositionTable();
+
+    statistics.searchDone();
+    if (best_move == null ) {
+      throw new Error ("No Move Available - Search Error!");
+    }
+    return best_move;
+  }
+
+  /**
+   * @return the counts since the start of the iteration
+   */
+  SearchStatistics.Counters counters() {
+    SearchStatistics.Counters c = new SearchStatistics.Counters();
+    c.nodes = totalNodesSearched;
+    c.leafNodes = totalLeafNodes;
+    c.ttProbes = ttProbes;
+    c.ttHits = transpositionTableHit;
+    c.ttCutoffs = actualHit;
+    c.ttCollisions = board.getHashCollisions() - collisionsBefore;
+    c.cutoffs = cutoffs;
+    c.firstMoveCutoffs = firstMoveCutoffs;
+    return c;
+  }
+
+  /**
+   * Principal Variation Search with transposition table.
+   *
+   * @param depth int the depth of the search to conduct
+   * @return best move, with its value in Move.value
+   */
+  MOVE PVS(int depth, double alpha, double beta) {
+    totalNodesSearched++;
+    MOVE best_move = (MOVE)board.newMove();
+    MOVE opponent_move;
+    MOVE best_opponent_move = null;
+
+    if (limits != null && ++pollCount >= limits.pollInterval) {
+      pollCount = 0;
+      if (limits.limitReached(nodesBeforeIteration + totalNodesSearched))
+        stopSearch = true;
+    }
+    if (stopSearch) // Out of time or cancelled, the iteration is discarded.
+      return best_move;
+
+    if (depth < 1) {
+      totalLeafNodes++;
+      best_move.value = board.heuristicEvaluation();
+      return best_move;
+    }
+
+    double alpha_start = alpha;
+    MOVE TransMove = (MOVE)board.ProbeMove();
+    ttProbes++;
+    int flag = board.ProbeHash(depth, alpha, beta);
+    // As in MinimaxAB_TT only a hit with a valid table move is used, so a
+    // cutoff (at the root too) always returns a legal move.
+    if (flag != -5 && TransMove != null && board.moveIsValid(TransMove)) {
+      double value = board.ProbeValue(depth);
+      transpositionTableHit++;
+      boolean cutoff = false;
+      if (flag == board.HASH_EXACT)
+        cutoff = true;
+      else if (flag == board.HASH_BETA && value >= beta) // lower bound
+        cutoff = true;
+      else if (flag == board.HASH_ALPHA && value <= alpha) // upper bound
+        cutoff = true;
+      if (cutoff) {
+        actualHit++;
+        best_move = TransMove;
+        best_move.value = value;
+        return best_move;
+      }
+    }
+
+    // Is this the end of the game?
+    int game_state = board.endGame();
+    if (game_state != Board.GAME_CONTINUE) {
+      if (game_state == board.getCurrentPlayer()) { // Did this player win?
+        best_move.value = 1.0+depth/1.0;
+        return best_move;
+      }
+      int []player = board.getPlayerList(); // Did an opponent win?
+      for (int i = 0; i < player.length; i++) {
+        if (game_state == player[i]) {
+          best_move.value = -(1.0+depth/1.0);
+          return best_move;
+        }
+      }
+      if (game_state == Board.GAME_DRAW) { // Game is a draw
+        best_move.value = -(1.0+depth/1.0);
+        return best_move;
+      }
+    }
+
+    Move moves = board.generateMoves();  // Get all valid moves for this board
+    if (moves == null) { // Do we have any moves that we can make? If not assume that we have to withdraw and lose.
+      best_move.value = -(1.0+depth/1.0);
+      return best_move;
+    }
+    moves = board.moveOrdering(moves, depth);
+
+    // Move the transposition table move to the front of the list.
+    if (TransMove != null && !moves.equals(TransMove)) {
+      for (Move prev = moves; prev.next != null; prev = prev.next) {
+        if (prev.next.equals(TransMove)) {
+          Move m = prev.next;
+          prev.next = m.next;
+          m.next = moves;
+          moves = m;
+          break;
+        }
+      }
+    }
+
+    boolean first = true;
+    for ( Move m = moves; m != null; m = m.next ) {
+      board.makeMove(m);
+      double v;
+      if (first) {
+        opponent_move = PVS(depth - 1, -beta, -alpha);
+        v = -opponent_move.value;
+      } else {
+        // Null window, only prove that m is not better than alpha.
+        opponent_move = PVS(depth - 1, -alpha - NULL_WINDOW, -alpha);
+        v = -opponent_move.value;
+        if (v > alpha && v < beta && !stopSearch) {
+          researches++;
+          opponent_move = PVS(depth - 1, -beta, -alpha);
+          v = -opponent_move.value;
+        }
+      }
+      board.reverseMove(m);
+
+      if (first || v > best_move.value) {
+        best_move = (MOVE)m;
+        best_move.value = v;
+        best_opponent_move = opponent_move;
+      }
+      first = false;
+      if (v > alpha)
+        alpha = v;
+      if (alpha >= beta) {
+        cutoffs++;
+        if (m == moves)
+          firstMoveCutoffs++;
+        if (!stopSearch)
+          board.RecordHash(depth, best_move.value, board.HASH_BETA, best_move, board);
+        board.moveOrderingData(best_move, depth, true);
+        return best_move;
+      }
+    }
+
+    best_move.next = best_opponent_move; // Track the move list.
+    if (stopSearch) // The values below this node are incomplete, keep them out of the table.
+      return best_move;
+    if (best_move.value > alpha_start)
+      board.RecordHash(depth, best_move.value, board.HASH_EXACT, best_move, board);
+    else
+      board.RecordHash(depth, best_move.value, board.HASH_ALPHA, best_move, board);
+    board.moveOrderingData(best_move, depth, false);
+
+    return best_move;
+  }
+
+}
@@ -0,0 +1,128 @@
+package AbstractGames;
+
+/**
+ * Quiescence search for the frontier nodes of the alpha-beta searches.
+ *
+ * Instead of evaluating a frontier node in the middle of an exchange, only
+ * the moves from Board.generateCaptures() are searched until the position is
+ * quiet. The side to move may always "stand pat" on the static evaluation,
+ * so a stand pat at or above beta cuts the node off at once.
+ *
+ * Delta pruning: when the stand pat is more than delta below alpha, a single
+ * capture is not expected to bring the score back, and only the moves for
+ * which Board.isThreat() is true (e.g. Breakthrough goal threats) are
+ * searched.
+ *
+ * A game won or lost here scores 1.0 + 1.0/(2+ply): outside the -1.0..1.0
+ * of the evaluations, below the 1.0+depth of a win in the main search, and
+ * higher the sooner it happens. A draw scores 0.0, or as a loss for a search
+ * that scores its draws as losses.
+ *
+ * The nodes are counted here, separate from the main search, so that the
+ * overhead of the quiescence search is visible.
+ */
+public class QuiescenceSearch<BOARD extends Board> {
+
+  /**
+   * Default delta: the largest gain expected from one capture. The board
+   * evaluations are kept within -1.0..1.0.
+   */
+  public static final double DEFAULT_DELTA = 0.25;
+
+  BOARD board;
+  boolean drawIsLoss = false;
+  double delta = DEFAULT_DELTA;
+  int maxPly = 32;          // Safety limit, captures and threats run out long before this
+
+  int nodes;                // Quiescence nodes, including the first stand pat
+  int standPatCutoffs;
+  int deltaPrunes;
+
+  public QuiescenceSearch() {
+  }
+
+  /**
+   * @param drawIsLoss score a draw as a loss, as the calling search does
+   */
+  public QuiescenceSearch(boolean drawIsLoss) {
+    this.drawIsLoss = drawIsLoss;
+  }
+
+  /**
+   * @param delta margin for delta pruning, Double.MAX_VALUE turns it off
+   */
+  public void setDelta(double delta) {
+    this.delta = delta;
+  }
+
+  public void resetCounters() {
+    nodes = standPatCutoffs = deltaPrunes = 0;
+  }
+
+  public int getNodes() {
+    return nodes;
+  }
+
+  public int getStandPatCutoffs() {
+    return standPatCutoffs;
+  }
+
+  public int getDeltaPrunes() {
+    return deltaPrunes;
+  }
+
+  /**
+   * Negamax quiescence search of the current position of board.
+   *
+   * @param board game state, from the view of the side to move
+   * @return the value of the position, fail soft
+   */
+  public double search(BOARD board, double alpha, double beta) {
+    this.board = board;
+    return quiesce(alpha, beta, 0);
+  }
+
+  double quiesce(double alpha, double beta, int ply) {
+    nodes++;
+
+    // A capture can end the game (LOA), check before standing pat.
+    int game_state = board.endGame();
+    if (game_state != Board.GAME_CONTINUE) {
+      double win = 1.0 + 1.0/(2 + ply);
+      if (game_state == board.getCurrentPlayer())
+        return win;
+      if (game_state == Board.GAME_DRAW && !drawIsLoss)
+        return 0.0;
+      return -win;
+    }
+
+    double best = board.heuristicEvaluation();
+    if (best >= beta) {
+      standPatCutoffs++;
+      return best;
+    }
+    if (ply >= maxPly)
+      return best;
+    if (best > alpha)
+      alpha = best;
+    boolean prune = best + delta < alpha;
+
+    for (Move m = board.generateCaptures(); m != null; m = m.next) {
+      if (prune && !board.isThreat(m)) {
+        deltaPrunes++;
+        continue;
+      }
+      board.makeMove(m);
+      double v = -quiesce(-beta, -alpha, ply + 1);
+      board.reverseMove(m);
+      if (v > best) {
+        best = v;
+        if (v > alpha)
+          alpha = v;
+        if (alpha >= beta)
+          break;
+      }
+    }
+    return best;
+  }
+}
@@ -0,0 +1,19 @@
+package AbstractGames;
+
+import java.util.Random;
+
+/**
+ * Plays a uniformly random move.
+ */
+public class RandomPlayoutPolicy implements PlayoutPolicy {
+
+  public Move selectMove(Board board, Move moves, Random random) {
+    int count = 0;
+    for (Move m = moves; m != null; m = m.next)
+      count++;
+    Move m = moves;
+    for (int k = random.nextInt(count); k > 0; k--)
+      m = m.next;
+    return m;
+  }
+}
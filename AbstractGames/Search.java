@@ -14,4 +14,26 @@ public interface Search<BOARD, MOVE> {
    * @return the best move
    */
   public  MOVE findBestMove(BOARD board, int depth);
+
+  /**
+   * Find the best move for the state in board within the given limits.
+   * Searches that cannot be stopped only use the maximum depth.
+   *
+   * @param board Game state
+   * @param limits Depth, time and node limits for the search
+   * @return the best move of the last completed iteration
+   */
+  public default MOVE findBestMove(BOARD board, SearchLimits limits) {
+    return findBestMove(board, limits.getMaxDepth());
+  }
+
+  /**
+   * Statistics of the last findBestMove: nodes, table use, cutoffs and the
+   * iterations. Turn the printing off with getStatistics().setPrinting(false).
+   *
+   * @return the statistics, null for a search that does not keep any
+   */
+  public default SearchStatistics getStatistics() {
+    return null;
+  }
 }
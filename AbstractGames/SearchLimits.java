@@ -0,0 +1,110 @@
+package AbstractGames;
+
+/**
+ * Limits for an iterative deepening search: a maximum depth, a wall clock
+ * deadline, a node budget and a stop flag that another thread (e.g. the GUI)
+ * can set to cancel a running search.
+ *
+ * The search polls the limits every pollInterval nodes. Once a limit is hit
+ * the current iteration is abandoned and the best move of the last completed
+ * iteration is returned. The first iteration is always completed so that a
+ * move is available.
+ */
+public class SearchLimits {
+
+  public static final long NO_LIMIT = 0;
+
+  int maxDepth;
+  volatile long deadline = NO_LIMIT; // System.currentTimeMillis() value to stop at
+  volatile long nodeBudget = NO_LIMIT; // Total nodes over all iterations
+  int pollInterval = 1024;    // Nodes between checks of the clock
+  volatile boolean stopped = false;
+
+  /**
+   * @param maxDepth maximum search depth
+   */
+  public SearchLimits(int maxDepth) {
+    this.maxDepth = maxDepth;
+  }
+
+  /**
+   * @param maxDepth maximum search depth
+   * @param timeLimit milliseconds from now until the search has to stop
+   */
+  public SearchLimits(int maxDepth, long timeLimit) {
+    this(maxDepth);
+    setTimeLimit(timeLimit);
+  }
+
+  public int getMaxDepth() {
+    return maxDepth;
+  }
+
+  public void setMaxDepth(int maxDepth) {
+    this.maxDepth = maxDepth;
+  }
+
+  public long getDeadline() {
+    return deadline;
+  }
+
+  /**
+   * @param deadline absolute System.currentTimeMillis() time, NO_LIMIT for none
+   */
+  public void setDeadline(long deadline) {
+    this.deadline = deadline;
+  }
+
+  /**
+   * @param timeLimit milliseconds from now, NO_LIMIT for none
+   */
+  public void setTimeLimit(long timeLimit) {
+    deadline = (timeLimit == NO_LIMIT) ? NO_LIMIT : System.currentTimeMillis() + timeLimit;
+  }
+
+  public long getNodeBudget() {
+    return nodeBudget;
+  }
+
+  /**
+   * @param nodeBudget total nodes the search may visit, NO_LIMIT for none
+   */
+  public void setNodeBudget(long nodeBudget) {
+    this.nodeBudget = nodeBudget;
+  }
+
+  public int getPollInterval() {
+    return pollInterval;
+  }
+
+  public void setPollInterval(int pollInterval) {
+    this.pollInterval = Math.max(1, pollInterval);
+  }
+
+  /**
+   * Cancel the search. Safe to call from any thread.
+   */
+  public void stop() {
+    stopped = true;
+  }
+
+  public boolean isStopped() {
+    return stopped;
+  }
+
+  /**
+   * Check the stop flag, the clock and the node budget. Sets the stop flag
+   * when a limit has been reached so later checks are cheap.
+   *
+   * @param nodes total nodes searched so far
+   * @return true if the search has to stop
+   */
+  public boolean limitReached(long nodes) {
+    if (stopped)
+      return true;
+    if ((deadline != NO_LIMIT && System.currentTimeMillis() >= deadline) ||
+        (nodeBudget != NO_LIMIT && nodes >= nodeBudget))
+      stopped = true;
+    return stopped;
+  }
+}
@@ -0,0 +1,284 @@
+package AbstractGames;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Statistics of the last search of a Search object, returned by
+ * Search.getStatistics() after findBestMove.
+ *
+ * During the search every thread counts in its own plain fields. A thread
+ * hands its counts over once, at the end of an iteration (iterationDone) or
+ * when it stops (add), and the totals are LongAdders, so counting costs
+ * nothing in a parallel search and the hand over needs no lock.
+ *
+ * The per iteration lines that the searches used to print are printed from
+ * here, and can be turned off with setPrinting(false) when the statistics of
+ * many searches are collected with add(SearchStatistics).
+ */
+public class SearchStatistics {
+
+  /**
+   * The counts of one iteration, or of one search thread.
+   */
+  public static class Counters {
+    public long nodes;            // Interior and leaf nodes
+    public long leafNodes;        // Frontier nodes evaluated (or playouts)
+    public long qsNodes;          // Quiescence search nodes
+    public long ttProbes;         // Transposition table look ups
+    public long ttHits;           // Look ups that found a usable entry
+    public long ttCutoffs;        // Nodes returned from the table entry
+    public long ttCollisions;     // Look ups that found another position in the slot
+    public long cutoffs;          // Beta cutoffs
+    public long firstMoveCutoffs; // Beta cutoffs by the first move searched
+
+    public void add(Counters c) {
+      nodes += c.nodes;
+      leafNodes += c.leafNodes;
+      qsNodes += c.qsNodes;
+      ttProbes += c.ttProbes;
+      ttHits += c.ttHits;
+      ttCutoffs += c.ttCutoffs;
+      ttCollisions += c.ttCollisions;
+      cutoffs += c.cutoffs;
+      firstMoveCutoffs += c.firstMoveCutoffs;
+    }
+
+    /**
+     * @return the fraction of the beta cutoffs found by the first move, a
+     *         measure of the move ordering
+     */
+    public double getFirstMoveCutoffRate() {
+      return (cutoffs == 0) ? 0.0 : (double)firstMoveCutoffs / cutoffs;
+    }
+  }
+
+  /**
+   * One iteration of an iterative deepening search.
+   */
+  public static class Iteration extends Counters {
+    public int depth;
+    public long time;               // Milliseconds
+    public boolean completed;       // False for an iteration stopped by the limits
+    public double branchingFactor;  // Effective branching factor from the previous completed iteration, 0 if none
+
+    public String toString() {
+      return "Depth: " + depth + (completed ? "" : " stopped") + " Time: " + time / 1000.0 + " Nodes Searched: " + nodes +
+          " Leaf Nodes: " + leafNodes + (qsNodes == 0 ? "" : " QS Nodes: " + qsNodes) +
+          (ttProbes == 0 ? "" : " TT Probes: " + ttProbes + " Hits: " + ttHits + " Cutoffs: " + ttCutoffs + " Collisions: " + ttCollisions) +
+          (cutoffs == 0 ? "" : " First Move Cutoffs: " + String.format("%.1f%%", 100.0 * getFirstMoveCutoffRate())) +
+          (branchingFactor == 0.0 ? "" : " EBF: " + String.format("%.2f", branchingFactor));
+    }
+  }
+
+  final LongAdder nodes = new LongAdder();
+  final LongAdder leafNodes = new LongAdder();
+  final LongAdder qsNodes = new LongAdder();
+  final LongAdder ttProbes = new LongAdder();
+  final LongAdder ttHits = new LongAdder();
+  final LongAdder ttCutoffs = new LongAdder();
+  final LongAdder ttCollisions = new LongAdder();
+  final LongAdder cutoffs = new LongAdder();
+  final LongAdder firstMoveCutoffs = new LongAdder();
+  final LongAdder time = new LongAdder();
+  final LongAdder searches = new LongAdder();
+
+  ArrayList<Iteration> iterations = new ArrayList<Iteration>();
+  boolean printing = true;
+  long startTime;
+  long iterationStart;
+
+  /**
+   * @param printing print the iteration lines and the search summary
+   */
+  public void setPrinting(boolean printing) {
+    this.printing = printing;
+  }
+
+  public boolean isPrinting() {
+    return printing;
+  }
+
+  /**
+   * Print a line if printing is on.
+   */
+  public void log(String line) {
+    if (printing)
+      System.out.println(line);
+  }
+
+  /**
+   * Clear everything, a new search starts.
+   */
+  public void start() {
+    nodes.reset();
+    leafNodes.reset();
+    qsNodes.reset();
+    ttProbes.reset();
+    ttHits.reset();
+    ttCutoffs.reset();
+    ttCollisions.reset();
+    cutoffs.reset();
+    firstMoveCutoffs.reset();
+    time.reset();
+    searches.reset();
+    iterations = new ArrayList<Iteration>();
+    startTime = iterationStart = System.currentTimeMillis();
+  }
+
+  /**
+   * Add the counts of a thread (e.g. a parallel helper) to the totals. Safe
+   * to call from any thread.
+   */
+  public void add(Counters c) {
+    nodes.add(c.nodes);
+    leafNodes.add(c.leafNodes);
+    qsNodes.add(c.qsNodes);
+    ttProbes.add(c.ttProbes);
+    ttHits.add(c.ttHits);
+    ttCutoffs.add(c.ttCutoffs);
+    ttCollisions.add(c.ttCollisions);
+    cutoffs.add(c.cutoffs);
+    firstMoveCutoffs.add(c.firstMoveCutoffs);
+  }
+
+  /**
+   * Record an iteration of the searching thread and add its counts to the
+   * totals.
+   *
+   * @param depth the iteration depth
+   * @param c the counts of the iteration
+   * @param completed false if the limits stopped the iteration
+   * @param extra search specific counts appended to the printed line, or null
+   */
+  public void iterationDone(int depth, Counters c, boolean completed, String extra) {
+    long now = System.currentTimeMillis();
+    Iteration it = new Iteration();
+    it.add(c);
+    it.depth = depth;
+    it.time = now - iterationStart;
+    it.completed = completed;
+    iterationStart = now;
+    for (int k = iterations.size() - 1; k >= 0 && completed; k--) {
+      Iteration previous = iterations.get(k);
+      if (previous.completed && previous.nodes > 0 && previous.depth < depth) {
+        it.branchingFactor = Math.pow((double)it.nodes / previous.nodes, 1.0 / (depth - previous.depth));
+        break;
+      }
+    }
+    iterations.add(it);
+    add(c);
+    if (printing)
+      System.out.println(extra == null ? it.toString() : it + " " + extra);
+  }
+
+  /**
+   * The search is over, count it and print the summary.
+   */
+  public void searchDone() {
+    time.add(System.currentTimeMillis() - startTime);
+    searches.increment();
+    log("Nodes per Second = " + getNodesPerSecond());
+  }
+
+  /**
+   * Add the totals of another search, to collect the statistics of many
+   * searches. The iterations are not copied.
+   */
+  public void add(SearchStatistics s) {
+    nodes.add(s.getNodes());
+    leafNodes.add(s.getLeafNodes());
+    qsNodes.add(s.getQSNodes());
+    ttProbes.add(s.getTTProbes());
+    ttHits.add(s.getTTHits());
+    ttCutoffs.add(s.getTTCutoffs());
+    ttCollisions.add(s.getTTCollisions());
+    cutoffs.add(s.getCutoffs());
+    firstMoveCutoffs.add(s.getFirstMoveCutoffs());
+    time.add(s.getTime());
+    searches.add(s.getSearches());
+  }
+
+  /**
+   * @return the iterations of the last search, in order
+   */
+  public List<Iteration> getIterations() {
+    return iterations;
+  }
+
+  public long getNodes() {
+    return nodes.sum();
+  }
+
+  public long getLeafNodes() {
+    return leafNodes.sum();
+  }
+
+  public long getQSNodes() {
+    return qsNodes.sum();
+  }
+
+  public long getTTProbes() {
+    return ttProbes.sum();
+  }
+
+  public long getTTHits() {
+    return ttHits.sum();
+  }
+
+  public long getTTCutoffs() {
+    return ttCutoffs.sum();
+  }
+
+  public long getTTCollisions() {
+    return ttCollisions.sum();
+  }
+
+  public long getCutoffs() {
+    return cutoffs.sum();
+  }
+
+  public long getFirstMoveCutoffs() {
+    return firstMoveCutoffs.sum();
+  }
+
+  public double getFirstMoveCutoffRate() {
+    long c = getCutoffs();
+    return (c == 0) ? 0.0 : (double)getFirstMoveCutoffs() / c;
+  }
+
+  /**
+   * @return the effective branching factor of the last completed iteration,
+   *         0 if there were not two completed iterations
+   */
+  public double getEffectiveBranchingFactor() {
+    for (int k = iterations.size() - 1; k >= 0; k--)
+      if (iterations.get(k).completed)
+        return iterations.get(k).branchingFactor;
+    return 0.0;
+  }
+
+  /**
+   * @return milliseconds of all the searches
+   */
+  public long getTime() {
+    return time.sum();
+  }
+
+  public long getSearches() {
+    return searches.sum();
+  }
+
+  public double getNodesPerSecond() {
+    long t = getTime();
+    return (t == 0) ? 0.0 : getNodes() / (t / 1000.0);
+  }
+
+  public String toString() {
+    return "Searches: " + getSearches() + " Time: " + getTime() / 1000.0 + " Nodes: " + getNodes() + " Leaf Nodes: " + getLeafNodes() +
+        " QS Nodes: " + getQSNodes() + " TT Probes: " + getTTProbes() + " Hits: " + getTTHits() + " Cutoffs: " + getTTCutoffs() +
+        " Collisions: " + getTTCollisions() + " First Move Cutoffs: " + String.format("%.1f%%", 100.0 * getFirstMoveCutoffRate()) +
+        " Nodes per Second: " + getNodesPerSecond();
+  }
+}
@@ -1,5 +1,7 @@
 package AbstractGames;
 
+import java.util.Random;
+
 /**
  *
  * Design choice: There are two ways to perform the stochastic search. One is for the board
@@ -20,10 +22,48 @@ public abstract class StochasticBoard extends Board{
 
   public abstract boolean reverseEvent(int perspective, int index, StochasticEvent e);
 
+  /**
+   * Make one chance event chosen at random with its probability, e.g. one
+   * determinization of the hidden information for sampling searches (ISMCTS).
+   *
+   * The default picks a uniformly random index of makeEvent, so it is only
+   * right when the events are equally likely and getEventCount fits in an
+   * int. Boards with large event spaces should override this and
+   * reverseSampledEvent to sample without enumerating the events.
+   *
+   * @param perspective the player that is asking
+   * @param random random number generator of the search
+   * @return the event, to be passed to reverseSampledEvent
+   */
+  public StochasticEvent sampleEvent(int perspective, Random random) {
+    int count = getEventCount(perspective);
+    if (count <= 0)
+      throw new Error("Event space of " + getClass().getName() + " is too large to index, override sampleEvent");
+    int index = 1 + random.nextInt(count);
+    StochasticEvent e = makeEvent(perspective, index);
+    e.eventIndex = index;
+    return e;
+  }
+
+  /**
+   * Undo an event made by sampleEvent.
+   */
+  public boolean reverseSampledEvent(int perspective, StochasticEvent e) {
+    return reverseEvent(perspective, e.eventIndex, e);
+  }
+
   public abstract double heuristicEvaluation(int perspective);
 
   public abstract int endGame(int perspective);
 
+  /**
+   * The player to move on the board seen from perspective. Boards that keep
+   * a separate turn per perspective override this.
+   */
+  public int getCurrentPlayer(int perspective) {
+    return getCurrentPlayer();
+  }
+
   public abstract Move generateMoves(int perspective);
 
   public abstract boolean makeMove(int perspective, Move m);
@@ -5,6 +5,7 @@ package AbstractGames;
  */
 public abstract class StochasticEvent {
   protected double eventProbability;
+  int eventIndex; // makeEvent index used by StochasticBoard.sampleEvent
 
   public void setEventProbability(double ep) { eventProbability = ep; }
 
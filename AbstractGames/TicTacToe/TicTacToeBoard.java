@@ -28,6 +28,24 @@ public class TicTacToeBoard extends Board {
     to_move = PLAYER_X;
   }
 
+  /**
+   * Copy constructor, used by copy().
+   *
+   * @param b the board to copy
+   */
+  protected TicTacToeBoard(TicTacToeBoard b) {
+    for (int x = 0; x < BOARD_X; x++)
+      System.arraycopy(b.board[x], 0, board[x], 0, BOARD_Y);
+    to_move = b.to_move;
+  }
+
+  /**
+   * @return an independent copy of this board
+   */
+  public Board copy() {
+    return new TicTacToeBoard(this);
+  }
+
   public void loadBoard(String boardString) {
     char [] boardChars = boardString.toCharArray();
     for (int x = 0; x < BOARD_X; x++ ){
@@ -104,6 +122,10 @@ public class TicTacToeBoard extends Board {
   public void moveOrderingData(Move best_move, int depth, boolean pruned) {
   }
 
+  public boolean usesMoveOrderingData() {
+    return false;
+  }
+
   public int endGame() {
     int count;
     int draw = 0;
@@ -153,7 +175,7 @@ public class TicTacToeBoard extends Board {
     if (draw == BOARD_X*BOARD_Y)
       return Board.GAME_DRAW;
 
-    return BLANK;
+    return Board.GAME_CONTINUE;
   }
 
 
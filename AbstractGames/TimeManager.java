@@ -0,0 +1,103 @@
+package AbstractGames;
+
+/**
+ * Decides between iterations of an iterative deepening search whether the
+ * next iteration (depth + 2) should be started.
+ *
+ * The time from now until the SearchLimits deadline is the hard limit, an
+ * iteration still running at the deadline is abandoned. The soft limit is a
+ * fraction of it. No new iteration is started after the soft limit, and none
+ * is started when the predicted time of the next iteration runs past the hard
+ * limit. The prediction is the last iteration time multiplied by the measured
+ * node growth (the effective branching factor squared, since the depth goes up
+ * by two). When the best move changes between iterations the soft limit is
+ * extended, since the search has not settled yet.
+ */
+public class TimeManager {
+
+  long startTime;
+  long hardLimit;               // Milliseconds from startTime to the deadline
+  long softLimit;
+  double softFraction = 0.5;    // Soft limit as a fraction of the hard limit
+  double instabilityFactor = 1.5; // Soft limit growth when the best move changes
+  double growth = 1.0;          // Node growth from one iteration to the next
+  int minimumPeriod = 20;       // Periods below this (ms) are too noisy to time
+
+  long lastPeriod = 0;
+  long lastNodes = 0;
+  long predicted = 0;
+  Move lastBest = null;
+
+  /**
+   * @param limits the search limits, the deadline has to be set
+   */
+  public TimeManager(SearchLimits limits) {
+    startTime = System.currentTimeMillis();
+    hardLimit = Math.max(0, limits.getDeadline() - startTime);
+    softLimit = (long)(hardLimit * softFraction);
+  }
+
+  public void setSoftFraction(double softFraction) {
+    this.softFraction = softFraction;
+    softLimit = (long)(hardLimit * softFraction);
+  }
+
+  public void setInstabilityFactor(double instabilityFactor) {
+    this.instabilityFactor = instabilityFactor;
+  }
+
+  /**
+   * Record a completed iteration.
+   *
+   * @param period milliseconds the iteration took
+   * @param nodes nodes searched by the iteration
+   * @param best best move of the iteration
+   */
+  public void iterationDone(long period, long nodes, Move best) {
+    // Nodes grow by the effective branching factor squared per iteration,
+    // time per node is about constant.
+    if (lastNodes > 0 && nodes > 0)
+      growth = Math.max(1.0, (double)nodes / lastNodes);
+
+    if (lastBest != null && best != null && !best.equals(lastBest))
+      softLimit = Math.min(hardLimit, (long)(softLimit * instabilityFactor));
+
+    // Short iterations are dominated by start up costs, only predict once two
+    // iterations in a row were long enough to time.
+    predicted = 0;
+    if (lastPeriod >= minimumPeriod && period >= minimumPeriod)
+      predicted = (long)(period * growth);
+
+    lastPeriod = period;
+    lastNodes = nodes;
+    lastBest = best;
+  }
+
+  /**
+   * @return true if the next iteration is expected to finish in time
+   */
+  public boolean startNextIteration() {
+    long elapsed = System.currentTimeMillis() - startTime;
+    if (elapsed >= softLimit)
+      return false;
+    return elapsed + predicted <= hardLimit;
+  }
+
+  /**
+   * @return predicted milliseconds for the next iteration, 0 if not yet measured
+   */
+  public long getPredicted() {
+    return predicted;
+  }
+
+  /**
+   * @return the measured node growth from one iteration to the next
+   */
+  public double getGrowth() {
+    return growth;
+  }
+
+  public long getSoftLimit() {
+    return softLimit;
+  }
+}
@@ -22,4 +22,60 @@ public abstract class TranspositionBoard extends Board {
 
   public abstract void clearTranspositionTable();
 
+  /**
+   * @return the Zobrist key of the current position, side to move included
+   */
+  public abstract long getHashKey();
+
+  /**
+   * @return the number of table probes that found another position in the
+   *         slot, counted per board copy
+   */
+  public long getHashCollisions() {
+    return 0;
+  }
+
+  /**
+   * Number of pieces of both players on the board, e.g. to decide when an
+   * endgame solver takes over from the search.
+   */
+  public int getPieceCount() {
+    throw new Error("getPieceCount() is not implemented for " + getClass().getName());
+  }
+
+  /**
+   * Null move pruning: can the side to move pass here without the search
+   * being fooled by zugzwang? Games without null move support return false.
+   *
+   * @return true if a null move may be tried
+   */
+  public boolean nullMoveAllowed() {
+    return false;
+  }
+
+  /**
+   * Pass the turn to the opponent, updating the side to move and its hash key.
+   */
+  public void makeNullMove() {
+    throw new Error("makeNullMove() is not implemented for " + getClass().getName());
+  }
+
+  /**
+   * Undo makeNullMove.
+   */
+  public void reverseNullMove() {
+    throw new Error("reverseNullMove() is not implemented for " + getClass().getName());
+  }
+
+  /**
+   * Late move reductions only reduce quiet moves. Called before the move is
+   * made.
+   *
+   * @param m move from generateMoves
+   * @return false for captures and other moves that should not be reduced
+   */
+  public boolean isQuietMove(Move m) {
+    return true;
+  }
+
 }
@@ -2,6 +2,7 @@ package AbstractGames.mnkGame;
 
 import AbstractGames.Board;
 import AbstractGames.Move;
+import AbstractGames.MoveStack;
 
 /**
  * This is the m,n,k-game board class. This is a generalization of m x n games in which the
@@ -81,6 +82,21 @@ public class mnkBoard extends Board {
   to_move = PLAYER_BLACK;
   }
 
+  /**
+   * Copy constructor, used by copy().
+   *
+   * @param b the board to copy
+   */
+  protected mnkBoard(mnkBoard b) {
+    boardX = b.boardX;
+    boardY = b.boardY;
+    goalK = b.goalK;
+    board = new int[boardX][boardY];
+    for (int x = 0; x < boardX; x++)
+      System.arraycopy(b.board[x], 0, board[x], 0, boardY);
+    to_move = b.to_move;
+  }
+
   /**
    * This one will be a problem because of the variability of n, m and k
    *
@@ -160,6 +176,78 @@ public class mnkBoard extends Board {
     return false;
   }
 
+  public boolean hasPackedMoves() {
+    return true;
+  }
+
+  /**
+   * The packed moves, see Board.generateMoves(MoveStack): x in the low byte
+   * and y in the next one.
+   *
+   * @param stack the move stack of the search
+   * @return the number of moves pushed
+   */
+  public int generateMoves(MoveStack stack) {
+    int count = 0;
+    for (int x = 0; x < boardX; x++) {
+      for (int y = 0; y < boardY; y++) {
+        if (board[x][y] == EMPTY_SQUARE) {
+          stack.push(x | (y << 8));
+          count++;
+        }
+      }
+    }
+    return count;
+  }
+
+  /**
+   * No m,n,k move has a flag, all of them are quiet.
+   */
+  public int generateTacticalMoves(MoveStack stack) {
+    return 0;
+  }
+
+  public int generateQuietMoves(MoveStack stack) {
+    return generateMoves(stack);
+  }
+
+  public boolean moveIsValid(int move) {
+    int x = move & 0xFF;
+    int y = (move >> 8) & 0xFF;
+    return move == (x | (y << 8)) && x < boardX && y < boardY && board[x][y] == EMPTY_SQUARE;
+  }
+
+  public boolean makeMove(int move) {
+    int x = move & 0xFF;
+    int y = (move >> 8) & 0xFF;
+    if (board[x][y] == EMPTY_SQUARE) {
+      board[x][y] = to_move;
+      to_move = opponent(to_move);
+      return true;
+    }
+    return false;
+  }
+
+  public boolean reverseMove(int move) {
+    int x = move & 0xFF;
+    int y = (move >> 8) & 0xFF;
+    if (board[x][y] == opponent(to_move)) {
+      board[x][y] = EMPTY_SQUARE;
+      to_move = opponent(to_move);
+      return true;
+    }
+    return false;
+  }
+
+  public int packMove(Move m) {
+    mnkMove ttm = (mnkMove)m;
+    return ttm.x | (ttm.y << 8);
+  }
+
+  public Move unpackMove(int move) {
+    return new mnkMove(move & 0xFF, (move >> 8) & 0xFF, to_move);
+  }
+
   public double heuristicEvaluation() {
     return 0.0;
   }
@@ -173,6 +261,10 @@ public class mnkBoard extends Board {
   public void moveOrderingData(Move best_move, int depth, boolean pruned) {
   }
 
+  public boolean usesMoveOrderingData() {
+    return false;
+  }
+
   /**
    * endGame check. Check each row, column and diagonal for k in a row pieces. Then check
    * if all of the spaces are filled - in which case the game is a draw.
@@ -219,6 +311,13 @@ public class mnkBoard extends Board {
     return result;
   }
 
+  /**
+   * @return an independent copy of this board
+   */
+  public Board copy() {
+    return new mnkBoard(this);
+  }
+
   public mnkMove newMove() {
     return new mnkMove(0,0,0);
   }
@@ -3,6 +3,8 @@ package AbstractGames.mnkGame;
 import AbstractGames.*;
 import AbstractGames.Util;
 
+import java.util.Random;
+
 /**
  *
  */
@@ -85,6 +87,64 @@ public class phantommnkBoard extends StochasticBoard {
     to_move = PLAYER_BLACK;
   }
 
+  /**
+   * Copy constructor, used by copy().
+   *
+   * @param b the board to copy
+   */
+  protected phantommnkBoard(phantommnkBoard b) {
+    boardX = b.boardX;
+    boardY = b.boardY;
+    goalK = b.goalK;
+    board = new int[boardX][boardY];
+    phantomBoards = new int[2][boardX][boardY];
+    for (int x = 0; x < boardX; x++) {
+      System.arraycopy(b.board[x], 0, board[x], 0, boardY);
+      System.arraycopy(b.phantomBoards[PLAYER_BLACK][x], 0, phantomBoards[PLAYER_BLACK][x], 0, boardY);
+      System.arraycopy(b.phantomBoards[PLAYER_WHITE][x], 0, phantomBoards[PLAYER_WHITE][x], 0, boardY);
+    }
+    phantomPieceCount = b.phantomPieceCount.clone();
+    phantomEmptyCount = b.phantomEmptyCount.clone();
+    phantomto_move = b.phantomto_move.clone();
+    to_move = b.to_move;
+  }
+
+  /**
+   * Check every player's view against the true board: its own pieces, the
+   * opponent pieces it found, the empty count and the phantom piece count.
+   *
+   * @return null if the board is consistent, otherwise the first problem found
+   */
+  public String checkConsistency() {
+    for (int player = 0; player < 2; player++) {
+      int empty = 0, hidden = 0;
+      for (int x = 0; x < boardX; x++)
+        for (int y = 0; y < boardY; y++) {
+          int seen = phantomBoards[player][x][y];
+          if (seen == EMPTY_SQUARE)
+            empty++;
+          if ((seen == player) != (board[x][y] == player))
+            return "View " + player + " does not match its own piece at (" + x + "," + y + ")";
+          if (seen == opponent(player) && board[x][y] != seen)
+            return "View " + player + " has a phantom piece that is not on the board at (" + x + "," + y + ")";
+          if (seen == EMPTY_SQUARE && board[x][y] == opponent(player))
+            hidden++;
+        }
+      if (empty != phantomEmptyCount[player])
+        return "View " + player + " empty count is " + phantomEmptyCount[player] + ", the view has " + empty;
+      if (hidden != phantomPieceCount[player])
+        return "View " + player + " phantom piece count is " + phantomPieceCount[player] + ", the board has " + hidden;
+    }
+    return null;
+  }
+
+  /**
+   * @return an independent copy of this board and of every player's view
+   */
+  public Board copy() {
+    return new phantommnkBoard(this);
+  }
+
 
   /**
    * This one will be a problem because of the variability of n, m and k
@@ -107,6 +167,21 @@ public class phantommnkBoard extends StochasticBoard {
       to_move = PLAYER_WHITE;
     else
       to_move = PLAYER_BLACK;
+
+    // Each player sees its own pieces, the opponent's are phantoms.
+    phantomPieceCount[PLAYER_BLACK] = phantomPieceCount[PLAYER_WHITE] = 0;
+    phantomEmptyCount[PLAYER_BLACK] = phantomEmptyCount[PLAYER_WHITE] = boardX * boardY;
+    for (int x = 0; x < boardX; x++ ){
+      for (int y = 0; y < boardY; y++ ) {
+        phantomBoards[PLAYER_BLACK][x][y] = phantomBoards[PLAYER_WHITE][x][y] = EMPTY_SQUARE;
+        if (board[x][y] != EMPTY_SQUARE) {
+          phantomBoards[board[x][y]][x][y] = board[x][y];
+          phantomEmptyCount[board[x][y]]--;
+          phantomPieceCount[opponent(board[x][y])]++;
+        }
+      }
+    }
+    phantomto_move[PLAYER_BLACK] = phantomto_move[PLAYER_WHITE] = to_move;
     System.out.println(this.toString());
   }
 
@@ -196,6 +271,68 @@ public class phantommnkBoard extends StochasticBoard {
     return ev;
   }
 
+  /**
+   * Place the opponent's unknown pieces on random squares that this player
+   * sees as empty. Unlike makeEvent this does not number the combinations,
+   * so it works however many of them there are.
+   *
+   * @param perspective the player that is asking
+   * @param random random number generator of the search
+   * @return the event, to be passed to reverseSampledEvent
+   */
+  public StochasticEvent sampleEvent(int perspective, Random random) {
+    int hidden = phantomPieceCount[perspective];
+    int empty = phantomEmptyCount[perspective];
+    phantommnkEvent ev = new phantommnkEvent();
+    ev.phantomEmptyCount = empty;
+    ev.phantomPieceCount = hidden;
+    ev.changedCellX = new int[hidden];
+    ev.changedCellY = new int[hidden];
+
+    // Every combination is equally likely: 1/(empty choose hidden)
+    double probability = 1.0;
+    for (int i = 0; i < hidden; i++)
+      probability *= (double)(hidden - i) / (empty - i);
+    ev.setEventProbability(probability);
+    if (hidden == 0)
+      return ev;
+
+    int cells = 0;
+    int []cellX = new int[boardX * boardY];
+    int []cellY = new int[boardX * boardY];
+    for (int x = 0; x < boardX; x++)
+      for (int y = 0; y < boardY; y++)
+        if (phantomBoards[perspective][x][y] == EMPTY_SQUARE) {
+          cellX[cells] = x;
+          cellY[cells] = y;
+          cells++;
+        }
+    // Partial Fisher-Yates shuffle, the first hidden cells are the sample.
+    for (int i = 0; i < hidden && i < cells; i++) {
+      int j = i + random.nextInt(cells - i);
+      int tx = cellX[i], ty = cellY[i];
+      cellX[i] = cellX[j];
+      cellY[i] = cellY[j];
+      cellX[j] = tx;
+      cellY[j] = ty;
+      ev.changedCellX[i] = cellX[i];
+      ev.changedCellY[i] = cellY[i];
+      phantomBoards[perspective][cellX[i]][cellY[i]] = opponent(perspective);
+    }
+    phantomEmptyCount[perspective] = empty - hidden;
+    phantomPieceCount[perspective] = 0;
+    return ev;
+  }
+
+  public boolean reverseSampledEvent(int perspective, StochasticEvent event) {
+    phantommnkEvent ev = (phantommnkEvent)event;
+    for (int i = 0; i < ev.phantomPieceCount; i++)
+      phantomBoards[perspective][ev.changedCellX[i]][ev.changedCellY[i]] = EMPTY_SQUARE;
+    phantomEmptyCount[perspective] = ev.phantomEmptyCount;
+    phantomPieceCount[perspective] = ev.phantomPieceCount;
+    return true;
+  }
+
   public void revealAll() {
     for (int x = 0; x < boardX; x++) {
       for (int y = 0; y < boardY; y++) {
@@ -338,12 +475,14 @@ public class phantommnkBoard extends StochasticBoard {
       phantomPieceCount[opponent(move.player)]--;
       phantomBoards[move.player][move.x][move.y] = EMPTY_SQUARE;
       setPlayerAtLocation(move.x, move.y, EMPTY_SQUARE);
+      phantomto_move[PLAYER_BLACK] = phantomto_move[PLAYER_WHITE] = move.player;
     } else if (phantomBoards[move.player][move.x][move.y] == opponent(move.player)) {
       // the player learned the opponent was in this square
       phantomPieceCount[move.player]++;
       phantomBoards[move.player][move.x][move.y] = EMPTY_SQUARE;
     }
-    phantomEmptyCount[to_move]--;
+    // makeMove took the square from the player's empty count either way.
+    phantomEmptyCount[move.player]++;
     to_move = opponent(to_move);
 
     return true;
@@ -543,6 +682,10 @@ public class phantommnkBoard extends StochasticBoard {
   public void moveOrderingData(Move best_move, int depth, boolean pruned) {
   }
 
+  public boolean usesMoveOrderingData() {
+    return false;
+  }
+
   /**
    * endGame check. Check each row, column and diagonal for k in a row pieces. Then check
    * if all of the spaces are filled - in which case the game is a draw.
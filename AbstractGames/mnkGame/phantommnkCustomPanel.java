@@ -48,6 +48,9 @@ public class phantommnkCustomPanel extends JPanel {
   private void initializeGame() {
     board = new phantommnkBoard(3, 3, 3); // Initialize the board with the SBE
     search = new ExpectiminimaxSearch<phantommnkBoard, mnkMove>();
+    //search = new InformationSetMCTS<phantommnkBoard, mnkMove>(); // For boards with many hidden pieces
+    //search = new ExpectiminimaxSearch<phantommnkBoard, mnkMove>(Runtime.getRuntime().availableProcessors());
+    //search = new ExpectiminimaxStarSearch<phantommnkBoard, mnkMove>(ExpectiminimaxStarSearch.STAR2);
   }
   /**
    * The mnkWorker generates a thread that calls the WorkBoard bestMove
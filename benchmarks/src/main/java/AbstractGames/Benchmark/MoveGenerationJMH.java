@@ -0,0 +1,107 @@
+package AbstractGames.Benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The MoveGenerationBenchmark operations as JMH benchmarks: generateMoves, a
+ * makeMove/reverseMove pair, endGame, moveOrdering of a generated list and
+ * Util.QuickSort alone, for every game on the opening, middlegame and endgame
+ * positions of BenchmarkPositions. Each benchmark and parameter set runs in
+ * forked JVMs, so games and changes can be compared without the JIT
+ * profile of one benchmark leaking into the next.
+ *
+ * The game and phase are the parameters, and the state of the operations
+ * is the MoveGenerationBenchmark.Fixture of that game and phase. The packed
+ * operations (generateMoves(MoveStack) and a makeMove(int)/reverseMove(int)
+ * pair) only run for MoveGenerationBenchmark.PACKED_GAMES.
+ *
+ * Usage, from the benchmarks directory:
+ *   mvn -B package
+ *   java -jar target/benchmarks.jar -prof gc
+ *   java -jar target/benchmarks.jar MoveGenerationJMH.makeUnmake -p game=Breakthrough -prof gc
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 500, timeUnit = TimeUnit.MILLISECONDS)
+@Measurement(iterations = 10, time = 500, timeUnit = TimeUnit.MILLISECONDS)
+@Fork(2)
+public class MoveGenerationJMH {
+
+  /**
+   * The boards of one game and phase.
+   */
+  @State(Scope.Thread)
+  public static class Positions {
+    @Param({BenchmarkPositions.BREAKTHROUGH, BenchmarkPositions.LOA, BenchmarkPositions.MNK,
+            BenchmarkPositions.PHANTOM_MNK, BenchmarkPositions.TICTACTOE})
+    public String game;
+
+    @Param({BenchmarkPositions.OPENING, BenchmarkPositions.MIDDLEGAME, BenchmarkPositions.ENDGAME})
+    public String phase;
+
+    MoveGenerationBenchmark.Fixture fixture;
+
+    @Setup(Level.Trial)
+    public void setup() {
+      fixture = new MoveGenerationBenchmark.Fixture(BenchmarkPositions.positions(game, phase),
+          MoveGenerationBenchmark.PACKED_GAMES.contains(game));
+    }
+  }
+
+  /**
+   * The boards of one game with packed moves and phase.
+   */
+  @State(Scope.Thread)
+  public static class PackedPositions {
+    @Param({BenchmarkPositions.BREAKTHROUGH, BenchmarkPositions.LOA, BenchmarkPositions.MNK})
+    public String game;
+
+    @Param({BenchmarkPositions.OPENING, BenchmarkPositions.MIDDLEGAME, BenchmarkPositions.ENDGAME})
+    public String phase;
+
+    MoveGenerationBenchmark.Fixture fixture;
+
+    @Setup(Level.Trial)
+    public void setup() {
+      fixture = new MoveGenerationBenchmark.Fixture(BenchmarkPositions.positions(game, phase), true);
+    }
+  }
+
+  @Benchmark
+  public void generateMoves(Positions p, Blackhole bh) {
+    bh.consume(p.fixture.generateMoves());
+  }
+
+  @Benchmark
+  public void makeUnmake(Positions p, Blackhole bh) {
+    bh.consume(p.fixture.makeUnmake());
+  }
+
+  @Benchmark
+  public void endGame(Positions p, Blackhole bh) {
+    bh.consume(p.fixture.endGame());
+  }
+
+  @Benchmark
+  public void moveOrdering(Positions p, Blackhole bh) {
+    bh.consume(p.fixture.moveOrdering());
+  }
+
+  @Benchmark
+  public void quickSort(Positions p, Blackhole bh) {
+    bh.consume(p.fixture.quickSort());
+  }
+
+  @Benchmark
+  public void generateMovesPacked(PackedPositions p, Blackhole bh) {
+    bh.consume(p.fixture.generateMovesPacked());
+  }
+
+  @Benchmark
+  public void makeUnmakePacked(PackedPositions p, Blackhole bh) {
+    bh.consume(p.fixture.makeUnmakePacked());
+  }
+}